@@ -2,80 +2,279 @@ package com.ryr.ros2cal_api;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
+import com.ryr.ros2cal_api.roster.RosterBatchConversionService;
 import com.ryr.ros2cal_api.roster.RosterConversionService;
+import com.ryr.ros2cal_api.roster.RosterHashes;
 import com.ryr.ros2cal_api.roster.RosterIcsExporter;
+import com.ryr.ros2cal_api.roster.RosterIdempotencyRegistry;
+import com.ryr.ros2cal_api.roster.RosterJob;
+import com.ryr.ros2cal_api.roster.RosterJobRepository;
+import com.ryr.ros2cal_api.roster.RosterJobService;
+import com.ryr.ros2cal_api.roster.RosterJobStatus;
 import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProgressListener;
 import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterUsageQuotas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/roster")
 public class RosterController {
 
+    private static final Logger log = LoggerFactory.getLogger(RosterController.class);
     private static final long DEFAULT_MAX_BYTES = 5L * 1024 * 1024;
     private final long maxUploadBytes;
     private final RosterConversionService rosterConversionService;
+    private final RosterBatchConversionService rosterBatchConversionService;
     private final RosterIcsExporter rosterIcsExporter;
     private final RosterProperties rosterProperties;
+    private final RosterIdempotencyRegistry idempotencyRegistry;
+    private final RosterJobService rosterJobService;
+    private final RosterUsageQuotas usageQuotas;
+    private final TaskExecutor rosterTaskExecutor;
 
     public RosterController(
             @Value("${spring.servlet.multipart.max-file-size:" + DEFAULT_MAX_BYTES + "}") long maxUploadBytes,
             RosterConversionService rosterConversionService,
+            RosterBatchConversionService rosterBatchConversionService,
             RosterIcsExporter rosterIcsExporter,
-            RosterProperties rosterProperties) {
+            RosterProperties rosterProperties,
+            RosterIdempotencyRegistry idempotencyRegistry,
+            RosterJobService rosterJobService,
+            RosterUsageQuotas usageQuotas,
+            @Qualifier("rosterTaskExecutor") TaskExecutor rosterTaskExecutor) {
         this.maxUploadBytes = maxUploadBytes;
         this.rosterConversionService = rosterConversionService;
+        this.rosterBatchConversionService = rosterBatchConversionService;
         this.rosterIcsExporter = rosterIcsExporter;
         this.rosterProperties = rosterProperties;
+        this.idempotencyRegistry = idempotencyRegistry;
+        this.rosterJobService = rosterJobService;
+        this.usageQuotas = usageQuotas;
+        this.rosterTaskExecutor = rosterTaskExecutor;
     }
 
     @PostMapping(value = "/convert", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> convertRoster(
             @RequestParam("image") MultipartFile image,
-            @RequestParam(value = "format", required = false) String format) {
-        if (image == null || image.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image is required");
-        }
-        if (image.getSize() > maxUploadBytes) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image exceeds max size");
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal Jwt jwt) {
+        String normalizedFormat = requireFormat(format);
+        byte[] bytes = readValidatedImage(image);
+
+        String ownerSub = jwt.getSubject();
+        RosterParseResult result;
+        if (idempotencyKey != null) {
+            result = idempotencyRegistry.execute(
+                    ownerSub,
+                    idempotencyKey.trim(),
+                    RosterHashes.sha256Hex(bytes),
+                    () -> convertAs(ownerSub, bytes));
+        } else {
+            result = convertAs(ownerSub, bytes);
         }
+        return renderResult(result.getData(), normalizedFormat);
+    }
 
-        String normalizedFormat = normalizeFormat(format);
-        if (!"json".equals(normalizedFormat) && !"ics".equals(normalizedFormat)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be JSON or ICS");
+    /**
+     * Converts several screenshots of one roster in a single request; events repeated on overlapping
+     * pages are returned once.
+     */
+    @PostMapping(value = "/convert/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> convertRosterBatch(
+            @RequestParam("image") List<MultipartFile> images,
+            @RequestParam(value = "format", required = false) String format,
+            @AuthenticationPrincipal Jwt jwt) {
+        String normalizedFormat = requireFormat(format);
+        if (images.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "missing image");
+        }
+        if (images.size() > rosterProperties.getBatchMaxImages()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "too many images (max " + rosterProperties.getBatchMaxImages() + ")");
         }
+        List<byte[]> bytes = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            bytes.add(readValidatedImage(image));
+        }
+        usageQuotas.admit(jwt.getSubject(), bytes.size());
+        RosterParseResult result = rosterBatchConversionService.parseRosters(
+                jwt.getSubject(), bytes, usageQuotas.charging(jwt.getSubject(), RosterProgressListener.NONE));
+        return renderResult(result.getData(), normalizedFormat);
+    }
 
-        byte[] bytes = readBytes(image);
-        if (!isJpegOrPng(bytes)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image must be JPG or PNG");
+    /**
+     * Streams conversion progress as Server-Sent Events: {@code stage}, {@code ocr_delta}, one
+     * {@code event} per parsed duty, then {@code done} (or {@code error}).
+     */
+    @PostMapping(
+            value = "/convert/stream",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter convertRosterStream(
+            @RequestParam("image") MultipartFile image,
+            @AuthenticationPrincipal Jwt jwt) {
+        byte[] bytes = readValidatedImage(image);
+        usageQuotas.admit(jwt.getSubject());
+        SseEmitter emitter = new SseEmitter(rosterProperties.getStreamTimeout().toMillis());
+        SseProgressListener listener = new SseProgressListener(emitter);
+        RosterProgressListener charging = usageQuotas.charging(jwt.getSubject(), listener);
+        try {
+            rosterTaskExecutor.execute(() -> {
+                try {
+                    RosterParseResult result = rosterConversionService.parseRoster(jwt.getSubject(), bytes, charging);
+                    Object events = result.getData().get("events");
+                    listener.send("done", Map.of("events_count", events instanceof List<?> list ? list.size() : 0));
+                    emitter.complete();
+                } catch (ResponseStatusException ex) {
+                    listener.send("error", Map.of(
+                            "status", ex.getStatusCode().value(),
+                            "message", ex.getReason() != null ? ex.getReason() : "conversion failed"));
+                    emitter.complete();
+                } catch (RuntimeException ex) {
+                    log.error("Roster stream conversion failed", ex);
+                    emitter.completeWithError(ex);
+                }
+            });
+        } catch (TaskRejectedException ex) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many conversions in progress");
         }
+        return emitter;
+    }
 
-        if (readImage(bytes) == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid image content");
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @RequestParam("image") MultipartFile image,
+            @AuthenticationPrincipal Jwt jwt) {
+        byte[] bytes = readValidatedImage(image);
+        usageQuotas.admit(jwt.getSubject());
+        RosterJob job = rosterJobService.submit(jwt.getSubject(), bytes);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/roster/jobs/" + job.getId()))
+                .body(jobBody(job.getId(), job.getStatus()));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public CompletableFuture<ResponseEntity<?>> getJob(
+            @PathVariable("id") UUID id,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "wait", required = false) Integer waitSeconds,
+            @AuthenticationPrincipal Jwt jwt) {
+        String normalizedFormat = requireFormat(format);
+        Duration wait = Duration.ofSeconds(waitSeconds != null ? Math.max(0, waitSeconds) : 0);
+        return rosterJobService.await(id, jwt.getSubject(), wait)
+                .thenApply(found -> {
+                    RosterJobRepository.RosterJobView job = found.orElseThrow(
+                            () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found"));
+                    return renderJob(job, normalizedFormat);
+                });
+    }
+
+    /**
+     * Runs a conversion on the user's quota: one request up front, OpenAI tokens as they are used.
+     */
+    private RosterParseResult convertAs(String ownerSub, byte[] bytes) {
+        usageQuotas.admit(ownerSub);
+        return rosterConversionService.parseRoster(
+                ownerSub, bytes, usageQuotas.charging(ownerSub, RosterProgressListener.NONE));
+    }
+
+    private ResponseEntity<?> renderJob(RosterJobRepository.RosterJobView job, String format) {
+        if (job.getStatus() == RosterJobStatus.SUCCEEDED) {
+            return renderResult(rosterJobService.readResult(job), format);
+        }
+        Map<String, Object> body = jobBody(job.getId(), job.getStatus());
+        if (job.getStatus() == RosterJobStatus.FAILED) {
+            body.put("error", job.getErrorMessage());
+            HttpStatus status = job.getErrorStatus() != null ? HttpStatus.resolve(job.getErrorStatus()) : null;
+            return ResponseEntity.status(status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR).body(body);
         }
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(body);
+    }
+
+    private Map<String, Object> jobBody(UUID id, RosterJobStatus status) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("job_id", id);
+        body.put("status", status.name());
+        return body;
+    }
 
-        RosterParseResult result = rosterConversionService.parseRoster(bytes);
-        if ("ics".equals(normalizedFormat)) {
+    private ResponseEntity<?> renderResult(Map<String, Object> data, String format) {
+        if ("ics".equals(format)) {
             String ics = rosterIcsExporter.jsonToIcs(
-                    result.getData(),
+                    data,
                     rosterProperties.getCalendarName(),
                     rosterProperties.getLocalTz());
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType("text/calendar"))
                     .body(ics);
         }
-        return ResponseEntity.ok(result.getData());
+        return ResponseEntity.ok(data);
+    }
+
+    private String requireFormat(String format) {
+        String normalizedFormat = normalizeFormat(format);
+        if (!"json".equals(normalizedFormat) && !"ics".equals(normalizedFormat)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be JSON or ICS");
+        }
+        return normalizedFormat;
+    }
+
+    private byte[] readValidatedImage(MultipartFile image) {
+        if (image == null || image.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image is required");
+        }
+        if (image.getSize() > maxUploadBytes) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image exceeds max size");
+        }
+
+        byte[] bytes = readBytes(image);
+        if (!isJpegOrPng(bytes)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "image must be JPG or PNG");
+        }
+
+        if (!hasReadableHeader(bytes)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid image content");
+        }
+        return bytes;
     }
 
     private String normalizeFormat(String format) {
@@ -93,11 +292,24 @@ public class RosterController {
         }
     }
 
-    private Object readImage(byte[] bytes) {
-        try {
-            return ImageIO.read(new ByteArrayInputStream(bytes));
-        } catch (IOException ex) {
-            return null;
+    /**
+     * Reads the image dimensions without decoding pixels; decoding happens on the image executor.
+     */
+    private boolean hasReadableHeader(byte[] bytes) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException ex) {
+            return false;
         }
     }
 
@@ -123,4 +335,50 @@ public class RosterController {
                 && bytes[6] == 0x1A
                 && bytes[7] == 0x0A;
     }
+
+    /**
+     * Writes conversion progress to an SSE stream. A client that disconnects does not abort the
+     * conversion, so its result still lands in the caches.
+     */
+    private static final class SseProgressListener implements RosterProgressListener {
+
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean disconnected;
+
+        private SseProgressListener(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(() -> disconnected = true);
+            emitter.onTimeout(() -> disconnected = true);
+        }
+
+        @Override
+        public void onStage(String stage) {
+            send("stage", Map.of("stage", stage));
+        }
+
+        @Override
+        public void onOcrDelta(String text) {
+            send("ocr_delta", Map.of("text", text));
+        }
+
+        @Override
+        public void onEvent(Map<String, Object> event) {
+            send("event", event);
+        }
+
+        private void send(String name, Object data) {
+            lock.lock();
+            try {
+                if (disconnected) {
+                    return;
+                }
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException ex) {
+                disconnected = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that limits extra work (hedges, retries) to a fraction of regular calls. Every call
+ * deposits {@code ratio} tokens, every extra request withdraws one; a small reserve lets an idle
+ * instance hedge or retry its first calls.
+ */
+final class CallBudget {
+
+    private static final long SCALE = 1000;
+
+    private final AtomicLong balance;
+    private final long deposit;
+    private final long max;
+
+    CallBudget(double ratio, int reserve, int max) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.max = max * SCALE;
+        this.balance = new AtomicLong(reserve * SCALE);
+    }
+
+    void deposit() {
+        balance.updateAndGet(current -> Math.min(max, current + deposit));
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    double available() {
+        return (double) balance.get() / SCALE;
+    }
+}
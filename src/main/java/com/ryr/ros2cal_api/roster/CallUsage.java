@@ -53,4 +53,21 @@ public class CallUsage {
         }
         return Math.max(0, inputTokens) + Math.max(0, outputTokens);
     }
+
+    /**
+     * Adds the token counts of {@code other}, e.g. to report several calls of one stage as one.
+     */
+    public void add(CallUsage other) {
+        if (other == null) {
+            return;
+        }
+        Integer combinedTotal = totalTokens == null && other.totalTokens == null
+                ? null
+                : getEffectiveTotal() + other.getEffectiveTotal();
+        inputTokens += other.inputTokens;
+        outputTokens += other.outputTokens;
+        cachedInputTokens += other.cachedInputTokens;
+        cachedOutputTokens += other.cachedOutputTokens;
+        totalTokens = combinedTotal;
+    }
 }
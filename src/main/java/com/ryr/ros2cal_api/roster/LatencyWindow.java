@@ -0,0 +1,61 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of recent latencies with on-demand percentiles.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private final long[] recordedAt;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+        this.recordedAt = new long[samples.length];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        recordedAt[next] = System.nanoTime();
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy holding only the samples recorded within {@code maxAgeNanos} of now.
+     */
+    synchronized LatencyWindow recent(long maxAgeNanos) {
+        LatencyWindow recent = new LatencyWindow(samples.length);
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            int index = (next - size + i + samples.length) % samples.length;
+            if (now - recordedAt[index] <= maxAgeNanos) {
+                recent.samples[recent.size] = samples[index];
+                recent.recordedAt[recent.size] = recordedAt[index];
+                recent.size++;
+            }
+        }
+        recent.next = recent.size % samples.length;
+        return recent;
+    }
+
+    /**
+     * Returns the given percentile (0..1) of the recorded samples, or -1 if there are none.
+     */
+    synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
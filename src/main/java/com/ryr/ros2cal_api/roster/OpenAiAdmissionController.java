@@ -0,0 +1,301 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schedules OpenAI calls per model. A call starts when the model has a free concurrency slot and,
+ * as far as the last rate-limit headers tell, enough remaining requests and tokens for the call's
+ * estimated size; otherwise it waits in a FIFO queue. A 429 pauses the model until its reset time.
+ * Calls are rejected with 503 and {@code Retry-After} as soon as the queue is full or the expected
+ * wait exceeds the configured maximum, instead of failing at OpenAI after a long wait.
+ */
+@Component
+public class OpenAiAdmissionController {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiAdmissionController.class);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final OpenAiProperties.Admission properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelLane> lanes = new ConcurrentHashMap<>();
+
+    public OpenAiAdmissionController(OpenAiProperties openAiProperties, MeterRegistry meterRegistry) {
+        this.properties = openAiProperties.getAdmission();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Waits until a call of about {@code estimatedTokens} may be sent to {@code model}.
+     *
+     * @throws RetryLaterException if the call would wait longer than allowed
+     */
+    public Permit acquire(String model, int estimatedTokens) {
+        if (!properties.isEnabled()) {
+            return new Permit(null);
+        }
+        ModelLane lane = lanes.computeIfAbsent(model, this::newLane);
+        lane.admit(estimatedTokens);
+        return new Permit(lane);
+    }
+
+    private ModelLane newLane(String model) {
+        ModelLane lane = new ModelLane(model);
+        Gauge.builder("roster.openai.admission.in.flight", lane, ModelLane::inFlight)
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("roster.openai.admission.queued", lane, ModelLane::queued)
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("roster.openai.admission.remaining.tokens", lane, ModelLane::remainingTokens)
+                .tag("model", model)
+                .register(meterRegistry);
+        return lane;
+    }
+
+    /**
+     * Parses OpenAI reset durations such as {@code 6m0s}, {@code 1.5s} or {@code 20ms}.
+     */
+    static Duration parseResetDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return found ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    /**
+     * Rate-limit state reported with an OpenAI response. Missing values are {@code -1} / {@code null}.
+     */
+    public record RateLimits(long remainingRequests, long remainingTokens, Duration resetRequests, Duration resetTokens) {
+
+        public static RateLimits fromHeaders(Function<String, Optional<String>> header) {
+            return new RateLimits(
+                    header.apply("x-ratelimit-remaining-requests").map(RateLimits::parseLong).orElse(-1L),
+                    header.apply("x-ratelimit-remaining-tokens").map(RateLimits::parseLong).orElse(-1L),
+                    header.apply("x-ratelimit-reset-requests").map(OpenAiAdmissionController::parseResetDuration).orElse(null),
+                    header.apply("x-ratelimit-reset-tokens").map(OpenAiAdmissionController::parseResetDuration).orElse(null));
+        }
+
+        private static long parseLong(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * A granted slot. Report the outcome with {@link #update(RateLimits)} or {@link #rateLimited(Duration)}
+     * and always {@link #close()} it.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final ModelLane lane;
+        private boolean closed;
+
+        private Permit(ModelLane lane) {
+            this.lane = lane;
+        }
+
+        public void update(RateLimits limits) {
+            if (lane != null) {
+                lane.update(limits);
+            }
+        }
+
+        /**
+         * Records a 429; the model takes no new calls until {@code retryAfter} has passed.
+         */
+        public void rateLimited(Duration retryAfter) {
+            if (lane != null) {
+                lane.pause(retryAfter);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (lane != null && !closed) {
+                closed = true;
+                lane.release();
+            }
+        }
+    }
+
+    private final class ModelLane {
+
+        private final String model;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final Deque<Object> queue = new ArrayDeque<>();
+        private int inFlight;
+        private long remainingRequests = -1;
+        private long remainingTokens = -1;
+        private long requestsResetAt;
+        private long tokensResetAt;
+        private long pausedUntil;
+
+        private ModelLane(String model) {
+            this.model = model;
+        }
+
+        void admit(int tokens) {
+            // A call never waits past the deadline of its conversion.
+            long maxWait = RosterDeadline.remainingOr(properties.getMaxQueueWait()).toNanos();
+            lock.lock();
+            try {
+                if (queue.isEmpty() && canStart(tokens)) {
+                    start(tokens);
+                    return;
+                }
+                if (queue.size() >= properties.getMaxQueuedPerModel()) {
+                    throw shed("queue_full", Duration.ofMillis(Math.max(1000, blockedForNanos(tokens) / 1_000_000)));
+                }
+                long blocked = blockedForNanos(tokens);
+                if (blocked > maxWait) {
+                    throw shed("rate_limited", Duration.ofNanos(blocked));
+                }
+                Object ticket = new Object();
+                queue.addLast(ticket);
+                long deadline = System.nanoTime() + maxWait;
+                try {
+                    while (queue.peekFirst() != ticket || !canStart(tokens)) {
+                        long now = System.nanoTime();
+                        long remaining = deadline - now;
+                        if (remaining <= 0) {
+                            throw shed("queue_timeout", Duration.ofNanos(Math.max(blockedForNanos(tokens), 1_000_000_000L)));
+                        }
+                        long wakeUp = Math.min(remaining, Math.max(1_000_000L, blockedForNanos(tokens)));
+                        changed.awaitNanos(inFlight >= properties.getMaxConcurrentPerModel() ? remaining : wakeUp);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw shed("interrupted", Duration.ofSeconds(1));
+                } finally {
+                    queue.remove(ticket);
+                    changed.signalAll();
+                }
+                start(tokens);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void start(int tokens) {
+            inFlight++;
+            if (remainingRequests > 0) {
+                remainingRequests--;
+            }
+            if (remainingTokens >= 0) {
+                remainingTokens = Math.max(0, remainingTokens - tokens);
+            }
+        }
+
+        private boolean canStart(int tokens) {
+            return inFlight < properties.getMaxConcurrentPerModel() && blockedForNanos(tokens) == 0;
+        }
+
+        /**
+         * How long the known rate limits block a call of {@code tokens}, ignoring concurrency.
+         */
+        private long blockedForNanos(int tokens) {
+            long now = System.nanoTime();
+            long blocked = Math.max(0, pausedUntil - now);
+            if (remainingRequests == 0 && requestsResetAt > now) {
+                blocked = Math.max(blocked, requestsResetAt - now);
+            }
+            if (remainingTokens >= 0 && remainingTokens < tokens && tokensResetAt > now) {
+                blocked = Math.max(blocked, tokensResetAt - now);
+            }
+            return blocked;
+        }
+
+        void update(RateLimits limits) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                if (limits.remainingRequests() >= 0) {
+                    remainingRequests = limits.remainingRequests();
+                    requestsResetAt = now + (limits.resetRequests() != null ? limits.resetRequests().toNanos() : 0);
+                }
+                if (limits.remainingTokens() >= 0) {
+                    remainingTokens = limits.remainingTokens();
+                    tokensResetAt = now + (limits.resetTokens() != null ? limits.resetTokens().toNanos() : 0);
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void pause(Duration retryAfter) {
+            lock.lock();
+            try {
+                pausedUntil = Math.max(pausedUntil, System.nanoTime() + retryAfter.toNanos());
+                meterRegistry.counter("roster.openai.admission.rate.limited", "model", model).increment();
+                log.warn("OpenAI rate limited model={} retry_after_ms={}", model, retryAfter.toMillis());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private RetryLaterException shed(String reason, Duration retryAfter) {
+            meterRegistry.counter("roster.openai.admission.shed", "model", model, "reason", reason).increment();
+            log.warn("OpenAI call shed model={} reason={} queued={} in_flight={} retry_after_ms={}",
+                    model, reason, queue.size(), inFlight, retryAfter.toMillis());
+            return new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE, "OpenAI capacity exhausted, retry later", retryAfter);
+        }
+
+        double inFlight() {
+            return inFlight;
+        }
+
+        double queued() {
+            return queue.size();
+        }
+
+        double remainingTokens() {
+            return remainingTokens;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Runs OpenAI calls with hedging and budgeted retries. If a call has not produced its result (or,
+ * for streams, its first delta) by the configured latency percentile of recent calls of the same
+ * kind, a duplicate is sent; whichever claims the race first wins and the other is cancelled.
+ * Transient failures before a winner is known are retried with full-jitter backoff. Hedges and
+ * retries each draw from an instance-wide budget proportional to the number of calls, so they cannot
+ * multiply load during an outage.
+ */
+@Component
+public class OpenAiCallHedger {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiCallHedger.class);
+    private static final int BUDGET_RESERVE = 10;
+    private static final int BUDGET_MAX = 100;
+    private static final ThreadLocal<BooleanSupplier> CANCELLED = new ThreadLocal<>();
+
+    private final OpenAiProperties.Hedging hedging;
+    private final OpenAiProperties.Retry retry;
+    private final MeterRegistry meterRegistry;
+    private final CallBudget hedgeBudget;
+    private final CallBudget retryBudget;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService attempts = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OpenAiCallHedger(OpenAiProperties properties, MeterRegistry meterRegistry) {
+        this.hedging = properties.getHedging();
+        this.retry = properties.getRetry();
+        this.meterRegistry = meterRegistry;
+        this.hedgeBudget = new CallBudget(hedging.getBudgetRatio(), BUDGET_RESERVE, BUDGET_MAX);
+        this.retryBudget = new CallBudget(retry.getBudgetRatio(), BUDGET_RESERVE, BUDGET_MAX);
+        Gauge.builder("roster.openai.hedge.budget", hedgeBudget, CallBudget::available)
+                .description("Hedge requests currently allowed by the budget")
+                .register(meterRegistry);
+        Gauge.builder("roster.openai.retry.budget", retryBudget, CallBudget::available)
+                .description("Retries currently allowed by the budget")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        attempts.shutdownNow();
+    }
+
+    /**
+     * Runs {@code attempt} until one copy succeeds. {@code operation} names the latency population
+     * used for the hedge delay (e.g. {@code ocr}, {@code parse_stream}).
+     */
+    public OpenAiRosterClient.OpenAiResult call(String operation, Attempt attempt) {
+        counter("roster.openai.calls", operation).increment();
+        hedgeBudget.deposit();
+        retryBudget.deposit();
+        int retries = 0;
+        while (true) {
+            try {
+                return race(operation, attempt);
+            } catch (ClaimedFailure ex) {
+                throw ex.getCause();
+            } catch (ResponseStatusException ex) {
+                if (!isTransient(ex) || retries >= retry.getMaxRetries() || RosterDeadline.expired()) {
+                    throw ex;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    counter("roster.openai.retry.budget.exhausted", operation).increment();
+                    throw ex;
+                }
+                retries++;
+                counter("roster.openai.retries", operation).increment();
+                long backoff = backoffMillis(retries);
+                if (remainingMillis() <= backoff) {
+                    // no time left for another attempt within the conversion deadline
+                    throw ex;
+                }
+                log.warn("OpenAI call retry operation={} attempt={} status={} backoff_ms={}",
+                        operation, retries, ex.getStatusCode().value(), backoff);
+                sleep(backoff);
+            }
+        }
+    }
+
+    private OpenAiRosterClient.OpenAiResult race(String operation, Attempt attempt) {
+        Race race = new Race();
+        if (!hedging.isEnabled()) {
+            return race.runDirect(operation, attempt);
+        }
+        race.launch(operation, attempt, false);
+        try {
+            return race.await(hedgeDelay(operation).toMillis());
+        } catch (TimeoutException ex) {
+            if (hedgeBudget.tryWithdraw()) {
+                counter("roster.openai.hedges", operation).increment();
+                log.info("OpenAI call hedged operation={} delay_ms={}", operation, hedgeDelay(operation).toMillis());
+                race.launch(operation, attempt, true);
+            } else {
+                counter("roster.openai.hedge.budget.exhausted", operation).increment();
+            }
+        }
+        try {
+            return race.await(remainingMillis());
+        } catch (TimeoutException ex) {
+            race.cancelLosers();
+            throw RosterDeadline.exceeded("OpenAI call");
+        } catch (RuntimeException ex) {
+            race.cancelLosers();
+            throw ex;
+        }
+    }
+
+    /**
+     * How long to wait for a winner: until the conversion deadline, or indefinitely without one.
+     */
+    private static long remainingMillis() {
+        RosterDeadline deadline = RosterDeadline.current();
+        return deadline == null ? Long.MAX_VALUE : Math.max(1, deadline.remaining().toMillis());
+    }
+
+    /**
+     * Whether the attempt running on this thread lost a hedge race or was abandoned. Its failure
+     * (typically the interrupted HTTP call surfacing as 502) and its latency say nothing about the
+     * model, so the circuit breaker and model router must not record it.
+     */
+    public static boolean attemptCancelled() {
+        BooleanSupplier cancelled = CANCELLED.get();
+        return cancelled != null ? cancelled.getAsBoolean() : Thread.currentThread().isInterrupted();
+    }
+
+    Duration hedgeDelay(String operation) {
+        LatencyWindow window = latencies.get(operation);
+        if (window == null || window.size() < hedging.getMinSamples()) {
+            return hedging.getInitialDelay();
+        }
+        long percentile = window.percentile(hedging.getPercentile());
+        return Duration.ofMillis(Math.max(hedging.getMinDelay().toMillis(), percentile));
+    }
+
+    private void recordLatency(String operation, long millis) {
+        latencies.computeIfAbsent(operation, key -> new LatencyWindow(hedging.getWindowSize())).record(millis);
+    }
+
+    private static boolean isTransient(ResponseStatusException ex) {
+        if (ex instanceof RetryLaterException) {
+            // shed by local admission control; retrying would only queue again
+            return false;
+        }
+        int status = ex.getStatusCode().value();
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    private long backoffMillis(int retryNumber) {
+        long cap = retry.getMaxDelay().toMillis();
+        long exponential = retry.getBaseDelay().toMillis() << Math.min(20, retryNumber - 1);
+        return ThreadLocalRandom.current().nextLong(Math.min(cap, exponential) + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "interrupted while retrying OpenAI call");
+        }
+    }
+
+    private Counter wastedTokens(String operation) {
+        return Counter.builder("roster.openai.hedge.wasted.tokens")
+                .description("Tokens spent on hedged copies that lost the race (input tokens estimated for cancelled copies)")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation);
+    }
+
+    /**
+     * One copy of an OpenAI call. Streaming attempts call {@link Claim#claim()} before forwarding
+     * their first delta and stop when it returns {@code false}; other attempts simply return and are
+     * claimed by the hedger.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        OpenAiRosterClient.OpenAiResult run(Claim claim);
+    }
+
+    @FunctionalInterface
+    public interface Claim {
+        /**
+         * Makes this attempt the winner if no other attempt has won yet; returns whether it is the winner.
+         */
+        boolean claim();
+    }
+
+    /**
+     * Thrown by a streaming attempt that lost the race.
+     */
+    public static final class LostRaceException extends RuntimeException {
+        public LostRaceException() {
+            super("hedged attempt lost the race", null, false, false);
+        }
+    }
+
+    /**
+     * A failure of the winning attempt; it may already have emitted output, so it is not retried.
+     */
+    private static final class ClaimedFailure extends RuntimeException {
+        private ClaimedFailure(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    private final class Race {
+
+        private final CompletableFuture<OpenAiRosterClient.OpenAiResult> outcome = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final List<Future<?>> running = new ArrayList<>();
+        private int launched;
+        private int failed;
+        private int cancelledInFlight;
+        private boolean hedged;
+        private volatile boolean abandoned;
+
+        OpenAiRosterClient.OpenAiResult runDirect(String operation, Attempt attempt) {
+            long start = System.nanoTime();
+            AtomicBoolean mine = new AtomicBoolean();
+            try {
+                OpenAiRosterClient.OpenAiResult result = attempt.run(() -> {
+                    mine.set(true);
+                    return true;
+                });
+                recordLatency(operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            } catch (RuntimeException ex) {
+                throw mine.get() ? new ClaimedFailure(ex) : ex;
+            }
+        }
+
+        synchronized void launch(String operation, Attempt attempt, boolean hedge) {
+            if (outcome.isDone() || claimed.get()) {
+                return;
+            }
+            int index = launched++;
+            hedged |= hedge;
+            running.add(attempts.submit(RosterDeadline.wrap(() -> runContender(operation, attempt, hedge, index))));
+        }
+
+        private void runContender(String operation, Attempt attempt, boolean hedge, int index) {
+            long start = System.nanoTime();
+            AtomicBoolean mine = new AtomicBoolean();
+            CANCELLED.set(() -> !mine.get()
+                    && (claimed.get() || abandoned || Thread.currentThread().isInterrupted()));
+            Claim claim = () -> {
+                if (mine.get()) {
+                    return true;
+                }
+                if (claimed.compareAndSet(false, true)) {
+                    mine.set(true);
+                    cancelOthers(index);
+                    recordLatency(operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    if (hedged) {
+                        counter("roster.openai.hedge.wins", operation).increment();
+                        meterRegistry.counter("roster.openai.hedge.winner", "operation", operation,
+                                "winner", hedge ? "hedge" : "primary").increment();
+                    }
+                    return true;
+                }
+                return false;
+            };
+            try {
+                OpenAiRosterClient.OpenAiResult result = attempt.run(claim);
+                if (claim.claim()) {
+                    // Copies cancelled mid-flight had already sent the same prompt; bill them its input size.
+                    int cancelled = cancelledInFlight();
+                    if (cancelled > 0 && result.usage() != null) {
+                        wastedTokens(operation).increment((double) cancelled * result.usage().getInputTokens());
+                    }
+                    outcome.complete(result);
+                } else {
+                    // Finished after the winner: its tokens were spent for nothing, but its latency is real.
+                    recordLatency(operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    wastedTokens(operation).increment(result.usage() != null ? result.usage().getEffectiveTotal() : 0);
+                }
+            } catch (LostRaceException ex) {
+                counter("roster.openai.hedge.cancelled", operation).increment();
+            } catch (RuntimeException ex) {
+                if (mine.get()) {
+                    outcome.completeExceptionally(new ClaimedFailure(ex));
+                } else if (attemptCancelled()) {
+                    counter("roster.openai.hedge.cancelled", operation).increment();
+                } else {
+                    failed(ex);
+                }
+            } finally {
+                CANCELLED.remove();
+            }
+        }
+
+        private synchronized void failed(RuntimeException ex) {
+            failed++;
+            if (failed >= launched) {
+                outcome.completeExceptionally(ex);
+            }
+        }
+
+        OpenAiRosterClient.OpenAiResult await(long timeoutMillis) throws TimeoutException {
+            try {
+                return timeoutMillis == Long.MAX_VALUE ? outcome.get() : outcome.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelLosers();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "interrupted while waiting for OpenAI");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+
+        synchronized void cancelLosers() {
+            abandoned = true;
+            cancelOthers(-1);
+        }
+
+        private synchronized void cancelOthers(int winner) {
+            for (int i = 0; i < running.size(); i++) {
+                if (i != winner && running.get(i).cancel(true)) {
+                    cancelledInFlight++;
+                }
+            }
+        }
+
+        private synchronized int cancelledInFlight() {
+            return cancelledInFlight;
+        }
+    }
+}
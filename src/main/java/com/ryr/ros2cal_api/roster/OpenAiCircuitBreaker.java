@@ -0,0 +1,205 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Circuit breaker per OpenAI model. When the failure rate of the last {@code window-size} calls
+ * reaches the threshold, calls to that model fail immediately with 503 for {@code open-duration};
+ * then one trial call decides whether the breaker closes again or stays open.
+ */
+@Component
+public class OpenAiCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiCircuitBreaker.class);
+
+    private final OpenAiProperties.CircuitBreaker properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelCircuit> circuits = new ConcurrentHashMap<>();
+
+    public OpenAiCircuitBreaker(OpenAiProperties openAiProperties, MeterRegistry meterRegistry) {
+        this.properties = openAiProperties.getCircuitBreaker();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code call} unless the circuit of {@code model} is open, and records its outcome.
+     *
+     * @throws RetryLaterException with 503 while the circuit is open
+     */
+    public <T> T execute(String model, Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        ModelCircuit circuit = circuits.computeIfAbsent(model, this::newCircuit);
+        boolean trial = circuit.acquire();
+        try {
+            T result = call.get();
+            circuit.record(true, trial);
+            return result;
+        } catch (ResponseStatusException ex) {
+            if (isFailure(ex) && !RosterDeadline.expired() && !OpenAiCallHedger.attemptCancelled()) {
+                circuit.record(false, trial);
+            } else {
+                circuit.release(trial);
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            circuit.release(trial);
+            throw ex;
+        }
+    }
+
+    /**
+     * Provider failures count; client errors, rate limits, local rejections and calls cut short by
+     * the conversion deadline or by a winning hedge say nothing about whether OpenAI is healthy.
+     */
+    private static boolean isFailure(ResponseStatusException ex) {
+        if (ex instanceof RetryLaterException) {
+            return false;
+        }
+        int status = ex.getStatusCode().value();
+        return status == 408 || status >= 500;
+    }
+
+    private ModelCircuit newCircuit(String model) {
+        ModelCircuit circuit = new ModelCircuit(model);
+        Gauge.builder("roster.openai.circuit.state", circuit, ModelCircuit::stateValue)
+                .description("Circuit state per model: 0 closed, 1 half-open, 2 open")
+                .tag("model", model)
+                .register(meterRegistry);
+        return circuit;
+    }
+
+    private enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final class ModelCircuit {
+
+        private final String model;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final boolean[] outcomes = new boolean[Math.max(1, properties.getWindowSize())];
+        private int recorded;
+        private int next;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openUntil;
+        private boolean trialRunning;
+
+        private ModelCircuit(String model) {
+            this.model = model;
+        }
+
+        /**
+         * Returns whether the caller is the half-open trial call.
+         */
+        boolean acquire() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                if (state == State.OPEN && now >= openUntil) {
+                    transition(State.HALF_OPEN);
+                }
+                if (state == State.CLOSED) {
+                    return false;
+                }
+                if (state == State.HALF_OPEN && !trialRunning) {
+                    trialRunning = true;
+                    return true;
+                }
+                long retryNanos = state == State.OPEN ? openUntil - now : properties.getOpenDuration().toNanos();
+                meterRegistry.counter("roster.openai.circuit.rejected", "model", model).increment();
+                throw new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "OpenAI is currently unavailable, retry later", Duration.ofNanos(Math.max(0, retryNanos)));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void record(boolean success, boolean trial) {
+            lock.lock();
+            try {
+                if (trial) {
+                    trialRunning = false;
+                    if (success) {
+                        reset();
+                        transition(State.CLOSED);
+                    } else {
+                        open();
+                    }
+                    return;
+                }
+                if (state != State.CLOSED) {
+                    return;
+                }
+                if (recorded == outcomes.length) {
+                    if (!outcomes[next]) {
+                        failures--;
+                    }
+                } else {
+                    recorded++;
+                }
+                outcomes[next] = success;
+                if (!success) {
+                    failures++;
+                }
+                next = (next + 1) % outcomes.length;
+                if (recorded >= properties.getMinimumCalls()
+                        && failures >= properties.getFailureRateThreshold() * recorded) {
+                    open();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(boolean trial) {
+            if (!trial) {
+                return;
+            }
+            lock.lock();
+            try {
+                trialRunning = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void open() {
+            openUntil = System.nanoTime() + properties.getOpenDuration().toNanos();
+            log.warn("OpenAI circuit opened model={} failures={} calls={} open_ms={}",
+                    model, failures, recorded, properties.getOpenDuration().toMillis());
+            reset();
+            transition(State.OPEN);
+        }
+
+        private void reset() {
+            recorded = 0;
+            next = 0;
+            failures = 0;
+        }
+
+        private void transition(State target) {
+            if (state != target) {
+                log.info("OpenAI circuit state model={} from={} to={}", model, state, target);
+                state = target;
+            }
+        }
+
+        double stateValue() {
+            return state.ordinal();
+        }
+    }
+}
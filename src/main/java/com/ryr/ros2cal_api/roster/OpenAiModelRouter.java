@@ -0,0 +1,181 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Picks the OCR and parse models of a conversion. Sparse rosters (few text rows, little ink, a
+ * modest image) go to the light models, everything else to {@code ocr-model} and
+ * {@code parse-model}. A model whose recent calls fail too often or whose p95 latency is over the
+ * limit is passed over for the other model of its pair while that one is healthy, until those calls
+ * are older than {@code sample-max-age}. Latencies are kept per kind of call, so short repair crops
+ * and long roster transcriptions are not judged together.
+ */
+@Component
+public class OpenAiModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiModelRouter.class);
+
+    private final OpenAiProperties properties;
+    private final OpenAiProperties.Routing routing;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelHealth> health = new ConcurrentHashMap<>();
+
+    public OpenAiModelRouter(OpenAiProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.routing = properties.getRouting();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Models for one conversion, whether the roster counted as sparse, and the detail level the
+     * image is sent at (high unless set from the prepared image).
+     */
+    public record Route(String ocrModel, String parseModel, boolean sparse, RosterImageSizer.Detail imageDetail) {
+
+        public Route withImageDetail(RosterImageSizer.Detail detail) {
+            return new Route(ocrModel, parseModel, sparse, detail);
+        }
+    }
+
+    /**
+     * Chooses the models for an image of the given complexity; an unknown complexity is treated as
+     * a dense roster.
+     */
+    public Route route(RosterImagePreprocessor.Complexity complexity) {
+        if (!routing.isEnabled()) {
+            return new Route(properties.getOcrModel(), properties.getParseModel(), false, RosterImageSizer.Detail.HIGH);
+        }
+        boolean sparse = complexity != null && isSparse(complexity);
+        Route route = new Route(
+                choose("ocr", sparse, routing.getLightOcrModel(), properties.getOcrModel()),
+                choose("parse", sparse, routing.getLightParseModel(), properties.getParseModel()),
+                sparse,
+                RosterImageSizer.Detail.HIGH);
+        if (complexity != null) {
+            log.info("OpenAI route chosen sparse={} ocr_model={} parse_model={} width={} height={} text_rows={} ink_share={}",
+                    sparse, route.ocrModel(), route.parseModel(), complexity.width(), complexity.height(),
+                    complexity.textRows(), "%.3f".formatted(complexity.inkShare()));
+        }
+        return route;
+    }
+
+    /**
+     * The strong parse model, used when the output of the routed one has to be checked again.
+     */
+    public String strongParseModel() {
+        return properties.getParseModel();
+    }
+
+    /**
+     * Records a completed call of {@code model}; {@code kind} names the latency population (e.g.
+     * {@code ocr}, {@code parse_stream}).
+     */
+    public void recordSuccess(String model, String kind, long millis) {
+        health(model).record(kind, true, millis);
+    }
+
+    /**
+     * Records a failed call of {@code model}. Only provider failures count, as for the circuit
+     * breaker; rejections, client errors and calls cut short by the deadline are ignored.
+     */
+    public void recordFailure(String model, ResponseStatusException ex) {
+        if (ex instanceof RetryLaterException || RosterDeadline.expired()) {
+            return;
+        }
+        int status = ex.getStatusCode().value();
+        if (status == 408 || status >= 500) {
+            health(model).record(null, false, 0);
+        }
+    }
+
+    private boolean isSparse(RosterImagePreprocessor.Complexity complexity) {
+        return complexity.textRows() <= routing.getSparseMaxTextRows()
+                && complexity.inkShare() <= routing.getSparseMaxInkShare()
+                && (long) complexity.width() * complexity.height() <= routing.getSparseMaxPixels();
+    }
+
+    private String choose(String kind, boolean sparse, String light, String strong) {
+        String preferred = sparse ? light : strong;
+        String other = sparse ? strong : light;
+        String model = preferred;
+        String reason = sparse ? "sparse" : "dense";
+        if (!isHealthy(preferred) && isHealthy(other)) {
+            model = other;
+            reason = "unhealthy";
+            log.warn("OpenAI route avoids unhealthy model kind={} model={} instead={}", kind, preferred, other);
+        }
+        meterRegistry.counter("roster.openai.route", "kind", kind, "model", model, "reason", reason).increment();
+        return model;
+    }
+
+    private boolean isHealthy(String model) {
+        ModelHealth modelHealth = health.get(model);
+        return modelHealth == null || modelHealth.isHealthy();
+    }
+
+    private ModelHealth health(String model) {
+        return health.computeIfAbsent(model, key -> new ModelHealth(routing.getWindowSize()));
+    }
+
+    /**
+     * Recent outcomes of one model and its latencies per kind of call. Outcomes older than
+     * {@code sample-max-age} are ignored, since a model that is passed over gets no new ones.
+     */
+    private final class ModelHealth {
+
+        private final int windowSize;
+        private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+        private final boolean[] failures;
+        private final long[] recordedAt;
+        private int next;
+        private int size;
+
+        private ModelHealth(int windowSize) {
+            this.windowSize = windowSize;
+            this.failures = new boolean[Math.max(1, windowSize)];
+            this.recordedAt = new long[failures.length];
+        }
+
+        private void record(String kind, boolean success, long millis) {
+            if (success) {
+                latencies.computeIfAbsent(kind, key -> new LatencyWindow(windowSize)).record(millis);
+            }
+            synchronized (this) {
+                failures[next] = !success;
+                recordedAt[next] = System.nanoTime();
+                next = (next + 1) % failures.length;
+                size = Math.min(size + 1, failures.length);
+            }
+        }
+
+        private boolean isHealthy() {
+            long maxAge = routing.getSampleMaxAge().toNanos();
+            synchronized (this) {
+                long now = System.nanoTime();
+                int recent = 0;
+                int failed = 0;
+                for (int i = 0; i < size; i++) {
+                    if (now - recordedAt[i] <= maxAge) {
+                        recent++;
+                        if (failures[i]) {
+                            failed++;
+                        }
+                    }
+                }
+                if (recent >= routing.getMinSamples() && (double) failed / recent > routing.getMaxFailureRate()) {
+                    return false;
+                }
+            }
+            return latencies.values().stream().map(window -> window.recent(maxAge)).allMatch(window ->
+                    window.size() < routing.getMinSamples()
+                            || window.percentile(0.95) <= routing.getMaxP95Latency().toMillis());
+        }
+    }
+}
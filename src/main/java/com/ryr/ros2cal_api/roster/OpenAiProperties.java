@@ -27,6 +27,11 @@ public class OpenAiProperties {
      */
     private String parseModel = "gpt-5.1";
 
+    /**
+     * Model used when the image is parsed into JSON in a single call (single-call mode).
+     */
+    private String singleCallModel = "gpt-5.1";
+
     /**
      * HTTP request timeout for OpenAI calls.
      */
@@ -37,6 +42,47 @@ public class OpenAiProperties {
      */
     private boolean enableCache = true;
 
+    /**
+     * Maximum number of parse results kept in the local OCR-text parse cache (0 disables it).
+     */
+    private int parseCacheMaxEntries = 512;
+
+    /**
+     * Approximate memory budget for the local OCR-text parse cache, in bytes.
+     */
+    private long parseCacheMaxBytes = 32L * 1024 * 1024;
+
+    /**
+     * Ask the parse model for the short-key compact format under a strict JSON schema and expand it
+     * locally, instead of the verbose event JSON.
+     */
+    private boolean compactParse;
+
+    /**
+     * Duplicate requests for slow OCR and parse calls.
+     */
+    private final Hedging hedging = new Hedging();
+
+    /**
+     * Retries of transient OpenAI failures.
+     */
+    private final Retry retry = new Retry();
+
+    /**
+     * Local scheduling of OpenAI calls against per-model concurrency and rate limits.
+     */
+    private final Admission admission = new Admission();
+
+    /**
+     * Per-model circuit breaker that fails calls fast while OpenAI keeps failing.
+     */
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * Choice between light and strong OCR and parse models by roster complexity and model health.
+     */
+    private final Routing routing = new Routing();
+
     public String getApiKey() {
         return apiKey;
     }
@@ -69,6 +115,14 @@ public class OpenAiProperties {
         this.parseModel = parseModel;
     }
 
+    public String getSingleCallModel() {
+        return singleCallModel;
+    }
+
+    public void setSingleCallModel(String singleCallModel) {
+        this.singleCallModel = singleCallModel;
+    }
+
     public Duration getRequestTimeout() {
         return requestTimeout;
     }
@@ -84,4 +138,469 @@ public class OpenAiProperties {
     public void setEnableCache(boolean enableCache) {
         this.enableCache = enableCache;
     }
+
+    public int getParseCacheMaxEntries() {
+        return parseCacheMaxEntries;
+    }
+
+    public void setParseCacheMaxEntries(int parseCacheMaxEntries) {
+        this.parseCacheMaxEntries = parseCacheMaxEntries;
+    }
+
+    public long getParseCacheMaxBytes() {
+        return parseCacheMaxBytes;
+    }
+
+    public void setParseCacheMaxBytes(long parseCacheMaxBytes) {
+        this.parseCacheMaxBytes = parseCacheMaxBytes;
+    }
+
+    public boolean isCompactParse() {
+        return compactParse;
+    }
+
+    public void setCompactParse(boolean compactParse) {
+        this.compactParse = compactParse;
+    }
+
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public static class Routing {
+
+        /**
+         * Send sparse rosters to the light models; otherwise {@code ocr-model} and
+         * {@code parse-model} are always used.
+         */
+        private boolean enabled = true;
+
+        /**
+         * OCR model for sparse rosters.
+         */
+        private String lightOcrModel = "gpt-4.1-mini";
+
+        /**
+         * Parse model for OCR text of sparse rosters.
+         */
+        private String lightParseModel = "gpt-5-mini";
+
+        /**
+         * Most text rows a sparse roster image may have.
+         */
+        private int sparseMaxTextRows = 15;
+
+        /**
+         * Largest share of dark (text) pixels a sparse roster image may have.
+         */
+        private double sparseMaxInkShare = 0.06;
+
+        /**
+         * Largest image (width times height) that can count as sparse.
+         */
+        private long sparseMaxPixels = 6_000_000;
+
+        /**
+         * Number of most recent calls per model the latency and failure rate are computed over.
+         */
+        private int windowSize = 50;
+
+        /**
+         * Calls needed in the window before a model can be judged unhealthy.
+         */
+        private int minSamples = 10;
+
+        /**
+         * Failure rate (5xx, timeouts) above which the other model of the pair is preferred.
+         */
+        private double maxFailureRate = 0.2;
+
+        /**
+         * 95th percentile latency of any kind of call above which the other model of the pair is
+         * preferred; streamed calls are measured to their first output delta.
+         */
+        private Duration maxP95Latency = Duration.ofSeconds(30);
+
+        /**
+         * Calls older than this are left out of the failure rate and latencies, so a model that was
+         * passed over is tried again once its bad calls have aged out.
+         */
+        private Duration sampleMaxAge = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getLightOcrModel() {
+            return lightOcrModel;
+        }
+
+        public void setLightOcrModel(String lightOcrModel) {
+            this.lightOcrModel = lightOcrModel;
+        }
+
+        public String getLightParseModel() {
+            return lightParseModel;
+        }
+
+        public void setLightParseModel(String lightParseModel) {
+            this.lightParseModel = lightParseModel;
+        }
+
+        public int getSparseMaxTextRows() {
+            return sparseMaxTextRows;
+        }
+
+        public void setSparseMaxTextRows(int sparseMaxTextRows) {
+            this.sparseMaxTextRows = sparseMaxTextRows;
+        }
+
+        public double getSparseMaxInkShare() {
+            return sparseMaxInkShare;
+        }
+
+        public void setSparseMaxInkShare(double sparseMaxInkShare) {
+            this.sparseMaxInkShare = sparseMaxInkShare;
+        }
+
+        public long getSparseMaxPixels() {
+            return sparseMaxPixels;
+        }
+
+        public void setSparseMaxPixels(long sparseMaxPixels) {
+            this.sparseMaxPixels = sparseMaxPixels;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinSamples() {
+            return minSamples;
+        }
+
+        public void setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+        }
+
+        public double getMaxFailureRate() {
+            return maxFailureRate;
+        }
+
+        public void setMaxFailureRate(double maxFailureRate) {
+            this.maxFailureRate = maxFailureRate;
+        }
+
+        public Duration getMaxP95Latency() {
+            return maxP95Latency;
+        }
+
+        public void setMaxP95Latency(Duration maxP95Latency) {
+            this.maxP95Latency = maxP95Latency;
+        }
+
+        public Duration getSampleMaxAge() {
+            return sampleMaxAge;
+        }
+
+        public void setSampleMaxAge(Duration sampleMaxAge) {
+            this.sampleMaxAge = sampleMaxAge;
+        }
+    }
+
+    public static class CircuitBreaker {
+
+        /**
+         * Stop sending calls to a model whose recent calls mostly failed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of most recent call outcomes the failure rate is computed over.
+         */
+        private int windowSize = 20;
+
+        /**
+         * Outcomes needed in the window before the breaker may open.
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * Failure rate (5xx, timeouts, connection errors) that opens the breaker.
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * How long an open breaker rejects calls before letting a single trial call through.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+    }
+
+    public static class Admission {
+
+        /**
+         * Queue calls locally instead of sending everything straight to OpenAI.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Concurrent calls per model.
+         */
+        private int maxConcurrentPerModel = 32;
+
+        /**
+         * Calls waiting per model before new ones are rejected with 503.
+         */
+        private int maxQueuedPerModel = 200;
+
+        /**
+         * Longest a call may wait for capacity; calls that would wait longer are rejected right away.
+         */
+        private Duration maxQueueWait = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrentPerModel() {
+            return maxConcurrentPerModel;
+        }
+
+        public void setMaxConcurrentPerModel(int maxConcurrentPerModel) {
+            this.maxConcurrentPerModel = maxConcurrentPerModel;
+        }
+
+        public int getMaxQueuedPerModel() {
+            return maxQueuedPerModel;
+        }
+
+        public void setMaxQueuedPerModel(int maxQueuedPerModel) {
+            this.maxQueuedPerModel = maxQueuedPerModel;
+        }
+
+        public Duration getMaxQueueWait() {
+            return maxQueueWait;
+        }
+
+        public void setMaxQueueWait(Duration maxQueueWait) {
+            this.maxQueueWait = maxQueueWait;
+        }
+    }
+
+    public static class Hedging {
+
+        /**
+         * Send a duplicate request when a call is slower than usual and keep the first valid answer.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Latency percentile of recent calls after which a duplicate is sent.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Lower bound of the hedge delay.
+         */
+        private Duration minDelay = Duration.ofSeconds(2);
+
+        /**
+         * Hedge delay used until enough latency samples have been collected.
+         */
+        private Duration initialDelay = Duration.ofSeconds(30);
+
+        /**
+         * Latency samples kept per call type.
+         */
+        private int windowSize = 200;
+
+        /**
+         * Samples needed before the percentile replaces the initial delay.
+         */
+        private int minSamples = 20;
+
+        /**
+         * Hedges allowed per primary call, across the instance (0.1 = at most ~10% extra requests).
+         */
+        private double budgetRatio = 0.1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public Duration getInitialDelay() {
+            return initialDelay;
+        }
+
+        public void setInitialDelay(Duration initialDelay) {
+            this.initialDelay = initialDelay;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinSamples() {
+            return minSamples;
+        }
+
+        public void setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+    }
+
+    public static class Retry {
+
+        /**
+         * Retries per call after a transient failure (429, 5xx, timeouts).
+         */
+        private int maxRetries = 2;
+
+        /**
+         * Base of the exponential backoff; the actual delay is drawn uniformly below it (full jitter).
+         */
+        private Duration baseDelay = Duration.ofMillis(500);
+
+        /**
+         * Upper bound of a single backoff.
+         */
+        private Duration maxDelay = Duration.ofSeconds(8);
+
+        /**
+         * Retries allowed per primary call, across the instance.
+         */
+        private double budgetRatio = 0.2;
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getBaseDelay() {
+            return baseDelay;
+        }
+
+        public void setBaseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+    }
 }
@@ -1,16 +1,34 @@
 package com.ryr.ros2cal_api.roster;
 
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openai.client.OpenAIClient;
+import com.openai.core.JsonValue;
+import com.openai.core.RequestOptions;
+import com.openai.core.Timeout;
+import com.openai.core.http.Headers;
+import com.openai.core.http.HttpResponseFor;
+import com.openai.core.http.StreamResponse;
 import com.openai.errors.OpenAIException;
 import com.openai.errors.OpenAIServiceException;
 import com.openai.models.responses.Response;
 import com.openai.models.responses.ResponseCreateParams;
+import com.openai.models.responses.ResponseFormatTextJsonSchemaConfig;
 import com.openai.models.responses.ResponseInputImage;
 import com.openai.models.responses.ResponseInputItem;
+import com.openai.models.responses.ResponseStreamEvent;
+import com.openai.models.responses.ResponseTextConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Map;
@@ -26,19 +44,59 @@ public class OpenAiRosterClient {
 
     private final OpenAIClient openAIClient;
     private final OpenAiProperties properties;
+    private final OpenAiCallHedger hedger;
+    private final OpenAiAdmissionController admission;
+    private final OpenAiCircuitBreaker circuitBreaker;
+    private final OpenAiModelRouter modelRouter;
+    private final ObjectMapper objectMapper;
 
-    public OpenAiRosterClient(OpenAIClient openAIClient, OpenAiProperties properties) {
+    public OpenAiRosterClient(
+            OpenAIClient openAIClient,
+            OpenAiProperties properties,
+            OpenAiCallHedger hedger,
+            OpenAiAdmissionController admission,
+            OpenAiCircuitBreaker circuitBreaker,
+            OpenAiModelRouter modelRouter,
+            ObjectMapper objectMapper) {
         this.openAIClient = openAIClient;
         this.properties = properties;
+        this.hedger = hedger;
+        this.admission = admission;
+        this.circuitBreaker = circuitBreaker;
+        this.modelRouter = modelRouter;
+        this.objectMapper = objectMapper;
     }
 
-    public OpenAiResult ocrImage(byte[] pngBytes) {
+    /**
+     * Transcribes the roster image with {@code model} (see {@link OpenAiModelRouter}), sending it at
+     * {@code detail} (see {@link RosterImageSizer}).
+     */
+    public OpenAiResult ocrImage(byte[] pngBytes, String model, RosterImageSizer.Detail detail) {
         ensureApiKey();
+        ResponseCreateParams params = buildOcrParams(pngBytes, model, detail);
+        int estimate = OpenAiTokenEstimator.ocrCall(pngBytes, detail);
+        int predictedInput = OpenAiTokenEstimator.ocrInput(pngBytes, detail);
+        return hedger.call("ocr", claim -> logImageTokens("OpenAI OCR", pngBytes, detail, predictedInput,
+                toOcrResult(execute("ocr", params, model, estimate))));
+    }
+
+    /**
+     * Same as {@link #ocrImage(byte[], String, RosterImageSizer.Detail)} but streams the response,
+     * passing each output text delta to {@code onDelta} as it arrives.
+     */
+    public OpenAiResult ocrImageStreaming(
+            byte[] pngBytes, String model, RosterImageSizer.Detail detail, Consumer<String> onDelta) {
+        ensureApiKey();
+        ResponseCreateParams params = buildOcrParams(pngBytes, model, detail);
+        int estimate = OpenAiTokenEstimator.ocrCall(pngBytes, detail);
+        int predictedInput = OpenAiTokenEstimator.ocrInput(pngBytes, detail);
+        return hedger.call("ocr_stream", claim -> logImageTokens("OpenAI OCR", pngBytes, detail, predictedInput,
+                toOcrResult(executeStreaming("ocr_stream", params, model, estimate, claimed(claim, onDelta)))));
+    }
+
+    private ResponseCreateParams buildOcrParams(byte[] pngBytes, String model, RosterImageSizer.Detail detail) {
         String encoded = Base64.getEncoder().encodeToString(pngBytes);
-        ResponseInputImage image = ResponseInputImage.builder()
-                .imageUrl("data:image/png;base64," + encoded)
-                .detail(ResponseInputImage.Detail.HIGH)
-                .build();
+        ResponseInputImage image = pngInput(encoded, detail);
 
         ResponseInputItem system = ResponseInputItem.ofMessage(ResponseInputItem.Message.builder()
                 .role(ResponseInputItem.Message.Role.SYSTEM)
@@ -51,21 +109,25 @@ public class OpenAiRosterClient {
                 .build());
 
         ResponseCreateParams.Builder paramsBuilder = ResponseCreateParams.builder()
-                .model(properties.getOcrModel())
+                .model(model)
                 .temperature(0.0)
                 .topP(1.0)
                 .inputOfResponse(List.of(system, user));
         String cacheKey = applyCacheControl(paramsBuilder);
         ResponseCreateParams params = paramsBuilder.build();
         log.info(
-                "OpenAI OCR request model={} cache_key={} system_prompt={} user_prompt={} image_bytes={} image_base64_chars={}",
-                properties.getOcrModel(),
+                "OpenAI OCR request model={} detail={} cache_key={} system_prompt={} user_prompt={} image_bytes={} image_base64_chars={}",
+                model,
+                detail,
                 cacheKey,
                 truncateText(RosterPrompts.SYSTEM_PROMPT_OCR),
                 truncateText("Transcribe the roster in this image exactly as text."),
                 pngBytes.length,
                 encoded.length());
-        Response response = execute(params);
+        return params;
+    }
+
+    private OpenAiResult toOcrResult(Response response) {
         String outputText = extractOutputText(response);
         log.info("OpenAI OCR response output_chars={} output_text={}", outputText.length(), truncateText(outputText));
         CallUsage usage = extractUsage(response);
@@ -73,51 +135,377 @@ public class OpenAiRosterClient {
         return new OpenAiResult(outputText, usage);
     }
 
-    public OpenAiResult parseRosterText(String rosterText) {
+    private static ResponseInputImage pngInput(String encoded, RosterImageSizer.Detail detail) {
+        return ResponseInputImage.builder()
+                .imageUrl("data:image/png;base64," + encoded)
+                .detail(switch (detail) {
+                    case LOW -> ResponseInputImage.Detail.LOW;
+                    case HIGH -> ResponseInputImage.Detail.HIGH;
+                    case AUTO -> ResponseInputImage.Detail.AUTO;
+                })
+                .build();
+    }
+
+    /**
+     * Logs the image tokens predicted for a call next to the input tokens OpenAI reported for it.
+     */
+    private static OpenAiResult logImageTokens(String label, byte[] pngBytes, RosterImageSizer.Detail detail,
+            int predictedInput, OpenAiResult result) {
+        int[] size = OpenAiTokenEstimator.pngSize(pngBytes);
+        log.info("{} image tokens detail={} width={} height={} predicted_image_tokens={} predicted_input_tokens={} "
+                        + "input_tokens={}",
+                label, detail, size[0], size[1], OpenAiTokenEstimator.imageTokens(pngBytes, detail), predictedInput,
+                result.usage() != null ? result.usage().getInputTokens() : 0);
+        return result;
+    }
+
+    /**
+     * Single-call mode: sends the image with the parse instructions and returns event JSON, without
+     * an OCR text round trip.
+     */
+    public OpenAiResult parseRosterImage(byte[] pngBytes, RosterImageSizer.Detail detail) {
+        ensureApiKey();
+        ResponseCreateParams params = buildImageParseParams(pngBytes, detail);
+        int estimate = OpenAiTokenEstimator.singleCall(pngBytes, properties.isCompactParse(), detail);
+        int predictedInput = OpenAiTokenEstimator.singleCallInput(pngBytes, properties.isCompactParse(), detail);
+        return hedger.call("single", claim -> logImageTokens("OpenAI single-call", pngBytes, detail, predictedInput,
+                requireEventsJson(toParseResult(execute("single", params, properties.getSingleCallModel(), estimate)))));
+    }
+
+    /**
+     * Same as {@link #parseRosterImage(byte[], RosterImageSizer.Detail)} but streams the response,
+     * passing each output text delta of the event JSON to {@code onDelta} as it arrives.
+     */
+    public OpenAiResult parseRosterImageStreaming(
+            byte[] pngBytes, RosterImageSizer.Detail detail, Consumer<String> onDelta) {
         ensureApiKey();
+        ResponseCreateParams params = buildImageParseParams(pngBytes, detail);
+        int estimate = OpenAiTokenEstimator.singleCall(pngBytes, properties.isCompactParse(), detail);
+        int predictedInput = OpenAiTokenEstimator.singleCallInput(pngBytes, properties.isCompactParse(), detail);
+        return hedger.call("single_stream", claim -> logImageTokens("OpenAI single-call", pngBytes, detail,
+                predictedInput, requireEventsJson(toParseResult(executeStreaming("single_stream",
+                        params, properties.getSingleCallModel(), estimate, claimed(claim, parseDeltas(onDelta)))))));
+    }
+
+    private ResponseCreateParams buildImageParseParams(byte[] pngBytes, RosterImageSizer.Detail detail) {
+        boolean compact = properties.isCompactParse();
+        String systemPrompt = compact
+                ? RosterPrompts.SYSTEM_PROMPT_PARSE_IMAGE_COMPACT
+                : RosterPrompts.SYSTEM_PROMPT_PARSE_IMAGE;
+        String encoded = Base64.getEncoder().encodeToString(pngBytes);
         ResponseInputItem system = ResponseInputItem.ofMessage(ResponseInputItem.Message.builder()
                 .role(ResponseInputItem.Message.Role.SYSTEM)
-                .addInputTextContent(RosterPrompts.SYSTEM_PROMPT_PARSE)
+                .addInputTextContent(systemPrompt)
+                .build());
+        ResponseInputItem user = ResponseInputItem.ofMessage(ResponseInputItem.Message.builder()
+                .role(ResponseInputItem.Message.Role.USER)
+                .addInputTextContent("Convert the roster in this image.")
+                .addContent(pngInput(encoded, detail))
+                .build());
+        ResponseCreateParams.Builder paramsBuilder = ResponseCreateParams.builder()
+                .model(properties.getSingleCallModel())
+                .temperature(0.0)
+                .topP(1.0)
+                .inputOfResponse(List.of(system, user));
+        if (compact) {
+            paramsBuilder.text(compactParseFormat());
+        }
+        String cacheKey = applyCacheControl(paramsBuilder);
+        ResponseCreateParams params = paramsBuilder.build();
+        log.info(
+                "OpenAI single-call request model={} compact={} detail={} cache_key={} image_bytes={} image_base64_chars={}",
+                properties.getSingleCallModel(),
+                compact,
+                detail,
+                cacheKey,
+                pngBytes.length,
+                encoded.length());
+        return params;
+    }
+
+    /**
+     * Parses roster OCR text into event JSON with {@code model} (see {@link OpenAiModelRouter}).
+     */
+    public OpenAiResult parseRosterText(String rosterText, String model) {
+        ensureApiKey();
+        ResponseCreateParams params = buildParseParams(rosterText, model);
+        int estimate = OpenAiTokenEstimator.parseCall(rosterText, properties.isCompactParse());
+        return hedger.call("parse",
+                claim -> requireEventsJson(toParseResult(execute("parse", params, model, estimate))));
+    }
+
+    /**
+     * Same as {@link #parseRosterText(String, String)} but streams the response, passing each output
+     * text delta to {@code onDelta} as it arrives.
+     */
+    public OpenAiResult parseRosterTextStreaming(String rosterText, String model, Consumer<String> onDelta) {
+        ensureApiKey();
+        ResponseCreateParams params = buildParseParams(rosterText, model);
+        int estimate = OpenAiTokenEstimator.parseCall(rosterText, properties.isCompactParse());
+        return hedger.call("parse_stream",
+                claim -> requireEventsJson(toParseResult(executeStreaming("parse_stream",
+                        params, model, estimate, claimed(claim, parseDeltas(onDelta))))));
+    }
+
+    /**
+     * In compact mode, turns the compact deltas of one streaming attempt into canonical event JSON.
+     */
+    private Consumer<String> parseDeltas(Consumer<String> onDelta) {
+        return properties.isCompactParse() ? RosterCompactEvents.expandingDeltas(objectMapper, onDelta) : onDelta;
+    }
+
+    /**
+     * Forwards deltas only from the attempt that won the hedging race; a losing stream is aborted.
+     */
+    private static Consumer<String> claimed(OpenAiCallHedger.Claim claim, Consumer<String> onDelta) {
+        return delta -> {
+            if (!claim.claim()) {
+                throw new OpenAiCallHedger.LostRaceException();
+            }
+            onDelta.accept(delta);
+        };
+    }
+
+    /**
+     * Rejects parse output that is not a JSON object with an {@code events} array, so a hedged copy
+     * or a retry can still deliver a usable answer.
+     */
+    private OpenAiResult requireEventsJson(OpenAiResult result) {
+        try {
+            JsonNode root = objectMapper.readTree(result.outputText());
+            if (root != null && root.path("events").isArray()) {
+                return result;
+            }
+        } catch (JsonProcessingException ex) {
+            // fall through
+        }
+        log.warn("OpenAI parse response rejected output_chars={}", result.outputText().length());
+        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI response was not valid JSON");
+    }
+
+    private String expandCompact(String compactText) {
+        try {
+            String expanded = RosterCompactEvents.expand(objectMapper, compactText);
+            log.info("OpenAI compact parse expanded compact_chars={} expanded_chars={}",
+                    compactText.length(), expanded.length());
+            return expanded;
+        } catch (IllegalArgumentException ex) {
+            log.warn("OpenAI compact parse response rejected output_chars={} message={}",
+                    compactText.length(), ex.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI response was not valid compact output");
+        }
+    }
+
+    private ResponseCreateParams buildParseParams(String rosterText, String model) {
+        boolean compact = properties.isCompactParse();
+        String systemPrompt = compact ? RosterPrompts.SYSTEM_PROMPT_PARSE_COMPACT : RosterPrompts.SYSTEM_PROMPT_PARSE;
+        ResponseInputItem system = ResponseInputItem.ofMessage(ResponseInputItem.Message.builder()
+                .role(ResponseInputItem.Message.Role.SYSTEM)
+                .addInputTextContent(systemPrompt)
                 .build());
         ResponseInputItem user = ResponseInputItem.ofMessage(ResponseInputItem.Message.builder()
                 .role(ResponseInputItem.Message.Role.USER)
                 .addInputTextContent(rosterText)
                 .build());
         ResponseCreateParams.Builder paramsBuilder = ResponseCreateParams.builder()
-                .model(properties.getParseModel())
+                .model(model)
                 .temperature(0.0)
                 .topP(1.0)
                 .inputOfResponse(List.of(system, user));
+        if (compact) {
+            paramsBuilder.text(compactParseFormat());
+        }
         String cacheKey = applyCacheControl(paramsBuilder);
         ResponseCreateParams params = paramsBuilder.build();
         log.info(
-                "OpenAI parse request model={} cache_key={} system_prompt={} input_text={}",
-                properties.getParseModel(),
+                "OpenAI parse request model={} compact={} cache_key={} system_prompt={} input_text={}",
+                model,
+                compact,
                 cacheKey,
-                truncateText(RosterPrompts.SYSTEM_PROMPT_PARSE),
+                truncateText(systemPrompt),
                 truncateText(rosterText));
-        Response response = execute(params);
+        return params;
+    }
+
+    /**
+     * Strict structured output: the model can only produce JSON matching the compact schema.
+     */
+    private static ResponseTextConfig compactParseFormat() {
+        ResponseFormatTextJsonSchemaConfig.Schema.Builder schema = ResponseFormatTextJsonSchemaConfig.Schema.builder();
+        RosterCompactEvents.SCHEMA.forEach((key, value) -> schema.putAdditionalProperty(key, JsonValue.from(value)));
+        return ResponseTextConfig.builder()
+                .format(ResponseFormatTextJsonSchemaConfig.builder()
+                        .name("roster_events_compact")
+                        .schema(schema.build())
+                        .strict(true)
+                        .build())
+                .build();
+    }
+
+    private OpenAiResult toParseResult(Response response) {
         String outputText = extractOutputText(response);
         log.info("OpenAI parse response output_chars={} output_text={}", outputText.length(), truncateText(outputText));
+        if (properties.isCompactParse()) {
+            outputText = expandCompact(outputText);
+        }
         CallUsage usage = extractUsage(response);
         logUsage("OpenAI parse usage", usage);
         return new OpenAiResult(outputText, usage);
     }
 
-    private Response execute(ResponseCreateParams params) {
+    private Response execute(String operation, ResponseCreateParams params, String model, int estimatedTokens) {
+        RosterDeadline.check("OpenAI call");
+        AtomicLong sent = new AtomicLong();
+        return monitored(model, operation, sent, null, () -> circuitBreaker.execute(model, () -> {
+            try (OpenAiAdmissionController.Permit permit = admission.acquire(model, estimatedTokens)) {
+                sent.set(System.nanoTime());
+                try (HttpResponseFor<Response> response =
+                        openAIClient.withRawResponse().responses().create(params, requestOptions())) {
+                    permit.update(rateLimits(response.headers()));
+                    return response.parse();
+                } catch (OpenAIException ex) {
+                    throw translate(ex, permit);
+                }
+            }
+        }));
+    }
+
+    private Response executeStreaming(String operation,
+            ResponseCreateParams params, String model, int estimatedTokens, Consumer<String> onDelta) {
+        RosterDeadline.check("OpenAI call");
+        AtomicLong sent = new AtomicLong();
+        AtomicLong firstOutput = new AtomicLong();
+        Consumer<String> timed = delta -> {
+            firstOutput.compareAndSet(0, System.nanoTime());
+            onDelta.accept(delta);
+        };
+        return monitored(model, operation, sent, firstOutput, () -> circuitBreaker.execute(model, () -> {
+            try (OpenAiAdmissionController.Permit permit = admission.acquire(model, estimatedTokens)) {
+                sent.set(System.nanoTime());
+                try (HttpResponseFor<StreamResponse<ResponseStreamEvent>> response =
+                        openAIClient.withRawResponse().responses().createStreaming(params, requestOptions())) {
+                    permit.update(rateLimits(response.headers()));
+                    return readStream(response.parse(), timed);
+                } catch (OpenAIException ex) {
+                    throw translate(ex, permit);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Reports the latency or failure of a call to the model router, per {@code operation}: the time
+     * to the first output delta for streamed calls, which does not grow with the roster, and the whole
+     * call otherwise. Both are measured from {@code sent}, set once the call is admitted, so time spent
+     * queued for admission is not held against the model. Hedged copies cancelled because another copy
+     * won are not reported.
+     */
+    private Response monitored(String model, String operation, AtomicLong sent, AtomicLong firstOutput,
+            Supplier<Response> call) {
         try {
-            return openAIClient.responses().create(params);
-        } catch (OpenAIServiceException ex) {
-            log.error("OpenAI service error status={} message={}", ex.statusCode(), ex.getMessage());
-            HttpStatus status = HttpStatus.resolve(ex.statusCode());
+            Response response = call.get();
+            long end = firstOutput != null && firstOutput.get() != 0 ? firstOutput.get() : System.nanoTime();
+            modelRouter.recordSuccess(model, operation, (end - sent.get()) / 1_000_000);
+            return response;
+        } catch (ResponseStatusException ex) {
+            if (!OpenAiCallHedger.attemptCancelled()) {
+                modelRouter.recordFailure(model, ex);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Limits the call to what is left of the conversion deadline, at most {@code request-timeout}.
+     */
+    private RequestOptions requestOptions() {
+        Duration timeout = RosterDeadline.remainingOr(properties.getRequestTimeout());
+        if (timeout.isZero()) {
+            throw RosterDeadline.exceeded("OpenAI call");
+        }
+        return RequestOptions.builder()
+                .timeout(Timeout.builder().request(timeout).build())
+                .build();
+    }
+
+    private Response readStream(StreamResponse<ResponseStreamEvent> response, Consumer<String> onDelta) {
+        try (StreamResponse<ResponseStreamEvent> stream = response) {
+            Response completed = null;
+            Iterator<ResponseStreamEvent> events = stream.stream().iterator();
+            while (events.hasNext()) {
+                ResponseStreamEvent event = events.next();
+                event.outputTextDelta().ifPresent(delta -> onDelta.accept(delta.delta()));
+                if (event.completed().isPresent()) {
+                    completed = event.completed().get().response();
+                }
+                if (event.error().isPresent()) {
+                    log.error("OpenAI stream error message={}", event.error().get().message());
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI stream failed");
+                }
+                if (event.failed().isPresent() || event.incomplete().isPresent()) {
+                    log.error("OpenAI stream ended without completing the response");
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI response did not complete");
+                }
+            }
+            if (completed == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI stream ended unexpectedly");
+            }
+            return completed;
+        }
+    }
+
+    private static OpenAiAdmissionController.RateLimits rateLimits(Headers headers) {
+        return OpenAiAdmissionController.RateLimits.fromHeaders(name -> firstHeader(headers, name));
+    }
+
+    private static Optional<String> firstHeader(Headers headers, String name) {
+        List<String> values = headers.values(name);
+        return values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+
+    /**
+     * Delay OpenAI asked for with a 429: {@code retry-after-ms}, {@code retry-after}, or the longer
+     * of the rate-limit reset times; one second when none is given.
+     */
+    private static Duration retryAfter(Headers headers) {
+        Optional<String> millis = firstHeader(headers, "retry-after-ms");
+        Optional<String> seconds = firstHeader(headers, "retry-after");
+        try {
+            if (millis.isPresent()) {
+                return Duration.ofMillis((long) Double.parseDouble(millis.get().trim()));
+            }
+            if (seconds.isPresent()) {
+                return Duration.ofMillis((long) (Double.parseDouble(seconds.get().trim()) * 1000));
+            }
+        } catch (NumberFormatException ex) {
+            // HTTP-date form; fall back to the reset headers
+        }
+        OpenAiAdmissionController.RateLimits limits = rateLimits(headers);
+        Duration reset = Duration.ofSeconds(1);
+        for (Duration candidate : new Duration[] { limits.resetRequests(), limits.resetTokens() }) {
+            if (candidate != null && candidate.compareTo(reset) > 0) {
+                reset = candidate;
+            }
+        }
+        return reset;
+    }
+
+    private ResponseStatusException translate(OpenAIException ex, OpenAiAdmissionController.Permit permit) {
+        if (ex instanceof OpenAIServiceException serviceException) {
+            log.error("OpenAI service error status={} message={}", serviceException.statusCode(), ex.getMessage());
+            if (serviceException.statusCode() == 429) {
+                permit.rateLimited(retryAfter(serviceException.headers()));
+            } else {
+                permit.update(rateLimits(serviceException.headers()));
+            }
+            HttpStatus status = HttpStatus.resolve(serviceException.statusCode());
             if (status == null) {
                 status = HttpStatus.BAD_GATEWAY;
             }
-            throw new ResponseStatusException(status, ex.getMessage());
-        } catch (OpenAIException ex) {
-            log.error("OpenAI request failed", ex);
-            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed");
+            return new ResponseStatusException(status, ex.getMessage());
         }
+        log.error("OpenAI request failed", ex);
+        return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed");
     }
 
     private String extractOutputText(Response response) {
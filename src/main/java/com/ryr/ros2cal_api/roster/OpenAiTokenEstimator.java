@@ -0,0 +1,110 @@
+package com.ryr.ros2cal_api.roster;
+
+/**
+ * Rough token counts of OpenAI calls, known before the call is made. Used to queue calls against the
+ * token-per-minute budget; the real usage is reported by the API afterwards.
+ */
+public final class OpenAiTokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int IMAGE_BASE_TOKENS = 85;
+    private static final int IMAGE_TILE_TOKENS = 170;
+    private static final int IMAGE_TILE_SIZE = 512;
+    private static final int IMAGE_MAX_SIDE = 2048;
+    private static final int IMAGE_SHORT_SIDE = 768;
+    private static final int OCR_OUTPUT_TOKENS = 1500;
+    private static final int PARSE_OUTPUT_FACTOR = 3;
+    private static final int COMPACT_PARSE_OUTPUT_FACTOR = 1;
+    private static final int MESSAGE_OVERHEAD_TOKENS = 20;
+
+    private OpenAiTokenEstimator() {
+    }
+
+    public static int ocrCall(byte[] pngBytes, RosterImageSizer.Detail detail) {
+        return ocrInput(pngBytes, detail) + OCR_OUTPUT_TOKENS;
+    }
+
+    /**
+     * Input side of an OCR call: the image and the prompts.
+     */
+    public static int ocrInput(byte[] pngBytes, RosterImageSizer.Detail detail) {
+        return imageTokens(pngBytes, detail) + textTokens(RosterPrompts.SYSTEM_PROMPT_OCR) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    public static int parseCall(String rosterText) {
+        return parseCall(rosterText, false);
+    }
+
+    public static int parseCall(String rosterText, boolean compact) {
+        int input = textTokens(rosterText);
+        String prompt = compact ? RosterPrompts.SYSTEM_PROMPT_PARSE_COMPACT : RosterPrompts.SYSTEM_PROMPT_PARSE;
+        return textTokens(prompt) + input + MESSAGE_OVERHEAD_TOKENS
+                + input * (compact ? COMPACT_PARSE_OUTPUT_FACTOR : PARSE_OUTPUT_FACTOR);
+    }
+
+    /**
+     * Image, parse prompt and the event JSON of a roster the size of an average OCR transcription.
+     */
+    public static int singleCall(byte[] pngBytes, boolean compact, RosterImageSizer.Detail detail) {
+        return singleCallInput(pngBytes, compact, detail)
+                + OCR_OUTPUT_TOKENS * (compact ? COMPACT_PARSE_OUTPUT_FACTOR : PARSE_OUTPUT_FACTOR);
+    }
+
+    public static int singleCallInput(byte[] pngBytes, boolean compact, RosterImageSizer.Detail detail) {
+        String prompt = compact ? RosterPrompts.SYSTEM_PROMPT_PARSE_IMAGE_COMPACT : RosterPrompts.SYSTEM_PROMPT_PARSE_IMAGE;
+        return imageTokens(pngBytes, detail) + textTokens(prompt) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    /**
+     * Tokens of a high-detail image input: fit into 2048x2048, shortest side down to 768, then
+     * 170 tokens per 512px tile plus a fixed 85.
+     */
+    public static int imageTokens(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return IMAGE_BASE_TOKENS;
+        }
+        double scale = Math.min(1.0, (double) IMAGE_MAX_SIDE / Math.max(width, height));
+        double w = width * scale;
+        double h = height * scale;
+        double shortSide = Math.min(w, h);
+        if (shortSide > IMAGE_SHORT_SIDE) {
+            double shrink = IMAGE_SHORT_SIDE / shortSide;
+            w *= shrink;
+            h *= shrink;
+        }
+        int tiles = (int) (Math.ceil(w / IMAGE_TILE_SIZE) * Math.ceil(h / IMAGE_TILE_SIZE));
+        return IMAGE_BASE_TOKENS + IMAGE_TILE_TOKENS * tiles;
+    }
+
+    /**
+     * Tokens of an image sent with {@code detail}: a flat 85 at low detail, the high-detail count
+     * otherwise, since {@code auto} only picks low detail for images that are small anyway.
+     */
+    public static int imageTokens(int width, int height, RosterImageSizer.Detail detail) {
+        return detail == RosterImageSizer.Detail.LOW ? IMAGE_BASE_TOKENS : imageTokens(width, height);
+    }
+
+    public static int imageTokens(byte[] pngBytes, RosterImageSizer.Detail detail) {
+        int[] size = pngSize(pngBytes);
+        return imageTokens(size[0], size[1], detail);
+    }
+
+    static int textTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Reads width and height from the IHDR chunk of a PNG; returns zeros for anything else.
+     */
+    static int[] pngSize(byte[] pngBytes) {
+        if (pngBytes == null || pngBytes.length < 24 || (pngBytes[0] & 0xFF) != 0x89 || pngBytes[1] != 'P') {
+            return new int[] { 0, 0 };
+        }
+        return new int[] { readInt(pngBytes, 16), readInt(pngBytes, 20) };
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+}
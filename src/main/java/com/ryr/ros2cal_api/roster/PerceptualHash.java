@@ -0,0 +1,84 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * 256-bit difference hash (dHash) of a roster image. Re-compressed or re-saved copies of the
+ * same screenshot land within a few bits of each other, so similarity is the Hamming distance.
+ */
+public final class PerceptualHash {
+
+    public static final int BITS = 256;
+    private static final int WORDS = BITS / Long.SIZE;
+
+    private final long[] words;
+
+    private PerceptualHash(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Builds a hash from a row-major grid of grayscale samples that is one column wider than it is tall:
+     * each bit records whether a sample is brighter than its right-hand neighbour.
+     */
+    static PerceptualHash fromGrid(int[] gray, int columns, int rows) {
+        if ((columns - 1) * rows != BITS) {
+            throw new IllegalArgumentException("grid must yield " + BITS + " bits");
+        }
+        long[] words = new long[WORDS];
+        int bit = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns - 1; x++) {
+                if (gray[y * columns + x] > gray[y * columns + x + 1]) {
+                    words[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                bit++;
+            }
+        }
+        return new PerceptualHash(words);
+    }
+
+    public static PerceptualHash fromHex(String hex) {
+        byte[] bytes = HexFormat.of().parseHex(hex);
+        if (bytes.length != BITS / Byte.SIZE) {
+            throw new IllegalArgumentException("perceptual hash must be " + BITS + " bits");
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < bytes.length; i++) {
+            words[i / Long.BYTES] |= (bytes[i] & 0xFFL) << (Byte.SIZE * (i % Long.BYTES));
+        }
+        return new PerceptualHash(words);
+    }
+
+    public String toHex() {
+        byte[] bytes = new byte[BITS / Byte.SIZE];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i / Long.BYTES] >>> (Byte.SIZE * (i % Long.BYTES)));
+        }
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    public int distance(PerceptualHash other) {
+        int distance = 0;
+        for (int i = 0; i < WORDS; i++) {
+            distance += Long.bitCount(words[i] ^ other.words[i]);
+        }
+        return distance;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PerceptualHash hash && Arrays.equals(words, hash.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -0,0 +1,98 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BK-tree over perceptual hashes. A lookup only descends into children whose edge distance lies
+ * within the query radius, so it touches a small part of the tree. Not thread-safe.
+ */
+final class PerceptualHashTree<T> {
+
+    private Node<T> root;
+    private int size;
+
+    void add(PerceptualHash hash, T value) {
+        if (root == null) {
+            root = new Node<>(hash);
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = node.hash.distance(hash);
+            if (distance == 0) {
+                node.values.add(value);
+                size++;
+                return;
+            }
+            node = node.children.computeIfAbsent(distance, ignored -> new Node<>(hash));
+        }
+    }
+
+    /**
+     * Removes one value stored under {@code hash}. Its node stays in the tree as a routing point.
+     */
+    boolean remove(PerceptualHash hash, T value) {
+        Node<T> node = root;
+        while (node != null) {
+            int distance = node.hash.distance(hash);
+            if (distance == 0) {
+                if (node.values.remove(value)) {
+                    size--;
+                    return true;
+                }
+                return false;
+            }
+            node = node.children.get(distance);
+        }
+        return false;
+    }
+
+    /**
+     * Values whose hash lies within {@code radius} bits of {@code hash}, nearest first.
+     */
+    List<Match<T>> within(PerceptualHash hash, int radius) {
+        List<Match<T>> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = node.hash.distance(hash);
+            if (distance <= radius) {
+                for (T value : node.values) {
+                    matches.add(new Match<>(value, distance));
+                }
+            }
+            for (int edge = Math.max(1, distance - radius); edge <= distance + radius; edge++) {
+                Node<T> child = node.children.get(edge);
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+        matches.sort((left, right) -> Integer.compare(left.distance(), right.distance()));
+        return matches;
+    }
+
+    int size() {
+        return size;
+    }
+
+    record Match<T>(T value, int distance) {}
+
+    private static final class Node<T> {
+        private final PerceptualHash hash;
+        private final List<T> values = new ArrayList<>(1);
+        private final Map<Integer, Node<T>> children = new HashMap<>(4);
+
+        private Node(PerceptualHash hash) {
+            this.hash = hash;
+        }
+    }
+}
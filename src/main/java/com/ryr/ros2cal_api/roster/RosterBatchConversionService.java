@@ -0,0 +1,119 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Converts several screenshots of one roster concurrently and merges them into a single event list.
+ * Consecutive screenshots of a scrolling view are first stitched into one image so the overlap is
+ * neither paid for nor parsed twice. Each resulting image goes through {@link RosterConversionService}
+ * on its own, so caches, coalescing and pipelining apply per page.
+ */
+@Service
+public class RosterBatchConversionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterBatchConversionService.class);
+
+    private final RosterConversionService conversionService;
+    private final RosterImagePreprocessor imagePreprocessor;
+    private final RosterScreenshotStitcher stitcher;
+    private final RosterProperties.Stitching stitching;
+    private final Executor taskExecutor;
+
+    public RosterBatchConversionService(
+            RosterConversionService conversionService,
+            RosterImagePreprocessor imagePreprocessor,
+            RosterScreenshotStitcher stitcher,
+            RosterProperties rosterProperties,
+            @Qualifier("rosterTaskExecutor") Executor taskExecutor) {
+        this.conversionService = conversionService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.stitcher = stitcher;
+        this.stitching = rosterProperties.getStitching();
+        this.taskExecutor = taskExecutor;
+    }
+
+    public RosterParseResult parseRosters(List<byte[]> screenshots) {
+        return parseRosters(null, screenshots, RosterProgressListener.NONE);
+    }
+
+    /**
+     * Same as {@link #parseRosters(List)} on behalf of {@code ownerSub}, passing {@code listener} to the
+     * conversion of every page. Pages convert concurrently, so the listener must be thread-safe.
+     */
+    public RosterParseResult parseRosters(String ownerSub, List<byte[]> screenshots, RosterProgressListener listener) {
+        log.info("Roster batch parse start images={}", screenshots.size());
+        List<byte[]> images = stitching.isEnabled() && screenshots.size() > 1 ? stitch(screenshots) : screenshots;
+        List<CompletableFuture<RosterParseResult>> pages = new ArrayList<>();
+        try {
+            for (byte[] image : images) {
+                pages.add(CompletableFuture.supplyAsync(() -> conversionService.parseRoster(ownerSub, image, listener), taskExecutor));
+            }
+        } catch (RejectedExecutionException ex) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many conversions in progress");
+        }
+
+        List<List<Map<String, Object>>> parts = new ArrayList<>();
+        CallUsage ocrUsage = new CallUsage();
+        CallUsage parseUsage = new CallUsage();
+        for (int i = 0; i < pages.size(); i++) {
+            RosterParseResult page = join(pages.get(i), i);
+            parts.add(RosterEventMerger.events(page.getData()));
+            ocrUsage.add(page.getOcrUsage());
+            parseUsage.add(page.getParseUsage());
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        List<Map<String, Object>> events = RosterEventMerger.merge(parts);
+        data.put("events", events);
+        log.info("Roster batch parse end images={} converted_images={} events_count={}",
+                screenshots.size(), images.size(), events.size());
+        return new RosterParseResult(data, ocrUsage, parseUsage);
+    }
+
+    /**
+     * Returns one image per stitched segment. Decoding, stitching and encoding run as one task on the
+     * image executor, so the decoded screenshots never occupy the request thread or outlive the task.
+     */
+    private List<byte[]> stitch(List<byte[]> screenshots) {
+        try {
+            return imagePreprocessor.stitch(screenshots, stitcher);
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "failed to encode stitched image");
+        }
+    }
+
+    /**
+     * Returns the page's result, prefixing a rejection with the page number.
+     */
+    private static RosterParseResult join(CompletableFuture<RosterParseResult> page, int index) {
+        try {
+            return page.join();
+        } catch (CompletionException ex) {
+            // Keeps its Retry-After header; no page-specific advice to add.
+            if (ex.getCause() instanceof RetryLaterException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof ResponseStatusException cause) {
+                throw new ResponseStatusException(cause.getStatusCode(), "image " + (index + 1) + ": " + cause.getReason());
+            }
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The compact parse output format and its expansion into the canonical event structure. Compact
+ * events use one-letter keys and bare {@code HHMM} times on a single event date (see
+ * {@link RosterPrompts#SYSTEM_PROMPT_PARSE_COMPACT}); {@link #SCHEMA} is sent as a strict JSON
+ * schema so the model can only answer with well-formed output.
+ */
+public final class RosterCompactEvents {
+
+    private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    /**
+     * JSON schema of the compact output. Strict mode needs every property listed as required and no
+     * additional properties; optional values are nullable instead.
+     */
+    public static final Map<String, Object> SCHEMA = object(
+            "events", array(object(
+                    "d", string(),
+                    "s", string(),
+                    "e", string(),
+                    "t", string(),
+                    "w", Map.of("type", "boolean"),
+                    "l", nullableString(),
+                    "f", array(object(
+                            "n", string(),
+                            "o", string(),
+                            "s", string(),
+                            "d", string(),
+                            "e", string())),
+                    "x", array(object(
+                            "o", string(),
+                            "s", string(),
+                            "d", string(),
+                            "e", string())),
+                    "r", nullableString())));
+
+    private RosterCompactEvents() {
+    }
+
+    /**
+     * Expands a complete compact response into {@code {"events": [...]}} JSON.
+     *
+     * @throws IllegalArgumentException if the text is not valid compact output
+     */
+    public static String expand(ObjectMapper objectMapper, String compactJson) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(compactJson);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("compact output is not JSON", ex);
+        }
+        if (root == null || !root.path("events").isArray()) {
+            throw new IllegalArgumentException("compact output has no events array");
+        }
+        ObjectNode expanded = objectMapper.createObjectNode();
+        ArrayNode events = expanded.putArray("events");
+        for (JsonNode event : root.path("events")) {
+            events.add(expandEvent(objectMapper, event));
+        }
+        return expanded.toString();
+    }
+
+    /**
+     * Expands one compact event object into a canonical event. Flights and activities are each placed
+     * on the clock from the event start, and the end after the latest of them. An event the model
+     * flagged with an error ({@code r}) is kept without the dates and times it could not read.
+     *
+     * @throws IllegalArgumentException if a date or time of an unflagged event cannot be read
+     */
+    public static ObjectNode expandEvent(ObjectMapper objectMapper, JsonNode compact) {
+        boolean flagged = hasText(compact.path("r"));
+        Clock clock = new Clock(eventDate(compact.path("d").asText(), flagged), flagged);
+        ObjectNode event = objectMapper.createObjectNode();
+        putTime(event, "start_utc", clock.at(compact.path("s").asText()));
+        Clock latest = clock.copy();
+        ArrayNode flights = objectMapper.createArrayNode();
+        Clock flightClock = clock.copy();
+        for (JsonNode flight : compact.path("f")) {
+            ObjectNode expanded = flights.addObject();
+            expanded.put("flight_number", flight.path("n").asText());
+            expanded.put("departure_airport", flight.path("o").asText());
+            putTime(expanded, "departure_time_utc", flightClock.at(flight.path("s").asText()));
+            expanded.put("arrival_airport", flight.path("d").asText());
+            putTime(expanded, "arrival_time_utc", flightClock.at(flight.path("e").asText()));
+        }
+        latest.catchUp(flightClock);
+        ArrayNode activities = objectMapper.createArrayNode();
+        Clock activityClock = clock.copy();
+        for (JsonNode activity : compact.path("x")) {
+            ObjectNode expanded = activities.addObject();
+            expanded.put("start_place", activity.path("o").asText());
+            putTime(expanded, "start_time_utc", activityClock.at(activity.path("s").asText()));
+            expanded.put("end_place", activity.path("d").asText());
+            putTime(expanded, "end_time_utc", activityClock.at(activity.path("e").asText()));
+        }
+        latest.catchUp(activityClock);
+        putTime(event, "end_utc", latest.at(compact.path("e").asText()));
+        event.put("duty_type", compact.path("t").asText());
+        if (compact.path("w").asBoolean(false)) {
+            event.put("is_all_day", true);
+        }
+        putText(event, "location", compact.path("l"));
+        if (!flights.isEmpty()) {
+            event.set("flights", flights);
+        }
+        if (!activities.isEmpty()) {
+            event.set("activities", activities);
+        }
+        putText(event, "error", compact.path("r"));
+        return event;
+    }
+
+    /**
+     * Wraps a consumer of canonical output deltas so it can be fed compact deltas: every completed
+     * compact event is expanded and passed on as part of a canonical {@code {"events": [...]}} text.
+     * Events that fail to expand are skipped here; the final expansion of the whole output reports them.
+     */
+    public static Consumer<String> expandingDeltas(ObjectMapper objectMapper, Consumer<String> canonicalDeltas) {
+        return new ExpandingDeltas(objectMapper, canonicalDeltas);
+    }
+
+    private static final class ExpandingDeltas implements Consumer<String> {
+
+        private final ObjectMapper objectMapper;
+        private final Consumer<String> canonicalDeltas;
+        private final RosterEventStreamParser scanner = new RosterEventStreamParser();
+        private boolean opened;
+
+        private ExpandingDeltas(ObjectMapper objectMapper, Consumer<String> canonicalDeltas) {
+            this.objectMapper = objectMapper;
+            this.canonicalDeltas = canonicalDeltas;
+        }
+
+        @Override
+        public void accept(String delta) {
+            for (String eventJson : scanner.feed(delta)) {
+                String expanded;
+                try {
+                    expanded = expandEvent(objectMapper, objectMapper.readTree(eventJson)).toString();
+                } catch (IOException | IllegalArgumentException ex) {
+                    continue;
+                }
+                canonicalDeltas.accept((opened ? "," : "{\"events\":[") + expanded);
+                opened = true;
+            }
+        }
+    }
+
+    private static void putText(ObjectNode event, String field, JsonNode value) {
+        if (hasText(value)) {
+            event.put(field, value.asText());
+        }
+    }
+
+    private static boolean hasText(JsonNode value) {
+        return value.isTextual() && !value.asText().isBlank();
+    }
+
+    private static void putTime(ObjectNode node, String field, LocalDateTime time) {
+        if (time != null) {
+            node.put(field, UTC.format(time));
+        }
+    }
+
+    /**
+     * Reads the event date, or returns {@code null} for an unreadable date when {@code lenient}.
+     */
+    private static LocalDate eventDate(String value, boolean lenient) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeException ex) {
+            if (lenient) {
+                return null;
+            }
+            throw new IllegalArgumentException("invalid event date " + value, ex);
+        }
+    }
+
+    /**
+     * Places times on the event date in order, moving to the next day when a time is earlier than the
+     * one before it. A lenient clock returns {@code null} for a time it cannot read (or place, when the
+     * date was unreadable) and keeps its position.
+     */
+    private static final class Clock {
+
+        private final boolean lenient;
+        private LocalDateTime cursor;
+
+        private Clock(LocalDate date, boolean lenient) {
+            this(date == null ? null : date.atStartOfDay(), lenient);
+        }
+
+        private Clock(LocalDateTime cursor, boolean lenient) {
+            this.cursor = cursor;
+            this.lenient = lenient;
+        }
+
+        private Clock copy() {
+            return new Clock(cursor, lenient);
+        }
+
+        /**
+         * Moves this clock forward to {@code other}'s position if that is later.
+         */
+        private void catchUp(Clock other) {
+            if (other.cursor != null && (cursor == null || other.cursor.isAfter(cursor))) {
+                cursor = other.cursor;
+            }
+        }
+
+        private LocalDateTime at(String hhmm) {
+            LocalTime time;
+            try {
+                time = time(hhmm);
+            } catch (IllegalArgumentException ex) {
+                if (lenient) {
+                    return null;
+                }
+                throw ex;
+            }
+            if (cursor == null) {
+                return null;
+            }
+            LocalDateTime candidate = cursor.toLocalDate().atTime(time);
+            if (candidate.isBefore(cursor)) {
+                candidate = candidate.plusDays(1);
+            }
+            cursor = candidate;
+            return candidate;
+        }
+
+        private static LocalTime time(String hhmm) {
+            String digits = hhmm.replace(":", "").trim();
+            if (digits.length() != 4) {
+                throw new IllegalArgumentException("invalid time " + hhmm);
+            }
+            try {
+                return LocalTime.of(Integer.parseInt(digits.substring(0, 2)), Integer.parseInt(digits.substring(2)));
+            } catch (NumberFormatException | DateTimeException ex) {
+                throw new IllegalArgumentException("invalid time " + hhmm, ex);
+            }
+        }
+    }
+
+    /**
+     * An object schema with the given name/schema pairs in order; the model writes keys in schema order.
+     */
+    private static Map<String, Object> object(Object... namesAndSchemas) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndSchemas.length; i += 2) {
+            properties.put((String) namesAndSchemas[i], namesAndSchemas[i + 1]);
+        }
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", properties);
+        schema.put("required", List.copyOf(properties.keySet()));
+        schema.put("additionalProperties", false);
+        return schema;
+    }
+
+    private static Map<String, Object> array(Map<String, Object> items) {
+        return Map.of("type", "array", "items", items);
+    }
+
+    private static Map<String, Object> string() {
+        return Map.of("type", "string");
+    }
+
+    private static Map<String, Object> nullableString() {
+        return Map.of("type", List.of("string", "null"));
+    }
+}
@@ -1,13 +1,20 @@
 package com.ryr.ros2cal_api.roster;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.core.Timeout;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
+@EnableScheduling
 @EnableConfigurationProperties({OpenAiProperties.class, RosterProperties.class})
 public class RosterConfig {
 
@@ -27,4 +34,52 @@ public class RosterConfig {
         }
         return builder.build();
     }
+
+    @Bean
+    ThreadPoolTaskExecutor rosterTaskExecutor(RosterProperties properties, Environment environment) {
+        return threadPool(properties.getTaskExecutor(), "roster-task-", Threading.VIRTUAL.isActive(environment));
+    }
+
+    @Bean
+    ThreadPoolTaskExecutor rosterModelCallExecutor(RosterProperties properties, Environment environment) {
+        ThreadPoolTaskExecutor executor = threadPool(
+                properties.getModelCallExecutor(), "roster-model-", Threading.VIRTUAL.isActive(environment));
+        // A conversion must never fail because the shared pool is busy; it just loses parallelism.
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Platform threads for CPU-bound image work (decode, scale, encode). Sized to the cores so the
+     * number of full-resolution images in memory stays bounded no matter how many conversions wait
+     * on OpenAI. Queued tasks hold only encoded bytes; a full queue rejects the task.
+     */
+    @Bean
+    ThreadPoolTaskExecutor rosterImageExecutor(RosterProperties properties) {
+        int threads = properties.getImageThreads() > 0
+                ? properties.getImageThreads()
+                : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(properties.getImageQueueCapacity());
+        executor.setThreadNamePrefix("roster-image-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    private static ThreadPoolTaskExecutor threadPool(
+            RosterProperties.TaskExecutor pool, String threadNamePrefix, boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pool.getCorePoolSize());
+        executor.setMaxPoolSize(pool.getMaxPoolSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setThreadNamePrefix(threadNamePrefix);
+        if (virtualThreads) {
+            // The pool still bounds concurrency and queueing; its threads only wait on I/O.
+            executor.setThreadFactory(Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
 }
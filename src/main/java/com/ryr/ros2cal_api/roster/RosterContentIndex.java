@@ -0,0 +1,178 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds the image hash of an earlier conversion of the same roster, only among rosters the same
+ * owner converted. Uploads with the same decoded pixels (stripped metadata, lossless re-encode) are
+ * found by their pixel hash. Other uploads are looked up in a per-owner BK-tree of perceptual hashes
+ * within {@code max-distance} bits, and a candidate is only returned when its thumbnail matches the
+ * upload's within {@code max-cell-difference}, since the hash barely moves when one duty row is edited.
+ */
+@Component
+public class RosterContentIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterContentIndex.class);
+
+    private final RosterProperties.ContentMatch properties;
+    private final RosterResultRepository repository;
+    private final Map<String, OwnerIndex> owners = new ConcurrentHashMap<>();
+
+    public RosterContentIndex(
+            RosterProperties rosterProperties,
+            RosterResultRepository repository,
+            MeterRegistry meterRegistry) {
+        this.properties = rosterProperties.getContentMatch();
+        this.repository = repository;
+        Gauge.builder("roster.content.index.entries", this, RosterContentIndex::size)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromStore() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            List<RosterResultRepository.ContentHashView> stored = repository.findContentHashes(Instant.now());
+            for (RosterResultRepository.ContentHashView view : stored) {
+                add(view.getOwnerSub(), content(view), view.getImageSha256());
+            }
+            log.info("Roster content index loaded entries={}", size());
+        } catch (DataAccessException ex) {
+            log.warn("Roster content index load failed message={}", ex.getMessage());
+        }
+    }
+
+    public void add(String ownerSub, RosterImagePreprocessor.Content content, String imageSha256) {
+        if (!properties.isEnabled() || ownerSub == null || content == null || content.sha256() == null) {
+            return;
+        }
+        owners.computeIfAbsent(ownerSub, ignored -> new OwnerIndex()).add(new Entry(imageSha256, content));
+    }
+
+    /**
+     * Returns the image hashes of rosters this owner converted that show the same roster as
+     * {@code content}: the one with the same pixels first, then confirmed near duplicates, nearest first.
+     */
+    public List<String> find(String ownerSub, RosterImagePreprocessor.Content content) {
+        if (!properties.isEnabled() || ownerSub == null || content == null) {
+            return List.of();
+        }
+        OwnerIndex index = owners.get(ownerSub);
+        if (index == null) {
+            return List.of();
+        }
+        return index.find(content, properties.getMaxDistance(), properties.getMaxCellDifference());
+    }
+
+    /**
+     * Drops an entry whose cached result is gone.
+     */
+    public void remove(String ownerSub, String imageSha256) {
+        OwnerIndex index = owners.get(ownerSub);
+        if (index != null) {
+            index.remove(imageSha256);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (OwnerIndex index : owners.values()) {
+            size += index.size();
+        }
+        return size;
+    }
+
+    private static RosterImagePreprocessor.Content content(RosterResultRepository.ContentHashView view) {
+        PerceptualHash perceptualHash = null;
+        RosterThumbnail thumbnail = null;
+        if (view.getPerceptualHash() != null && view.getThumbnail() != null) {
+            try {
+                perceptualHash = PerceptualHash.fromHex(view.getPerceptualHash());
+                thumbnail = RosterThumbnail.fromBase64(view.getThumbnail());
+            } catch (IllegalArgumentException ex) {
+                log.warn("Roster content index skipped unreadable hash image_sha256={}", view.getImageSha256());
+                perceptualHash = null;
+                thumbnail = null;
+            }
+        }
+        return new RosterImagePreprocessor.Content(view.getContentSha256(), perceptualHash, thumbnail);
+    }
+
+    private record Entry(String imageSha256, RosterImagePreprocessor.Content content) {
+
+        private boolean nearMatchable() {
+            return content.perceptualHash() != null && content.thumbnail() != null;
+        }
+    }
+
+    private static final class OwnerIndex {
+        private final Map<String, String> imageSha256ByContent = new HashMap<>();
+        private final Map<String, Entry> entriesByImage = new HashMap<>();
+        private final PerceptualHashTree<Entry> tree = new PerceptualHashTree<>();
+
+        private synchronized void add(Entry entry) {
+            remove(entry.imageSha256());
+            imageSha256ByContent.put(entry.content().sha256(), entry.imageSha256());
+            entriesByImage.put(entry.imageSha256(), entry);
+            if (entry.nearMatchable()) {
+                tree.add(entry.content().perceptualHash(), entry);
+            }
+        }
+
+        private synchronized List<String> find(RosterImagePreprocessor.Content content, int maxDistance, int maxCellDifference) {
+            List<String> found = new ArrayList<>();
+            String samePixels = imageSha256ByContent.get(content.sha256());
+            if (samePixels != null) {
+                found.add(samePixels);
+            }
+            if (content.perceptualHash() == null || content.thumbnail() == null) {
+                return found;
+            }
+            for (PerceptualHashTree.Match<Entry> match : tree.within(content.perceptualHash(), maxDistance)) {
+                Entry candidate = match.value();
+                if (found.contains(candidate.imageSha256())) {
+                    continue;
+                }
+                int difference = candidate.content().thumbnail().difference(content.thumbnail());
+                if (difference <= maxCellDifference) {
+                    found.add(candidate.imageSha256());
+                } else {
+                    log.debug("Roster content candidate rejected image_sha256={} distance={} cell_difference={}",
+                            candidate.imageSha256(), match.distance(), difference);
+                }
+            }
+            return found;
+        }
+
+        private synchronized void remove(String imageSha256) {
+            Entry entry = entriesByImage.remove(imageSha256);
+            if (entry == null) {
+                return;
+            }
+            imageSha256ByContent.remove(entry.content().sha256(), imageSha256);
+            if (entry.nearMatchable()) {
+                tree.remove(entry.content().perceptualHash(), entry);
+            }
+        }
+
+        private synchronized int size() {
+            return entriesByImage.size();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RosterConversionLeaseRepository extends JpaRepository<RosterConversionLease, String> {
+
+    /**
+     * Inserts a lease or takes over an expired one. Returns the owner when the claim succeeded
+     * and nothing when another instance holds a live lease. Times come from the database clock.
+     */
+    @Transactional
+    @Query(value = """
+            insert into roster_conversion_lease (image_sha256, owner, lease_until)
+            values (:imageSha256, :owner, now() + cast(:leaseTtl as interval))
+            on conflict (image_sha256) do update
+              set owner = excluded.owner, lease_until = excluded.lease_until, created_at = now()
+              where roster_conversion_lease.lease_until < now()
+            returning owner
+            """, nativeQuery = true)
+    List<String> tryClaim(
+            @Param("imageSha256") String imageSha256,
+            @Param("owner") String owner,
+            @Param("leaseTtl") String leaseTtl);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+            update roster_conversion_lease
+            set lease_until = now() + cast(:leaseTtl as interval)
+            where image_sha256 = :imageSha256 and owner = :owner
+            """, nativeQuery = true)
+    int renew(
+            @Param("imageSha256") String imageSha256,
+            @Param("owner") String owner,
+            @Param("leaseTtl") String leaseTtl);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from roster_conversion_lease where image_sha256 = :imageSha256 and owner = :owner",
+            nativeQuery = true)
+    int release(@Param("imageSha256") String imageSha256, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from roster_conversion_lease where lease_until < now() - interval '1 hour'",
+            nativeQuery = true)
+    int deleteStale();
+}
@@ -0,0 +1,157 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Cross-instance deduplication of conversions. The instance that claims the lease for an image hash
+ * runs the pipeline and publishes the result to {@code roster_result}; other instances wait for that
+ * row, or take over once the owner stops renewing its lease.
+ */
+@Component
+public class RosterConversionLeases {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterConversionLeases.class);
+
+    private final RosterConversionLeaseRepository repository;
+    private final RosterResultCache resultCache;
+    private final RosterProperties.Lease properties;
+    private final boolean sharedResults;
+    private final String owner = UUID.randomUUID().toString();
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "roster-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RosterConversionLeases(
+            RosterConversionLeaseRepository repository,
+            RosterResultCache resultCache,
+            RosterProperties rosterProperties) {
+        this.repository = repository;
+        this.resultCache = resultCache;
+        this.properties = rosterProperties.getLease();
+        this.sharedResults = rosterProperties.getResultCache().isEnabled()
+                && rosterProperties.getResultCache().isPersistent();
+    }
+
+    /**
+     * Runs the conversion if this instance wins the lease for the image hash, otherwise waits for the
+     * owner's published result. The conversion is expected to store its result in the result cache.
+     */
+    public RosterParseResult execute(String imageSha256, Supplier<RosterParseResult> conversion) {
+        if (!properties.isEnabled() || !sharedResults) {
+            return conversion.get();
+        }
+        long deadline = System.nanoTime() + RosterDeadline.remainingOr(properties.getMaxWait()).toNanos();
+        boolean waited = false;
+        while (true) {
+            if (claim(imageSha256)) {
+                if (waited) {
+                    log.info("Roster conversion lease taken over image_sha256={} owner={}", imageSha256, owner);
+                }
+                return runAsOwner(imageSha256, conversion);
+            }
+            if (!waited) {
+                log.info("Roster conversion owned by another instance, waiting image_sha256={}", imageSha256);
+                waited = true;
+            }
+            sleep(properties.getPollInterval());
+            RosterParseResult shared = resultCache.getPublished(imageSha256);
+            if (shared != null) {
+                log.info("Roster conversion result received from lease owner image_sha256={}", imageSha256);
+                return shared;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Roster conversion still in progress, retry later", properties.getPollInterval());
+            }
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.roster.lease.purge-interval:PT10M}",
+            initialDelayString = "${app.roster.lease.purge-interval:PT10M}")
+    public void purgeStale() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            repository.deleteStale();
+        } catch (DataAccessException ex) {
+            log.warn("Roster conversion lease purge failed message={}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private RosterParseResult runAsOwner(String imageSha256, Supplier<RosterParseResult> conversion) {
+        long renewEvery = Math.max(1, properties.getTtl().toMillis() / 3);
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(
+                () -> renew(imageSha256), renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+        try {
+            return conversion.get();
+        } finally {
+            renewal.cancel(false);
+            release(imageSha256);
+        }
+    }
+
+    private boolean claim(String imageSha256) {
+        try {
+            List<String> claimed = repository.tryClaim(imageSha256, owner, interval(properties.getTtl()));
+            return !claimed.isEmpty();
+        } catch (DataAccessException ex) {
+            // Without the lease table we fall back to converting locally rather than failing the request.
+            log.warn("Roster conversion lease claim failed image_sha256={} message={}", imageSha256, ex.getMessage());
+            return true;
+        }
+    }
+
+    private void renew(String imageSha256) {
+        try {
+            repository.renew(imageSha256, owner, interval(properties.getTtl()));
+        } catch (DataAccessException ex) {
+            log.warn("Roster conversion lease renew failed image_sha256={} message={}", imageSha256, ex.getMessage());
+        }
+    }
+
+    private void release(String imageSha256) {
+        try {
+            repository.release(imageSha256, owner);
+        } catch (DataAccessException ex) {
+            log.warn("Roster conversion lease release failed image_sha256={} message={}", imageSha256, ex.getMessage());
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Roster conversion wait interrupted");
+        }
+    }
+
+    private String interval(Duration duration) {
+        return duration.toMillis() + " milliseconds";
+    }
+}
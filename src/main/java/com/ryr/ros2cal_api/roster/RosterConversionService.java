@@ -1,10 +1,29 @@
 package com.ryr.ros2cal_api.roster;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -16,39 +35,707 @@ public class RosterConversionService {
     private final OpenAiRosterClient openAiRosterClient;
     private final RosterImagePreprocessor imagePreprocessor;
     private final ObjectMapper objectMapper;
+    private final RosterResultCache resultCache;
+    private final RosterParseCache parseCache;
+    private final RosterContentIndex contentIndex;
+    private final RosterConversionLeases conversionLeases;
+    private final RosterOcrRepair ocrRepair;
+    private final OpenAiModelRouter modelRouter;
+    private final RosterProperties.Pipeline pipeline;
+    private final RosterProperties.Deadline deadlines;
+    private final RosterProperties.Tiling tiling;
+    private final RosterProperties.LocalParse localParse;
+    private final RosterProperties.SingleCall singleCall;
+    private final RosterProperties.Validation validation;
+    private final Executor modelCallExecutor;
+    private final SingleFlight<RosterParseResult> conversions = new SingleFlight<>();
 
     public RosterConversionService(
             OpenAiRosterClient openAiRosterClient,
             RosterImagePreprocessor imagePreprocessor,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            RosterResultCache resultCache,
+            RosterParseCache parseCache,
+            RosterContentIndex contentIndex,
+            RosterConversionLeases conversionLeases,
+            RosterOcrRepair ocrRepair,
+            OpenAiModelRouter modelRouter,
+            RosterProperties rosterProperties,
+            @Qualifier("rosterModelCallExecutor") Executor modelCallExecutor) {
         this.openAiRosterClient = openAiRosterClient;
         this.imagePreprocessor = imagePreprocessor;
         this.objectMapper = objectMapper;
+        this.resultCache = resultCache;
+        this.parseCache = parseCache;
+        this.contentIndex = contentIndex;
+        this.conversionLeases = conversionLeases;
+        this.ocrRepair = ocrRepair;
+        this.modelRouter = modelRouter;
+        this.pipeline = rosterProperties.getPipeline();
+        this.deadlines = rosterProperties.getDeadline();
+        this.tiling = rosterProperties.getTiling();
+        this.localParse = rosterProperties.getLocalParse();
+        this.singleCall = rosterProperties.getSingleCall();
+        this.validation = rosterProperties.getValidation();
+        this.modelCallExecutor = modelCallExecutor;
     }
 
     public RosterParseResult parseRoster(byte[] imageBytes) {
+        return parseRoster(null, imageBytes, RosterProgressListener.NONE);
+    }
+
+    public RosterParseResult parseRoster(byte[] imageBytes, RosterProgressListener listener) {
+        return parseRoster(null, imageBytes, listener);
+    }
+
+    /**
+     * Converts a roster image, reporting stages, OCR text and parsed events to {@code listener}.
+     * Events of results that did not come from a live model stream (cache hits, joined conversions)
+     * are reported once the result is available. An earlier result for a lossless or re-compressed
+     * copy of the image is only reused when {@code ownerSub} converted it. The conversion runs
+     * against the deadline the caller bound, or a fresh {@code deadline.total} one.
+     */
+    public RosterParseResult parseRoster(String ownerSub, byte[] imageBytes, RosterProgressListener listener) {
         log.info("Roster parse start image_bytes={}", imageBytes != null ? imageBytes.length : 0);
-        byte[] pngBytes;
+        if (imageBytes == null || imageBytes.length == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid image content");
+        }
+        EventTracker progress = new EventTracker(listener);
+        String imageSha256 = RosterHashes.sha256Hex(imageBytes);
+        RosterParseResult result = resultCache.get(imageSha256);
+        if (result != null) {
+            log.info("Roster parse served from cache image_sha256={}", imageSha256);
+            progress.onStage("cache");
+        } else {
+            if (conversions.isInFlight(imageSha256)) {
+                log.info("Roster parse joining in-flight conversion image_sha256={}", imageSha256);
+            }
+            RosterDeadline deadline = conversionDeadline();
+            result = conversions.execute(imageSha256, () -> resultCache.peek(imageSha256),
+                    () -> deadline.call(() -> parseUncached(ownerSub, imageBytes, imageSha256, progress)));
+        }
+        progress.replayIfNothingStreamed(result);
+        return result;
+    }
+
+    private RosterParseResult parseUncached(
+            String ownerSub, byte[] imageBytes, String imageSha256, RosterProgressListener listener) {
+        listener.onStage("preprocess");
+        PreparedImage prepared = prepare(ownerSub, imageBytes);
+        RosterDeadline.check("preprocess");
+        RosterImagePreprocessor.Content content = prepared.content();
+        if (prepared.sameContent() != null) {
+            listener.onStage("cache");
+            resultCache.put(imageSha256, prepared.sameContent(), ownerSub, content);
+            contentIndex.add(ownerSub, content, imageSha256);
+            return prepared.sameContent();
+        }
+
+        RosterImagePreprocessor.PreparedPng png = prepared.png();
+        RosterImagePreprocessor.Complexity complexity = prepared.complexity();
+        return conversionLeases.execute(imageSha256, () -> {
+            RosterParseResult result = convert(png, complexity, listener);
+            resultCache.put(imageSha256, result, ownerSub, content);
+            contentIndex.add(ownerSub, content, imageSha256);
+            return result;
+        });
+    }
+
+    /**
+     * Decodes the upload and either finds the owner's result for the same roster or produces the OCR input. The
+     * decoded image only lives inside one image task, so conversions waiting on OpenAI hold only PNG bytes.
+     */
+    private PreparedImage prepare(String ownerSub, byte[] imageBytes) {
         try {
-            pngBytes = imagePreprocessor.preparePng(imageBytes);
+            RosterImagePreprocessor.Prepared prepared = imagePreprocessor.prepare(
+                    imageBytes, content -> !contentIndex.find(ownerSub, content).isEmpty());
+            if (prepared.png() == null) {
+                RosterParseResult sameContent = findSameContent(ownerSub, prepared.content());
+                if (sameContent != null) {
+                    return new PreparedImage(prepared.content(), sameContent, null, null);
+                }
+                // The indexed results expired after the index lookup.
+                prepared = imagePreprocessor.prepare(imageBytes, content -> false);
+            }
+            return new PreparedImage(prepared.content(), null, prepared.png(), prepared.complexity());
         } catch (IOException ex) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid image content");
         }
+    }
+
+    private record PreparedImage(
+            RosterImagePreprocessor.Content content,
+            RosterParseResult sameContent,
+            RosterImagePreprocessor.PreparedPng png,
+            RosterImagePreprocessor.Complexity complexity) {}
+
+    private RosterParseResult findSameContent(String ownerSub, RosterImagePreprocessor.Content content) {
+        for (String imageSha256 : contentIndex.find(ownerSub, content)) {
+            RosterParseResult cached = resultCache.get(imageSha256);
+            if (cached != null) {
+                log.info("Roster parse served from same-content upload image_sha256={}", imageSha256);
+                return cached;
+            }
+            contentIndex.remove(ownerSub, imageSha256);
+        }
+        return null;
+    }
 
-        log.info("Roster OCR call start png_bytes={}", pngBytes.length);
-        OpenAiRosterClient.OpenAiResult ocr = openAiRosterClient.ocrImage(pngBytes);
+    private RosterParseResult convert(RosterImagePreprocessor.PreparedPng png,
+            RosterImagePreprocessor.Complexity complexity, RosterProgressListener listener) {
+        RosterDeadline conversion = conversionDeadline();
+        byte[] pngBytes = png.bytes();
+        if (singleCall.isEnabled()) {
+            return convertSingleCall(pngBytes, png.detail(), listener, conversion);
+        }
+        OpenAiModelRouter.Route route = modelRouter.route(complexity).withImageDetail(png.detail());
+        listener.onStage("ocr");
+        List<byte[]> strips = tiling.isEnabled() ? splitStrips(pngBytes) : List.of(pngBytes);
+        if (strips.size() > 1) {
+            return parseOcrText(ocrTiled(strips, route, listener, conversion), route, listener, conversion);
+        }
+        if (pipeline.isEnabled()) {
+            return convertPipelined(pngBytes, route, listener, conversion);
+        }
+        log.info("Roster OCR call start png_bytes={} deadline_ms={}", pngBytes.length, conversion.remaining().toMillis());
+        RosterDeadline ocrDeadline = conversion.share(deadlines.getOcrShare());
+        OpenAiRosterClient.OpenAiResult ocr = ocrDeadline.call(() -> repairOcr(pngBytes, listener.isStreaming()
+                ? openAiRosterClient.ocrImageStreaming(
+                        pngBytes, route.ocrModel(), route.imageDetail(), listener::onOcrDelta)
+                : openAiRosterClient.ocrImage(pngBytes, route.ocrModel(), route.imageDetail()), route.ocrModel()));
         log.info("Roster OCR call done output_chars={}", ocr.outputText() != null ? ocr.outputText().length() : 0);
+        listener.onUsage(ocr.usage());
+        return parseOcrText(ocr, route, listener, conversion);
+    }
+
+    /**
+     * Converts the image into events with one model call; there is no OCR text and no OCR usage.
+     */
+    private RosterParseResult convertSingleCall(
+            byte[] pngBytes, RosterImageSizer.Detail detail, RosterProgressListener listener, RosterDeadline conversion) {
+        listener.onStage("parse");
+        log.info("Roster single-call start png_bytes={} deadline_ms={}", pngBytes.length, conversion.remaining().toMillis());
+        OpenAiRosterClient.OpenAiResult parsed;
+        if (listener.isStreaming()) {
+            RosterEventStreamParser streamParser = new RosterEventStreamParser();
+            parsed = conversion.call(() -> openAiRosterClient.parseRosterImageStreaming(pngBytes, detail, delta -> {
+                for (String eventJson : streamParser.feed(delta)) {
+                    emitStreamedEvent(eventJson, listener);
+                }
+            }));
+        } else {
+            parsed = conversion.call(() -> openAiRosterClient.parseRosterImage(pngBytes, detail));
+        }
+        listener.onUsage(parsed.usage());
+        Map<String, Object> data = decodeEvents(parsed.outputText());
+        log.info("Roster single-call end events_count={}", data.get("events") instanceof List<?> events ? events.size() : 0);
+        return new RosterParseResult(data, new CallUsage(), parsed.usage());
+    }
+
+    /**
+     * Parses complete OCR text. With shard parsing on, text spanning several day chunks is split at
+     * date headers and the chunks are parsed in parallel; the shared system prompt keeps each call
+     * eligible for prompt caching.
+     */
+    private RosterParseResult parseOcrText(
+            OpenAiRosterClient.OpenAiResult ocr,
+            OpenAiModelRouter.Route route,
+            RosterProgressListener listener,
+            RosterDeadline conversion) {
+        listener.onStage("parse");
+        List<String> shards = pipeline.isShardParse()
+                ? RosterDayChunker.split(ocr.outputText(), pipeline.getDaysPerChunk())
+                : List.of();
+        if (shards.size() > 1) {
+            log.info("Roster sharded parse start shards={} days_per_chunk={}", shards.size(), pipeline.getDaysPerChunk());
+            OrderedChunkEmitter emitter = new OrderedChunkEmitter(listener);
+            List<CompletableFuture<ChunkResult>> chunks = new ArrayList<>();
+            for (String shard : shards) {
+                chunks.add(submitChunk(shard, chunks.size(), route, emitter, listener, conversion));
+            }
+            return mergeChunks(ocr, chunks);
+        }
+        OpenAiRosterClient.OpenAiResult parsed = conversion.call(() -> parseText(ocr.outputText(), route.parseModel(), listener));
+        listener.onUsage(parsed.usage());
+        Map<String, Object> data = decodeEvents(parsed.outputText());
+        Validated validated = conversion.call(
+                () -> validate(ocr.outputText(), RosterEventMerger.events(data), listener));
+        CallUsage parseUsage = new CallUsage();
+        parseUsage.add(parsed.usage());
+        parseUsage.add(validated.usage());
+        if (validated.changed()) {
+            data.put("events", validated.events());
+        }
+        parseCache.put(ocr.outputText(), route.parseModel(),
+                validated.changed() ? encodeEvents(data) : parsed.outputText());
+        log.info("Roster parse end events_count={}", data.getOrDefault("events", java.util.List.of()) instanceof java.util.List<?> events ? events.size() : 0);
+        return new RosterParseResult(data, ocr.usage(), parseUsage);
+    }
+
+    private List<byte[]> splitStrips(byte[] pngBytes) {
+        try {
+            return imagePreprocessor.splitStrips(pngBytes, tiling);
+        } catch (IOException ex) {
+            log.warn("Roster strip split failed, using the whole image message={}", ex.getMessage());
+            return List.of(pngBytes);
+        }
+    }
+
+    /**
+     * OCRs the strips of a tall image concurrently and joins their text in image order, dropping the
+     * lines repeated by the strip overlap. The joined text is reported as a single OCR delta.
+     */
+    private OpenAiRosterClient.OpenAiResult ocrTiled(
+            List<byte[]> strips,
+            OpenAiModelRouter.Route route,
+            RosterProgressListener listener,
+            RosterDeadline conversion) {
+        log.info("Roster tiled OCR start strips={} deadline_ms={}", strips.size(), conversion.remaining().toMillis());
+        RosterDeadline ocrDeadline = conversion.share(deadlines.getOcrShare());
+        List<CompletableFuture<OpenAiRosterClient.OpenAiResult>> calls = new ArrayList<>();
+        for (byte[] strip : strips) {
+            calls.add(CompletableFuture.supplyAsync(
+                    () -> ocrDeadline.call(() -> openAiRosterClient.ocrImage(strip, route.ocrModel(), route.imageDetail())),
+                    modelCallExecutor));
+        }
+        List<String> texts = new ArrayList<>();
+        CallUsage usage = new CallUsage();
+        try {
+            for (int i = 0; i < calls.size(); i++) {
+                byte[] strip = strips.get(i);
+                OpenAiRosterClient.OpenAiResult strippedOcr = join(calls.get(i));
+                OpenAiRosterClient.OpenAiResult result = ocrDeadline.call(
+                        () -> repairOcr(strip, strippedOcr, route.ocrModel()));
+                texts.add(result.outputText());
+                usage.add(result.usage());
+                listener.onUsage(result.usage());
+            }
+        } catch (RuntimeException ex) {
+            calls.forEach(call -> call.cancel(false));
+            throw ex;
+        }
+        String text = RosterOcrTextJoiner.join(texts);
+        log.info("Roster tiled OCR done strips={} output_chars={}", strips.size(), text.length());
+        listener.onOcrDelta(text);
+        return new OpenAiRosterClient.OpenAiResult(text, usage);
+    }
+
+    /**
+     * Re-reads lines the OCR marked with "?" from the image they came from; the result carries the
+     * usage of both passes.
+     */
+    private OpenAiRosterClient.OpenAiResult repairOcr(
+            byte[] pngBytes, OpenAiRosterClient.OpenAiResult ocr, String ocrModel) {
+        RosterOcrRepair.Result repaired = ocrRepair.repair(pngBytes, ocr.outputText(), ocrModel);
+        if (repaired.usage().getEffectiveTotal() == 0 && repaired.repairedLines() == 0) {
+            return ocr;
+        }
+        CallUsage usage = new CallUsage();
+        usage.add(ocr.usage());
+        usage.add(repaired.usage());
+        return new OpenAiRosterClient.OpenAiResult(repaired.text(), usage);
+    }
+
+    /**
+     * The deadline bound by the caller or {@link #parseRoster}; a fresh one if the conversion runs without it.
+     */
+    private RosterDeadline conversionDeadline() {
+        RosterDeadline current = RosterDeadline.current();
+        return current != null ? current : RosterDeadline.after(deadlines.getTotal());
+    }
+
+    /**
+     * Streams the OCR response and hands every completed block of days to a parse call on the model
+     * call executor, so parsing overlaps with OCR and only the last chunk is parsed after it ends.
+     * Chunk parses run against the whole conversion deadline, not the OCR share of it.
+     */
+    private RosterParseResult convertPipelined(
+            byte[] pngBytes, OpenAiModelRouter.Route route, RosterProgressListener listener, RosterDeadline conversion) {
+        log.info("Roster pipelined OCR call start png_bytes={} days_per_chunk={}",
+                pngBytes.length, pipeline.getDaysPerChunk());
+        RosterDayChunker chunker = new RosterDayChunker(pipeline.getDaysPerChunk());
+        OrderedChunkEmitter emitter = new OrderedChunkEmitter(listener);
+        List<CompletableFuture<ChunkResult>> chunks = new ArrayList<>();
+        List<DeferredChunk> deferred = new ArrayList<>();
+        int[] linesSeen = {0};
+        Consumer<String> submit = chunk -> {
+            int firstLine = linesSeen[0];
+            int lineCount = (int) chunk.chars().filter(c -> c == '\n').count();
+            linesSeen[0] += lineCount;
+            if (ocrRepair.isEnabled() && chunk.indexOf('?') >= 0) {
+                // Parsed once the whole text is known and its unreadable lines have been re-read.
+                deferred.add(new DeferredChunk(chunks.size(), firstLine, lineCount));
+                chunks.add(null);
+            } else {
+                chunks.add(submitChunk(chunk, chunks.size(), route, emitter, listener, conversion));
+            }
+        };
+        OpenAiRosterClient.OpenAiResult ocr;
+        try {
+            RosterDeadline ocrDeadline = conversion.share(deadlines.getOcrShare());
+            ocr = ocrDeadline.call(() -> openAiRosterClient.ocrImageStreaming(pngBytes, route.ocrModel(), route.imageDetail(), delta -> {
+                listener.onOcrDelta(delta);
+                chunker.feed(delta).forEach(submit);
+            }));
+        } catch (RuntimeException ex) {
+            cancel(chunks);
+            throw ex;
+        }
+        listener.onUsage(ocr.usage());
+        String rest = chunker.finish();
+        if (!rest.isBlank() || chunks.isEmpty()) {
+            submit.accept(rest);
+        }
+        log.info("Roster pipelined OCR call done output_chars={} chunks={} deferred_chunks={}",
+                ocr.outputText() != null ? ocr.outputText().length() : 0, chunks.size(), deferred.size());
+        if (!deferred.isEmpty()) {
+            try {
+                ocr = submitRepairedChunks(pngBytes, ocr, route, deferred, chunks, emitter, listener, conversion);
+            } catch (RuntimeException ex) {
+                cancel(chunks);
+                throw ex;
+            }
+        }
+        listener.onStage("parse");
+
+        return mergeChunks(ocr, chunks);
+    }
+
+    /**
+     * Re-reads the unreadable lines of the complete OCR text and submits the chunks that were held
+     * back because of them, cut from the repaired text. Returns the OCR result with the repaired text
+     * and the usage of both passes.
+     */
+    private OpenAiRosterClient.OpenAiResult submitRepairedChunks(
+            byte[] pngBytes,
+            OpenAiRosterClient.OpenAiResult ocr,
+            OpenAiModelRouter.Route route,
+            List<DeferredChunk> deferred,
+            List<CompletableFuture<ChunkResult>> chunks,
+            OrderedChunkEmitter emitter,
+            RosterProgressListener listener,
+            RosterDeadline conversion) {
+        RosterOcrRepair.Result repaired = conversion.call(() -> ocrRepair.repair(pngBytes, ocr.outputText(), route.ocrModel()));
+        listener.onUsage(repaired.usage());
+        String[] lines = repaired.text().replace("\r", "").split("\n", -1);
+        for (DeferredChunk chunk : deferred) {
+            StringBuilder text = new StringBuilder();
+            for (int i = chunk.firstLine(); i < chunk.firstLine() + chunk.lineCount() && i < lines.length; i++) {
+                text.append(lines[i]).append('\n');
+            }
+            chunks.set(chunk.index(), submitChunk(text.toString(), chunk.index(), route, emitter, listener, conversion));
+        }
+        CallUsage usage = new CallUsage();
+        usage.add(ocr.usage());
+        usage.add(repaired.usage());
+        return new OpenAiRosterClient.OpenAiResult(repaired.text(), usage);
+    }
+
+    private static void cancel(List<CompletableFuture<ChunkResult>> chunks) {
+        chunks.stream().filter(Objects::nonNull).forEach(chunk -> chunk.cancel(false));
+    }
+
+    /**
+     * Waits for all chunk parses and merges their events in roster order.
+     */
+    private RosterParseResult mergeChunks(
+            OpenAiRosterClient.OpenAiResult ocr, List<CompletableFuture<ChunkResult>> chunks) {
+        List<List<Map<String, Object>>> parts = new ArrayList<>();
+        CallUsage parseUsage = new CallUsage();
+        try {
+            for (CompletableFuture<ChunkResult> chunk : chunks) {
+                ChunkResult result = join(chunk);
+                parts.add(result.events());
+                parseUsage.add(result.usage());
+            }
+        } catch (RuntimeException ex) {
+            cancel(chunks);
+            throw ex;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("events", RosterEventMerger.merge(parts));
+        log.info("Roster parse end events_count={} chunks={}", ((List<?>) data.get("events")).size(), chunks.size());
+        return new RosterParseResult(data, ocr.usage(), parseUsage);
+    }
+
+    private CompletableFuture<ChunkResult> submitChunk(
+            String chunkText,
+            int index,
+            OpenAiModelRouter.Route route,
+            OrderedChunkEmitter emitter,
+            RosterProgressListener listener,
+            RosterDeadline conversion) {
+        return CompletableFuture.supplyAsync(() -> conversion.call(() -> {
+            OpenAiRosterClient.OpenAiResult parsed = parseText(chunkText, route.parseModel(), RosterProgressListener.NONE);
+            listener.onUsage(parsed.usage());
+            Validated validated = validate(
+                    chunkText, RosterEventMerger.events(decodeEvents(parsed.outputText())), listener);
+            List<Map<String, Object>> events = validated.events();
+            parseCache.put(chunkText, route.parseModel(),
+                    validated.changed() ? encodeEvents(Map.of("events", events)) : parsed.outputText());
+            log.info("Roster chunk parsed index={} input_chars={} events_count={}", index, chunkText.length(), events.size());
+            emitter.completed(index, events);
+            CallUsage usage = new CallUsage();
+            usage.add(parsed.usage());
+            usage.add(validated.usage());
+            return new ChunkResult(events, usage);
+        }), modelCallExecutor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record ChunkResult(List<Map<String, Object>> events, CallUsage usage) {}
+
+    /**
+     * A pipelined chunk held back for OCR repair: its position and its lines in the OCR text.
+     */
+    private record DeferredChunk(int index, int firstLine, int lineCount) {}
+
+    /**
+     * Reports chunk events to the listener in roster order even though chunks finish out of order.
+     * Events repeated at a chunk boundary are reported once.
+     */
+    private static final class OrderedChunkEmitter {
+
+        private final RosterProgressListener listener;
+        private final Map<Integer, List<Map<String, Object>>> finished = new HashMap<>();
+        private final Set<String> emittedKeys = new HashSet<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private int next;
+
+        private OrderedChunkEmitter(RosterProgressListener listener) {
+            this.listener = listener;
+        }
+
+        private void completed(int index, List<Map<String, Object>> events) {
+            // A lock rather than synchronized: listeners write to the network and must not pin a virtual thread.
+            lock.lock();
+            try {
+                finished.put(index, events);
+                while (finished.containsKey(next)) {
+                    for (Map<String, Object> event : finished.remove(next)) {
+                        if (emittedKeys.add(RosterEventMerger.key(event))) {
+                            listener.onEvent(event);
+                        }
+                    }
+                    next++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private OpenAiRosterClient.OpenAiResult parseText(String ocrText, String model, RosterProgressListener listener) {
+        String cached = parseCache.get(ocrText, model);
+        if (cached != null) {
+            log.info("Roster parse served from OCR text cache output_chars={}", cached.length());
+            return new OpenAiRosterClient.OpenAiResult(cached, new CallUsage());
+        }
+        String local = parseLocally(ocrText);
+        if (local != null) {
+            return new OpenAiRosterClient.OpenAiResult(local, new CallUsage());
+        }
         log.info("Roster parse call start");
-        OpenAiRosterClient.OpenAiResult parsed = openAiRosterClient.parseRosterText(ocr.outputText());
+        OpenAiRosterClient.OpenAiResult parsed;
+        if (listener.isStreaming()) {
+            RosterEventStreamParser streamParser = new RosterEventStreamParser();
+            parsed = openAiRosterClient.parseRosterTextStreaming(ocrText, model, delta -> {
+                for (String eventJson : streamParser.feed(delta)) {
+                    emitStreamedEvent(eventJson, listener);
+                }
+            });
+        } else {
+            parsed = openAiRosterClient.parseRosterText(ocrText, model);
+        }
         log.info("Roster parse call done output_chars={}", parsed.outputText() != null ? parsed.outputText().length() : 0);
-        Map<String, Object> data;
+        return parsed;
+    }
+
+    /**
+     * Returns the event JSON of the rule-based parser, or null when it is disabled or declines the
+     * text and the model has to parse it.
+     */
+    private String parseLocally(String ocrText) {
+        if (!localParse.isEnabled()) {
+            return null;
+        }
+        Optional<Map<String, Object>> data = RosterLocalParser.parse(ocrText);
+        if (data.isEmpty()) {
+            log.info("Roster local parse declined input_chars={}", ocrText.length());
+            return null;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(data.get());
+            log.info("Roster parse served by local parser events_count={}", ((List<?>) data.get().get("events")).size());
+            return json;
+        } catch (JsonProcessingException ex) {
+            log.warn("Roster local parse encode failed message={}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks the events parsed from {@code ocrText} locally. The OCR lines of each roster day with a
+     * failing event are parsed once more, with the strong parse model, and replace that day's events;
+     * the other days are kept as they are. A problem that cannot be placed on a day sends the whole
+     * text back.
+     */
+    private Validated validate(String ocrText, List<Map<String, Object>> events, RosterProgressListener listener) {
+        if (!validation.isEnabled()) {
+            return new Validated(events, new CallUsage(), false);
+        }
+        Set<LocalDate> rosterDays = RosterEventValidator.rosterDays(ocrText);
+        List<String> warnings = RosterEventValidator.warnings(events, rosterDays);
+        if (!warnings.isEmpty()) {
+            log.warn("Roster validation warnings count={} warnings=\"{}\"", warnings.size(), String.join("; ", warnings));
+        }
+        List<RosterEventValidator.Problem> problems = RosterEventValidator.validate(events, rosterDays);
+        if (problems.isEmpty()) {
+            return new Validated(events, new CallUsage(), false);
+        }
+        Set<LocalDate> failedDays = new TreeSet<>();
+        Set<Map<String, Object>> failedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean unplaced = false;
+        for (RosterEventValidator.Problem problem : problems) {
+            failedEvents.add(problem.event());
+            if (problem.day() != null) {
+                failedDays.add(problem.day());
+            } else {
+                unplaced = true;
+            }
+        }
+        List<String> dayTexts = unplaced ? List.of(ocrText) : RosterDayChunker.split(ocrText, 1).stream()
+                .filter(dayText -> !Collections.disjoint(RosterEventValidator.rosterDays(dayText), failedDays))
+                .toList();
+        log.info("Roster validation failed problems={} days={} reparse_chars={} first_problem=\"{}\"",
+                problems.size(), unplaced ? "all" : failedDays,
+                dayTexts.stream().mapToInt(String::length).sum(), problems.get(0).reason());
+
+        CallUsage usage = new CallUsage();
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        Set<LocalDate> replacedDays = new HashSet<>();
+        try {
+            for (String dayText : dayTexts) {
+                OpenAiRosterClient.OpenAiResult parsed = openAiRosterClient.parseRosterText(dayText, modelRouter.strongParseModel());
+                usage.add(parsed.usage());
+                replacements.addAll(RosterEventMerger.events(decodeEvents(parsed.outputText())));
+                replacedDays.addAll(RosterEventValidator.rosterDays(dayText));
+            }
+        } catch (ResponseStatusException ex) {
+            log.warn("Roster validation re-parse failed, keeping the first parse status={} message={}",
+                    ex.getStatusCode().value(), ex.getReason());
+            listener.onUsage(usage);
+            return new Validated(events, usage, false);
+        }
+        listener.onUsage(usage);
+        boolean replaceAll = unplaced;
+        List<Map<String, Object>> kept = events.stream()
+                .filter(event -> !replaceAll && !failedEvents.contains(event)
+                        && !replacedDays.contains(RosterEventValidator.startDay(event)))
+                .toList();
+        List<RosterEventValidator.Problem> remaining = RosterEventValidator.validate(replacements, replacedDays);
+        log.info("Roster validation re-parse done days={} events_replaced={} events_added={} remaining_problems={}",
+                replacedDays.size(), events.size() - kept.size(), replacements.size(), remaining.size());
+        return new Validated(RosterEventMerger.merge(List.of(kept, replacements)), usage, true);
+    }
+
+    /**
+     * Events after validation, the usage of any re-parse calls and whether events were replaced.
+     */
+    private record Validated(List<Map<String, Object>> events, CallUsage usage, boolean changed) {}
+
+    /**
+     * Parse output JSON for the parse cache, or null (nothing cached) if it cannot be written.
+     */
+    private String encodeEvents(Map<String, Object> data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException ex) {
+            log.warn("Roster event encode failed message={}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private void emitStreamedEvent(String eventJson, RosterProgressListener listener) {
         try {
-            data = objectMapper.readValue(parsed.outputText(), new TypeReference<>() {});
+            listener.onEvent(objectMapper.readValue(eventJson, new TypeReference<Map<String, Object>>() {}));
+        } catch (IOException ex) {
+            // The final decode of the complete output reports malformed JSON; skip the partial event here.
+            log.warn("Roster streamed event decode failed chars={}", eventJson.length());
+        }
+    }
+
+    private Map<String, Object> decodeEvents(String outputText) {
+        try {
+            return objectMapper.readValue(outputText, new TypeReference<>() {});
         } catch (IOException ex) {
             log.error("Roster parse JSON decode failed", ex);
             throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI response was not valid JSON");
         }
-        log.info("Roster parse end events_count={}", data.getOrDefault("events", java.util.List.of()) instanceof java.util.List<?> events ? events.size() : 0);
-        return new RosterParseResult(data, ocr.usage(), parsed.usage());
+    }
+
+    /**
+     * Forwards progress and remembers whether any event was streamed, so events of results that were
+     * not produced by a live stream can be replayed at the end.
+     */
+    private static final class EventTracker implements RosterProgressListener {
+
+        private final RosterProgressListener delegate;
+        private volatile boolean eventsStreamed;
+
+        private EventTracker(RosterProgressListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return delegate.isStreaming();
+        }
+
+        @Override
+        public void onStage(String stage) {
+            delegate.onStage(stage);
+        }
+
+        @Override
+        public void onOcrDelta(String text) {
+            delegate.onOcrDelta(text);
+        }
+
+        @Override
+        public void onEvent(Map<String, Object> event) {
+            eventsStreamed = true;
+            delegate.onEvent(event);
+        }
+
+        @Override
+        public void onUsage(CallUsage usage) {
+            delegate.onUsage(usage);
+        }
+
+        private void replayIfNothingStreamed(RosterParseResult result) {
+            if (eventsStreamed || delegate == RosterProgressListener.NONE) {
+                return;
+            }
+            if (result.getData().get("events") instanceof List<?> events) {
+                for (Object event : events) {
+                    if (event instanceof Map<?, ?> eventMap) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> typed = (Map<String, Object>) eventMap;
+                        delegate.onEvent(typed);
+                    }
+                }
+            }
+        }
     }
 }
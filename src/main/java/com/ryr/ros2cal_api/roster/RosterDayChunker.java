@@ -0,0 +1,101 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits roster OCR text into blocks of whole days, cutting only in front of a date header line
+ * ({@code 12 Dec 25, Fri} or {@code Mon, 22 Dec 25}) so no CHECK-IN / CHECK-OUT block is torn
+ * apart. A duty whose CHECK-OUT follows the next date header (past midnight) keeps that day in the
+ * same chunk. Text can be fed incrementally while the OCR response is still streaming.
+ */
+public final class RosterDayChunker {
+
+    private static final Pattern DAY_HEADER = Pattern.compile(
+            "^\\s*(?:(?:mon|tue|wed|thu|fri|sat|sun)[a-z]*,?\\s+\\d{1,2}\\s+[a-z]{3}[a-z]*\\s+\\d{2,4}"
+                    + "|\\d{1,2}\\s+[a-z]{3}[a-z]*\\s+\\d{2,4},?\\s+(?:mon|tue|wed|thu|fri|sat|sun)[a-z]*)\\b.*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHECK_IN = Pattern.compile("\\bcheck[- ]?in\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHECK_OUT = Pattern.compile("\\bcheck[- ]?out\\b", Pattern.CASE_INSENSITIVE);
+
+    private final int daysPerChunk;
+    private final StringBuilder partialLine = new StringBuilder();
+    private final StringBuilder chunk = new StringBuilder();
+    private int daysInChunk;
+    private boolean dutyOpen;
+
+    public RosterDayChunker(int daysPerChunk) {
+        this.daysPerChunk = Math.max(1, daysPerChunk);
+    }
+
+    /**
+     * Splits complete OCR text into chunks of {@code daysPerChunk} days, or one more when a duty
+     * runs past midnight.
+     */
+    public static List<String> split(String text, int daysPerChunk) {
+        RosterDayChunker chunker = new RosterDayChunker(daysPerChunk);
+        List<String> chunks = new ArrayList<>(chunker.feed(text));
+        String rest = chunker.finish();
+        if (!rest.isBlank()) {
+            chunks.add(rest);
+        }
+        return chunks;
+    }
+
+    static boolean isDayHeader(String line) {
+        return DAY_HEADER.matcher(line).matches();
+    }
+
+    /**
+     * Consumes the next piece of text and returns the chunks it completed. A chunk is complete once
+     * the header of the day following its last day has been seen.
+     */
+    public List<String> feed(String text) {
+        List<String> completed = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                acceptLine(partialLine.toString(), completed);
+                partialLine.setLength(0);
+            } else {
+                partialLine.append(c);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Returns whatever has not been emitted yet, including a trailing line without newline.
+     */
+    public String finish() {
+        List<String> completed = new ArrayList<>();
+        if (!partialLine.isEmpty()) {
+            acceptLine(partialLine.toString(), completed);
+            partialLine.setLength(0);
+        }
+        completed.add(chunk.toString());
+        chunk.setLength(0);
+        daysInChunk = 0;
+        dutyOpen = false;
+        return String.join("", completed);
+    }
+
+    private void acceptLine(String rawLine, List<String> completed) {
+        String line = rawLine.endsWith("\r") ? rawLine.substring(0, rawLine.length() - 1) : rawLine;
+        if (isDayHeader(line)) {
+            if (daysInChunk >= daysPerChunk && !dutyOpen) {
+                completed.add(chunk.toString());
+                chunk.setLength(0);
+                daysInChunk = 0;
+            }
+            daysInChunk++;
+        }
+        if (CHECK_OUT.matcher(line).find()) {
+            dutyOpen = false;
+        } else if (CHECK_IN.matcher(line).find()) {
+            dutyOpen = true;
+        }
+        chunk.append(line).append('\n');
+    }
+}
@@ -0,0 +1,121 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * End-to-end time budget of a conversion. The deadline of the running stage is bound to the current
+ * thread by {@link #call(Supplier)}; work handed to another thread takes it along with
+ * {@link #wrap(Supplier)}. OpenAI calls, queue waits and retries only use the time that is left.
+ */
+public final class RosterDeadline {
+
+    private static final ThreadLocal<RosterDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private RosterDeadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static RosterDeadline after(Duration budget) {
+        return new RosterDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * The deadline bound to this thread, or {@code null} outside a conversion.
+     */
+    public static RosterDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Time left of the current deadline, capped at {@code limit}; {@code limit} when there is none.
+     */
+    public static Duration remainingOr(Duration limit) {
+        RosterDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return limit;
+        }
+        Duration remaining = deadline.remaining();
+        return remaining.compareTo(limit) < 0 ? remaining : limit;
+    }
+
+    /**
+     * Whether the current deadline, if any, has passed.
+     */
+    public static boolean expired() {
+        RosterDeadline deadline = CURRENT.get();
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * Fails with 504 when the current deadline has passed.
+     */
+    public static void check(String stage) {
+        if (expired()) {
+            throw exceeded(stage);
+        }
+    }
+
+    public static ResponseStatusException exceeded(String stage) {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Roster conversion timed out during " + stage);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() >= expiresAtNanos;
+    }
+
+    /**
+     * A deadline for a stage that may use {@code fraction} of the time left, leaving the rest to
+     * the stages after it.
+     */
+    public RosterDeadline share(double fraction) {
+        long now = System.nanoTime();
+        long remaining = Math.max(0, expiresAtNanos - now);
+        return new RosterDeadline(now + (long) (remaining * Math.min(1.0, Math.max(0.0, fraction))));
+    }
+
+    /**
+     * Runs {@code work} with this deadline bound to the current thread.
+     */
+    public <T> T call(Supplier<T> work) {
+        RosterDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Binds the current deadline, if any, to {@code work} wherever it runs.
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> work) {
+        RosterDeadline deadline = CURRENT.get();
+        return deadline == null ? work : () -> deadline.call(work);
+    }
+
+    /**
+     * Binds the current deadline, if any, to {@code work} wherever it runs.
+     */
+    public static Runnable wrap(Runnable work) {
+        RosterDeadline deadline = CURRENT.get();
+        return deadline == null ? work : () -> deadline.call(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
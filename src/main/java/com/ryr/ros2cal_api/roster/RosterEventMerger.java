@@ -0,0 +1,57 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges event lists produced for separate parts of a roster (day chunks, images) into one
+ * chronologically ordered list. Events with the same duty type, start and end are treated as one;
+ * the first occurrence wins, so parts should be passed in roster order.
+ */
+public final class RosterEventMerger {
+
+    private static final Comparator<Map<String, Object>> BY_START =
+            Comparator.comparing(event -> String.valueOf(event.getOrDefault("start_utc", "")));
+
+    private RosterEventMerger() {
+    }
+
+    public static List<Map<String, Object>> merge(List<List<Map<String, Object>>> parts) {
+        List<Map<String, Object>> merged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (List<Map<String, Object>> part : parts) {
+            for (Map<String, Object> event : part) {
+                if (seen.add(key(event))) {
+                    merged.add(event);
+                }
+            }
+        }
+        // Stable sort: events that share a start keep the order the model produced them in.
+        merged.sort(BY_START);
+        return merged;
+    }
+
+    /**
+     * Returns the {@code events} array of a parse result, ignoring entries that are not objects.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Map<String, Object>> events(Map<String, Object> data) {
+        List<Map<String, Object>> events = new ArrayList<>();
+        if (data != null && data.get("events") instanceof List<?> list) {
+            for (Object event : list) {
+                if (event instanceof Map<?, ?> map) {
+                    events.add((Map<String, Object>) map);
+                }
+            }
+        }
+        return events;
+    }
+
+    static String key(Map<String, Object> event) {
+        return event.get("duty_type") + "|" + event.get("start_utc") + "|" + event.get("end_utc");
+    }
+}
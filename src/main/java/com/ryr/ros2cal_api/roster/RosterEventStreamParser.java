@@ -0,0 +1,65 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental scanner over streamed parse output of the form {@code {"events": [ {...}, {...} ]}}.
+ * Each call to {@link #feed(String)} returns the JSON text of event objects completed by that chunk,
+ * so events can be decoded long before the whole response has arrived.
+ */
+public class RosterEventStreamParser {
+
+    private final StringBuilder current = new StringBuilder();
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private boolean inEvents;
+    private boolean capturing;
+
+    public List<String> feed(String chunk) {
+        List<String> completed = new ArrayList<>();
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (capturing) {
+                current.append(c);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> {
+                    if (c == '[' && depth == 1 && !inEvents) {
+                        inEvents = true;
+                    } else if (c == '{' && inEvents && depth == 2 && !capturing) {
+                        capturing = true;
+                        current.setLength(0);
+                        current.append(c);
+                    }
+                    depth++;
+                }
+                case '}', ']' -> {
+                    depth--;
+                    if (capturing && depth == 2) {
+                        completed.add(current.toString());
+                        current.setLength(0);
+                        capturing = false;
+                    } else if (inEvents && depth == 1) {
+                        inEvents = false;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,250 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Fast local checks of parsed events against each other and the OCR text they came from: times in
+ * order, well-formed places, event dates on the days of the roster, and no {@code error} left by the
+ * model. Each problem names the roster day to parse again. Findings a re-parse cannot fix (airports
+ * missing from the list, gaps between roster days) are only reported as {@link #warnings warnings}.
+ */
+public final class RosterEventValidator {
+
+    private static final String AIRPORT_CODES = "roster/airport-codes.txt";
+    private static final Pattern PLACE = Pattern.compile("[A-Z]{3}");
+    private static final BitSet AIRPORTS = loadAirports();
+
+    /**
+     * A failed check. {@code day} is the roster day the event belongs to, or null when it cannot be
+     * told from the event.
+     */
+    public record Problem(LocalDate day, Map<String, Object> event, String reason) {}
+
+    private RosterEventValidator() {
+    }
+
+    /**
+     * The dates of the day header lines of {@code ocrText}, in ascending order.
+     */
+    public static Set<LocalDate> rosterDays(String ocrText) {
+        Set<LocalDate> days = new TreeSet<>();
+        if (ocrText != null) {
+            ocrText.lines().map(RosterLocalParser::dayHeaderDate).filter(day -> day != null).forEach(days::add);
+        }
+        return days;
+    }
+
+    /**
+     * Checks {@code events} in the order the parser produced them. Without roster days the date
+     * checks are skipped.
+     */
+    public static List<Problem> validate(List<Map<String, Object>> events, Set<LocalDate> rosterDays) {
+        List<Problem> problems = new ArrayList<>();
+        LocalDate previousDay = null;
+        for (Map<String, Object> event : events) {
+            Instant start = instant(event.get("start_utc"));
+            Instant end = instant(event.get("end_utc"));
+            LocalDate day = rosterDay(event, start, rosterDays);
+            List<String> reasons = new ArrayList<>();
+            if (start == null || end == null) {
+                reasons.add("invalid start_utc or end_utc");
+            } else if (start.isAfter(end)) {
+                reasons.add("start_utc after end_utc");
+            }
+            if (start != null && !rosterDays.isEmpty()) {
+                LocalDate startDay = date(start);
+                if (!rosterDays.contains(startDay) && !rosterDays.contains(startDay.minusDays(1))) {
+                    reasons.add("date " + startDay + " is not a roster day");
+                } else if (previousDay != null && startDay.isBefore(previousDay)) {
+                    reasons.add("date " + startDay + " out of order");
+                }
+                previousDay = startDay;
+            }
+            checkSectors(event, "flights", "departure_airport", "departure_time_utc",
+                    "arrival_airport", "arrival_time_utc", start, end, reasons);
+            checkSectors(event, "activities", "start_place", "start_time_utc",
+                    "end_place", "end_time_utc", start, end, reasons);
+            if (event.get("location") instanceof String location && !PLACE.matcher(location).matches()) {
+                reasons.add("malformed location " + location);
+            }
+            if (event.get("error") instanceof String error && !error.isBlank()) {
+                reasons.add("model error: " + error);
+            }
+            for (String reason : reasons) {
+                problems.add(new Problem(day, event, reason));
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Findings that do not justify parsing a day again: well-formed flight airports that are not in
+     * the airport list, and gaps between the roster days, which mean the OCR dropped a day that the
+     * parser never saw.
+     */
+    public static List<String> warnings(List<Map<String, Object>> events, Set<LocalDate> rosterDays) {
+        Set<String> unknownAirports = new TreeSet<>();
+        for (Map<String, Object> event : events) {
+            if (!(event.get("flights") instanceof List<?> flights)) {
+                continue;
+            }
+            for (Object item : flights) {
+                if (!(item instanceof Map<?, ?> flight)) {
+                    continue;
+                }
+                for (String field : List.of("departure_airport", "arrival_airport")) {
+                    if (flight.get(field) instanceof String code && PLACE.matcher(code).matches() && !isKnownAirport(code)) {
+                        unknownAirports.add(code);
+                    }
+                }
+            }
+        }
+        List<String> warnings = new ArrayList<>();
+        unknownAirports.forEach(code -> warnings.add("unknown airport " + code));
+        LocalDate previous = null;
+        for (LocalDate day : new TreeSet<>(rosterDays)) {
+            if (previous != null && day.isAfter(previous.plusDays(1))) {
+                warnings.add("roster days " + previous.plusDays(1) + " to " + day.minusDays(1) + " missing");
+            }
+            previous = day;
+        }
+        return warnings;
+    }
+
+    /**
+     * The UTC date an event starts on, or null when its start cannot be read.
+     */
+    public static LocalDate startDay(Map<String, Object> event) {
+        Instant start = instant(event.get("start_utc"));
+        return start != null ? date(start) : null;
+    }
+
+    public static boolean isKnownAirport(String code) {
+        return code != null && PLACE.matcher(code).matches() && AIRPORTS.get(index(code));
+    }
+
+    /**
+     * Flights or activities of a duty must each start before they end, follow one another and lie
+     * within the duty (CHECK-IN to CHECK-OUT).
+     */
+    private static void checkSectors(Map<String, Object> event, String listField, String fromField, String departField,
+            String toField, String arriveField, Instant start, Instant end, List<String> reasons) {
+        if (!(event.get(listField) instanceof List<?> sectors)) {
+            return;
+        }
+        Instant previousArrival = start;
+        for (Object item : sectors) {
+            if (!(item instanceof Map<?, ?> sector)) {
+                reasons.add("malformed " + listField + " entry");
+                continue;
+            }
+            for (String field : List.of(fromField, toField)) {
+                String place = sector.get(field) instanceof String text ? text : null;
+                if (place == null || !PLACE.matcher(place).matches()) {
+                    reasons.add("malformed " + field + " " + place);
+                }
+            }
+            Instant departure = instant(sector.get(departField));
+            Instant arrival = instant(sector.get(arriveField));
+            if (departure == null || arrival == null) {
+                reasons.add("invalid " + departField + " or " + arriveField);
+                continue;
+            }
+            if (departure.isAfter(arrival)) {
+                reasons.add(listField + " entry ends before it starts");
+            }
+            if (previousArrival != null && departure.isBefore(previousArrival)) {
+                reasons.add(listField + " out of order");
+            }
+            if (end != null && arrival.isAfter(end)) {
+                reasons.add(listField + " entry ends after end_utc");
+            }
+            previousArrival = arrival;
+        }
+    }
+
+    /**
+     * The roster day an event belongs to: the day it starts (or the day before, past midnight), or
+     * the roster day with the same day of month when the start date was misread in another year or
+     * month.
+     */
+    private static LocalDate rosterDay(Map<String, Object> event, Instant start, Set<LocalDate> rosterDays) {
+        if (start != null && (rosterDays.isEmpty() || rosterDays.contains(date(start)))) {
+            return date(start);
+        }
+        if (start != null && rosterDays.contains(date(start).minusDays(1))) {
+            return date(start).minusDays(1);
+        }
+        String text = event.get("start_utc") instanceof String value && value.length() >= 10 ? value : null;
+        if (text == null) {
+            return null;
+        }
+        String dayOfMonth = text.substring(8, 10);
+        List<LocalDate> candidates = rosterDays.stream()
+                .filter(day -> "%02d".formatted(day.getDayOfMonth()).equals(dayOfMonth))
+                .toList();
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+
+    private static Instant instant(Object value) {
+        if (!(value instanceof String text)) {
+            return null;
+        }
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeException ex) {
+            return null;
+        }
+    }
+
+    private static LocalDate date(Instant instant) {
+        return LocalDate.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static int index(String code) {
+        return ((code.charAt(0) - 'A') * 26 + (code.charAt(1) - 'A')) * 26 + (code.charAt(2) - 'A');
+    }
+
+    /**
+     * One bit per possible three-letter code; the whole set fits in about 2 KB.
+     */
+    private static BitSet loadAirports() {
+        BitSet airports = new BitSet(26 * 26 * 26);
+        InputStream input = RosterEventValidator.class.getClassLoader().getResourceAsStream(AIRPORT_CODES);
+        if (input == null) {
+            throw new IllegalStateException("Missing resource " + AIRPORT_CODES);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                for (String code : line.trim().split("\\s+")) {
+                    if (PLACE.matcher(code).matches()) {
+                        airports.set(index(code));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return airports;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Tracks client-supplied Idempotency-Key values per user. Retries that arrive while the first
+ * request is still converting join it; retries after it completed replay the stored result
+ * for the configured window.
+ */
+@Component
+public class RosterIdempotencyRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterIdempotencyRegistry.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final RosterProperties.Idempotency properties;
+    private final SingleFlight<RosterParseResult> inFlight = new SingleFlight<>();
+    private final ConcurrentHashMap<String, String> inFlightImages = new ConcurrentHashMap<>();
+    private final Map<String, Completed> completed;
+
+    public RosterIdempotencyRegistry(RosterProperties rosterProperties) {
+        this.properties = rosterProperties.getIdempotency();
+        int maxEntries = Math.max(0, properties.getMaxEntries());
+        this.completed = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest) {
+                return size() > maxEntries || eldest.getValue().expiresAt().isBefore(Instant.now());
+            }
+        };
+    }
+
+    public RosterParseResult execute(
+            String principal,
+            String idempotencyKey,
+            String imageSha256,
+            Supplier<RosterParseResult> conversion) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key must be 1-255 characters");
+        }
+        String scopedKey = principal + ":" + idempotencyKey;
+
+        Completed replay = findCompleted(scopedKey);
+        if (replay != null) {
+            ensureSameImage(replay.imageSha256(), imageSha256);
+            log.info("Roster idempotent replay key={}", idempotencyKey);
+            return replay.result();
+        }
+
+        String runningImage = inFlightImages.putIfAbsent(scopedKey, imageSha256);
+        if (runningImage != null) {
+            ensureSameImage(runningImage, imageSha256);
+            log.info("Roster idempotent request joined in-flight conversion key={}", idempotencyKey);
+        }
+        try {
+            RosterParseResult result = inFlight.execute(scopedKey, conversion);
+            synchronized (completed) {
+                completed.putIfAbsent(scopedKey, new Completed(
+                        imageSha256, result, Instant.now().plus(properties.getReplayWindow())));
+            }
+            return result;
+        } finally {
+            if (!inFlight.isInFlight(scopedKey)) {
+                inFlightImages.remove(scopedKey, imageSha256);
+            }
+        }
+    }
+
+    private Completed findCompleted(String scopedKey) {
+        synchronized (completed) {
+            Completed entry = completed.get(scopedKey);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt().isBefore(Instant.now())) {
+                completed.remove(scopedKey);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void ensureSameImage(String expectedSha256, String imageSha256) {
+        if (!expectedSha256.equals(imageSha256)) {
+            throw new ResponseStatusException(
+                    HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key was already used with a different image");
+        }
+    }
+
+    private record Completed(String imageSha256, RosterParseResult result, Instant expiresAt) {}
+}
@@ -6,45 +6,320 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
 
 import javax.imageio.ImageIO;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Image decoding, hashing, scaling, color reduction and PNG encoding. All work runs on the bounded
+ * {@code rosterImageExecutor} so callers on (virtual) request threads only wait for it.
+ */
 @Component
 public class RosterImagePreprocessor {
 
-    private static final int MIN_WIDTH = 1500;
-    private static final int SCALE_FACTOR = 2;
+    private static final Logger log = LoggerFactory.getLogger(RosterImagePreprocessor.class);
+    private static final Duration REJECTED_RETRY_AFTER = Duration.ofSeconds(2);
+    private static final int HASH_COLUMNS = 17;
+    private static final int HASH_ROWS = 16;
+
+    private final Executor imageExecutor;
+    private final RosterProperties.ImageEncoding encoding;
+    private final RosterProperties.ImageSizing sizing;
+
+    public RosterImagePreprocessor(@Qualifier("rosterImageExecutor") Executor imageExecutor,
+            RosterProperties properties) {
+        this.imageExecutor = imageExecutor;
+        this.encoding = properties.getImageEncoding();
+        this.sizing = properties.getImageSizing();
+    }
+
+    /**
+     * The OCR input: PNG bytes and the detail level to send them at.
+     */
+    public record PreparedPng(byte[] bytes, RosterImageSizer.Detail detail) {}
 
-    public byte[] preparePng(byte[] inputBytes) throws IOException {
+    public BufferedImage decode(byte[] inputBytes) throws IOException {
+        return onImageExecutor(() -> read(inputBytes));
+    }
+
+    /**
+     * How much a roster image holds: its size, the number of text rows, the share of dark pixels
+     * and the median height of a text row (0 without text).
+     */
+    public record Complexity(int width, int height, int textRows, double inkShare, int glyphHeight) {}
+
+    /**
+     * What identifies the roster in an upload: the SHA-256 of its decoded pixels, which copies that
+     * differ only in file metadata or lossless re-encoding share, and its perceptual hash and
+     * thumbnail, which stay close for re-compressed copies.
+     */
+    public record Content(String sha256, PerceptualHash perceptualHash, RosterThumbnail thumbnail) {}
+
+    /**
+     * What a conversion needs from an upload: its content and, unless that content was already
+     * known, its complexity and the OCR input.
+     */
+    public record Prepared(Content content, Complexity complexity, PreparedPng png) {}
+
+    /**
+     * Decodes, hashes, measures and encodes the upload in a single image task, so the decoded image
+     * never outlives it. When {@code knownContent} accepts the content the complexity and PNG are skipped.
+     */
+    public Prepared prepare(byte[] inputBytes, Predicate<Content> knownContent) throws IOException {
+        return onImageExecutor(() -> {
+            BufferedImage image = read(inputBytes);
+            Content content = new Content(pixelSha256(image), perceptualHash(image), RosterThumbnail.of(image));
+            if (knownContent.test(content)) {
+                return new Prepared(content, null, null);
+            }
+            List<RosterLineLocator.Band> bands = RosterLineLocator.textBands(image);
+            Complexity complexity = new Complexity(image.getWidth(), image.getHeight(), bands.size(),
+                    RosterLineLocator.inkShare(image), RosterImageSizer.glyphHeight(bands));
+            return new Prepared(content, complexity, scaleAndEncode(image, complexity.glyphHeight()));
+        });
+    }
+
+    /**
+     * Decodes the screenshots, stitches them with {@code stitcher} and encodes every segment made of
+     * several screenshots as PNG, all in one image task. A screenshot that did not join a neighbour is
+     * returned as uploaded, so its result cache entries stay valid.
+     *
+     * @throws ResponseStatusException with 400 naming the screenshot that cannot be decoded
+     */
+    public List<byte[]> stitch(List<byte[]> screenshots, RosterScreenshotStitcher stitcher) throws IOException {
+        return onImageExecutor(() -> {
+            List<BufferedImage> decoded = new ArrayList<>(screenshots.size());
+            for (int i = 0; i < screenshots.size(); i++) {
+                try {
+                    decoded.add(read(screenshots.get(i)));
+                } catch (IOException ex) {
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_REQUEST, "image " + (i + 1) + ": invalid image content");
+                }
+            }
+            List<byte[]> images = new ArrayList<>();
+            for (RosterScreenshotStitcher.Segment segment : stitcher.stitch(decoded)) {
+                if (segment.sources().size() == 1) {
+                    images.add(screenshots.get(segment.sources().get(0)));
+                    continue;
+                }
+                images.add(encode(segment.image()));
+                log.info("Roster batch stitched screenshots={} height={}", segment.sources(), segment.image().getHeight());
+            }
+            return images;
+        });
+    }
+
+    /**
+     * Splits a prepared PNG into overlapping horizontal strips for parallel OCR. Images that are not
+     * tall enough come back unchanged as a single element.
+     */
+    public List<byte[]> splitStrips(byte[] pngBytes, RosterProperties.Tiling tiling) throws IOException {
+        return onImageExecutor(() -> {
+            BufferedImage image = read(pngBytes);
+            List<RosterStripPlanner.Strip> strips = RosterStripPlanner.plan(
+                    image, tiling.getMinHeight(), tiling.getStripHeight(), tiling.getOverlap(), tiling.getMaxStrips());
+            if (strips.size() < 2) {
+                return List.of(pngBytes);
+            }
+            List<byte[]> encoded = new ArrayList<>(strips.size());
+            for (RosterStripPlanner.Strip strip : strips) {
+                encoded.add(encode(image.getSubimage(0, strip.top(), image.getWidth(), strip.height())));
+            }
+            return encoded;
+        });
+    }
+
+    /**
+     * Crops the row band of each of the given non-blank OCR lines (with {@code contextLines} lines
+     * around it) out of a prepared PNG, upscales it by {@code scale} and reduces its colors as
+     * configured.
+     */
+    public List<byte[]> cropLines(byte[] pngBytes, int lineCount, List<Integer> lineIndexes, int contextLines, int scale)
+            throws IOException {
+        return onImageExecutor(() -> {
+            BufferedImage image = read(pngBytes);
+            List<RosterLineLocator.Band> bands = RosterLineLocator.textBands(image);
+            List<byte[]> crops = new ArrayList<>(lineIndexes.size());
+            for (int lineIndex : lineIndexes) {
+                RosterLineLocator.Band band =
+                        RosterLineLocator.locate(bands, image.getHeight(), lineCount, lineIndex, contextLines);
+                BufferedImage crop = image.getSubimage(0, band.top(), image.getWidth(), Math.max(1, band.height()));
+                crops.add(encode(RosterImageReducer.reduce(scale(crop, Math.max(1, scale)), encoding)));
+            }
+            return crops;
+        });
+    }
+
+    /**
+     * Runs image work on the bounded image executor and waits for it. A full queue is reported as
+     * {@code 503} rather than queueing more uploads than the pool can work through.
+     */
+    private <T> T onImageExecutor(ImageWork<T> work) throws IOException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            imageExecutor.execute(() -> {
+                try {
+                    result.complete(work.run());
+                } catch (IOException | RuntimeException | Error ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("Roster image executor saturated, rejecting image work");
+            throw new RetryLaterException(
+                    HttpStatus.SERVICE_UNAVAILABLE, "Image processing capacity exhausted, retry later", REJECTED_RETRY_AFTER);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static BufferedImage read(byte[] inputBytes) throws IOException {
         BufferedImage image = ImageIO.read(new ByteArrayInputStream(inputBytes));
         if (image == null) {
             throw new IOException("Unsupported image content");
         }
+        return RosterImageReducer.srgbGray(image);
+    }
+
+    private static String pixelSha256(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        MessageDigest digest = RosterHashes.sha256();
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES * Math.max(2, width));
+        digest.update(bytes.putInt(width).putInt(height).flip());
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            bytes.clear().asIntBuffer().put(row);
+            digest.update(bytes.limit(Integer.BYTES * width));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Difference hash over a 17x16 grid of box-averaged luminance samples.
+     */
+    private static PerceptualHash perceptualHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[HASH_COLUMNS * HASH_ROWS];
+        int[] counts = new int[HASH_COLUMNS * HASH_ROWS];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellY = (int) ((long) y * HASH_ROWS / height);
+            for (int x = 0; x < width; x++) {
+                int cell = cellY * HASH_COLUMNS + (int) ((long) x * HASH_COLUMNS / width);
+                int rgb = row[x];
+                sums[cell] += (299L * ((rgb >> 16) & 0xFF) + 587L * ((rgb >> 8) & 0xFF) + 114L * (rgb & 0xFF)) / 1000;
+                counts[cell]++;
+            }
+        }
+        int[] gray = new int[sums.length];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return PerceptualHash.fromGrid(gray, HASH_COLUMNS, HASH_ROWS);
+    }
+
+    /**
+     * Sizes, reduces and encodes the OCR input and logs how its size compares with a 24-bit
+     * bitmap of the same dimensions, and the image tokens expected for it.
+     */
+    private PreparedPng scaleAndEncode(BufferedImage image, int glyphHeight) throws IOException {
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(image.getWidth(), image.getHeight(), glyphHeight, sizing);
         BufferedImage resized = image;
-        if (image.getWidth() < MIN_WIDTH) {
-            int targetWidth = image.getWidth() * SCALE_FACTOR;
-            int targetHeight = image.getHeight() * SCALE_FACTOR;
-            BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = scaled.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.drawImage(image, 0, 0, targetWidth, targetHeight, null);
-            g2d.dispose();
-            resized = scaled;
+        if (plan.width() != image.getWidth() || plan.height() != image.getHeight()) {
+            resized = resize(image, plan.width(), plan.height());
         }
 
         BufferedImage rgb = new BufferedImage(resized.getWidth(), resized.getHeight(), BufferedImage.TYPE_INT_RGB);
         Graphics2D graphics = rgb.createGraphics();
         graphics.drawImage(resized, 0, 0, null);
         graphics.dispose();
+        BufferedImage reduced = RosterImageReducer.reduce(rgb, encoding);
+        byte[] png = encode(reduced);
+        long rawBytes = 3L * reduced.getWidth() * reduced.getHeight();
+        log.info("Roster image prepared mode={} source_width={} source_height={} width={} height={} bit_depth={} "
+                        + "png_bytes={} raw_rgb_bytes={} saved_pct={} glyph_height={} detail={} predicted_image_tokens={}",
+                encoding.getMode(), image.getWidth(), image.getHeight(), reduced.getWidth(), reduced.getHeight(),
+                RosterImageReducer.bitDepth(reduced), png.length, rawBytes,
+                "%.1f".formatted(100.0 * (rawBytes - png.length) / rawBytes), glyphHeight, plan.detail(),
+                plan.imageTokens());
+        return new PreparedPng(png, plan.detail());
+    }
+
+    private static BufferedImage scale(BufferedImage image, int factor) {
+        return resize(image, image.getWidth() * factor, image.getHeight() * factor);
+    }
+
+    /**
+     * Bicubic resize; large reductions go through successive halvings so thin strokes are averaged
+     * rather than skipped.
+     */
+    private static BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private static BufferedImage draw(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        g2d.dispose();
+        return scaled;
+    }
 
+    private static byte[] encode(BufferedImage image) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        if (!ImageIO.write(rgb, "png", out)) {
+        if (!ImageIO.write(image, "png", out)) {
             throw new IOException("Failed to write PNG");
         }
         return out.toByteArray();
     }
+
+    @FunctionalInterface
+    private interface ImageWork<T> {
+        T run() throws IOException;
+    }
 }
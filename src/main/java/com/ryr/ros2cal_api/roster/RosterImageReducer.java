@@ -0,0 +1,221 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Shrinks a prepared roster image before PNG encoding: 8-bit grayscale, a small palette of the most
+ * frequent colors (1, 2, 4 or 8 bits per pixel) or a 1-bit adaptive threshold. Roster screenshots
+ * are dark text on flat backgrounds, so the OCR model loses nothing while the PNG gets several times
+ * smaller.
+ */
+public final class RosterImageReducer {
+
+    private static final int BUCKET_BITS = 4;
+    private static final int BUCKETS = 1 << (3 * BUCKET_BITS);
+    private static final IndexColorModel GRAY_RAMP = grayRamp();
+
+    private RosterImageReducer() {
+    }
+
+    /**
+     * Converts {@code image} as configured; {@code RGB} returns it unchanged.
+     */
+    public static BufferedImage reduce(BufferedImage image, RosterProperties.ImageEncoding encoding) {
+        return switch (encoding.getMode()) {
+            case RGB -> image;
+            case GRAYSCALE -> grayscale(image);
+            case PALETTE -> palette(image, encoding.getPaletteColors());
+            case BINARY -> binary(image, encoding.getThresholdWindow(), encoding.getThresholdContrast(),
+                    encoding.getDarkLevel());
+        };
+    }
+
+    /**
+     * Bits per pixel the PNG encoder writes for {@code image}.
+     */
+    public static int bitDepth(BufferedImage image) {
+        return image.getColorModel().getPixelSize();
+    }
+
+    /**
+     * Java reads 8-bit grayscale PNGs as {@code TYPE_BYTE_GRAY}, whose linear gray space makes
+     * {@code getRGB} report mid-tones far too light. This shares the pixels under a 256-entry gray
+     * palette instead, so luminance checks see the values that were encoded; other images are
+     * returned as they are.
+     */
+    public static BufferedImage srgbGray(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        return new BufferedImage(GRAY_RAMP, image.getRaster(), false, null);
+    }
+
+    /**
+     * 8-bit grayscale, held under a gray palette for the reason given at {@link #srgbGray}; the PNG
+     * writer still stores it as a plain grayscale image.
+     */
+    static BufferedImage grayscale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, GRAY_RAMP);
+        WritableRaster raster = gray.getRaster();
+        int[] row = new int[width];
+        int[] levels = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                levels[x] = luminance(row[x]);
+            }
+            raster.setSamples(0, y, width, 1, 0, levels);
+        }
+        return gray;
+    }
+
+    /**
+     * Popularity quantization: colors are counted in 4-bit-per-channel buckets, the most frequent
+     * buckets (averaged) become the palette and every pixel takes the nearest palette entry.
+     */
+    static BufferedImage palette(BufferedImage image, int colors) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = Math.max(2, Math.min(256, colors));
+        long[] counts = new long[BUCKETS];
+        long[][] sums = new long[BUCKETS][3];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int bucket = bucket(rgb);
+                counts[bucket]++;
+                sums[bucket][0] += (rgb >> 16) & 0xFF;
+                sums[bucket][1] += (rgb >> 8) & 0xFF;
+                sums[bucket][2] += rgb & 0xFF;
+            }
+        }
+        Integer[] order = new Integer[BUCKETS];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int used = 0;
+        while (used < size && counts[order[used]] > 0) {
+            used++;
+        }
+        used = Math.max(used, 2);
+        byte[] reds = new byte[used];
+        byte[] greens = new byte[used];
+        byte[] blues = new byte[used];
+        for (int i = 0; i < used; i++) {
+            int bucket = order[i];
+            long count = Math.max(1, counts[bucket]);
+            reds[i] = (byte) (sums[bucket][0] / count);
+            greens[i] = (byte) (sums[bucket][1] / count);
+            blues[i] = (byte) (sums[bucket][2] / count);
+        }
+        int bits = used <= 2 ? 1 : used <= 4 ? 2 : used <= 16 ? 4 : 8;
+        IndexColorModel colorModel = new IndexColorModel(bits, used, reds, greens, blues);
+        BufferedImage indexed = new BufferedImage(width, height,
+                bits < 8 ? BufferedImage.TYPE_BYTE_BINARY : BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        WritableRaster raster = indexed.getRaster();
+        int[] nearest = new int[BUCKETS];
+        Arrays.fill(nearest, -1);
+        int[] indexes = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int bucket = bucket(row[x]);
+                if (nearest[bucket] < 0) {
+                    nearest[bucket] = nearest(row[x], reds, greens, blues);
+                }
+                indexes[x] = nearest[bucket];
+            }
+            raster.setSamples(0, y, width, 1, 0, indexes);
+        }
+        return indexed;
+    }
+
+    /**
+     * Adaptive threshold in the manner of Bradley and Roth: a pixel is ink when it is at least
+     * {@code contrast} levels darker than the mean of the {@code window}-pixel square around it, or
+     * darker than {@code darkLevel} outright so that filled header bars stay solid. An absolute
+     * contrast rather than a share of the mean keeps the pale gaps between stacked rules blank.
+     */
+    static BufferedImage binary(BufferedImage image, int window, int contrast, int darkLevel) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] luminance = new int[width * height];
+        long[] integral = new long[(width + 1) * (height + 1)];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            long rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                int level = luminance(row[x]);
+                luminance[y * width + x] = level;
+                rowSum += level;
+                integral[(y + 1) * (width + 1) + x + 1] = integral[y * (width + 1) + x + 1] + rowSum;
+            }
+        }
+        BufferedImage binary = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = binary.getRaster();
+        int half = Math.max(1, window / 2);
+        int[] bits = new int[width];
+        for (int y = 0; y < height; y++) {
+            int top = Math.max(0, y - half);
+            int bottom = Math.min(height, y + half + 1);
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(0, x - half);
+                int right = Math.min(width, x + half + 1);
+                long sum = integral[bottom * (width + 1) + right] - integral[top * (width + 1) + right]
+                        - integral[bottom * (width + 1) + left] + integral[top * (width + 1) + left];
+                long area = (long) (right - left) * (bottom - top);
+                int level = luminance[y * width + x];
+                boolean ink = level < darkLevel || (level + contrast) * area <= sum;
+                bits[x] = ink ? 0 : 1;
+            }
+            raster.setSamples(0, y, width, 1, 0, bits);
+        }
+        return binary;
+    }
+
+    private static IndexColorModel grayRamp() {
+        byte[] levels = new byte[256];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = (byte) i;
+        }
+        return new IndexColorModel(8, levels.length, levels, levels, levels);
+    }
+
+    private static int nearest(int rgb, byte[] reds, byte[] greens, byte[] blues) {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < reds.length; i++) {
+            int dr = red - (reds[i] & 0xFF);
+            int dg = green - (greens[i] & 0xFF);
+            int db = blue - (blues[i] & 0xFF);
+            int distance = 3 * dr * dr + 6 * dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int bucket(int rgb) {
+        int shift = 8 - BUCKET_BITS;
+        int mask = (1 << BUCKET_BITS) - 1;
+        return ((rgb >> (16 + shift)) & mask) << (2 * BUCKET_BITS)
+                | ((rgb >> (8 + shift)) & mask) << BUCKET_BITS
+                | (rgb >> shift) & mask;
+    }
+
+    private static int luminance(int rgb) {
+        return (299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.List;
+
+/**
+ * Chooses the size of the OCR image and the detail level it is sent with. The image is scaled so
+ * its text rows reach {@code min-glyph-height} pixels, then shrunk a little further when that saves
+ * a whole 512px vision tile. Images small enough for the 512px low-detail view go as
+ * {@link Detail#LOW} (a flat 85 tokens); when no text rows are found the API is left to decide.
+ */
+public final class RosterImageSizer {
+
+    private static final int MIN_WIDTH = 1500;
+    private static final int SCALE_FACTOR = 2;
+    private static final int LOW_DETAIL_SIDE = 512;
+    private static final double SCALE_STEP = 0.01;
+
+    private RosterImageSizer() {
+    }
+
+    public enum Detail {
+        LOW, HIGH, AUTO
+    }
+
+    /**
+     * Target size, detail level and the image tokens OpenAI is expected to bill for it.
+     */
+    public record Plan(int width, int height, Detail detail, int imageTokens) {}
+
+    /**
+     * Median height in pixels of the text rows, or 0 when there are none.
+     */
+    public static int glyphHeight(List<RosterLineLocator.Band> bands) {
+        if (bands.isEmpty()) {
+            return 0;
+        }
+        int[] heights = bands.stream().mapToInt(RosterLineLocator.Band::height).sorted().toArray();
+        return heights[heights.length / 2];
+    }
+
+    /**
+     * Plans an image of {@code width} x {@code height} whose text rows are {@code glyphHeight}
+     * pixels tall. With sizing off, or without a glyph height, narrow images are doubled as before.
+     */
+    public static Plan plan(int width, int height, int glyphHeight, RosterProperties.ImageSizing sizing) {
+        if (!sizing.isEnabled() || glyphHeight <= 0) {
+            double scale = width < MIN_WIDTH ? SCALE_FACTOR : 1;
+            return plan(width, height, scale, sizing.isEnabled() ? Detail.AUTO : Detail.HIGH);
+        }
+        double scale = Math.min(sizing.getMaxScale(), (double) sizing.getMinGlyphHeight() / glyphHeight);
+        double lowest = scale * (1 - sizing.getTileTolerance());
+        int longSide = Math.max(width, height);
+        if (longSide * lowest <= LOW_DETAIL_SIDE) {
+            return plan(width, height, Math.min(scale, (double) LOW_DETAIL_SIDE / longSide), Detail.LOW);
+        }
+        Plan best = plan(width, height, scale, Detail.HIGH);
+        for (int step = 1; scale * (1 - step * SCALE_STEP) >= lowest; step++) {
+            Plan candidate = plan(width, height, scale * (1 - step * SCALE_STEP), Detail.HIGH);
+            if (candidate.imageTokens() < best.imageTokens()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static Plan plan(int width, int height, double scale, Detail detail) {
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        return new Plan(targetWidth, targetHeight, detail,
+                OpenAiTokenEstimator.imageTokens(targetWidth, targetHeight, detail));
+    }
+}
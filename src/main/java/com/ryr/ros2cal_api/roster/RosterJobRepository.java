@@ -0,0 +1,83 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RosterJobRepository extends JpaRepository<RosterJob, UUID> {
+
+    /**
+     * Claims the oldest runnable job, skipping rows other workers have locked. A QUEUED job waiting
+     * out a retry delay is not runnable before {@code run_after}. A RUNNING job whose
+     * lock expired (worker died mid-conversion) is runnable again; the claim still counts as an
+     * attempt, so a job that keeps killing its worker runs out of attempts.
+     */
+    @Transactional
+    @Query(value = """
+            update roster_job
+            set status = 'RUNNING',
+                attempts = attempts + 1,
+                locked_until = now() + cast(:lockTtl as interval),
+                updated_at = now()
+            where id = (
+              select id from roster_job
+              where (status = 'QUEUED' and (run_after is null or run_after <= now()))
+                 or (status = 'RUNNING' and locked_until < now())
+              order by created_at
+              limit 1
+              for update skip locked
+            )
+            returning id
+            """, nativeQuery = true)
+    List<UUID> claimNext(@Param("lockTtl") String lockTtl);
+
+    @Query("""
+            select j.id as id, j.ownerSub as ownerSub, j.status as status, j.resultJson as resultJson,
+                   j.errorStatus as errorStatus, j.errorMessage as errorMessage
+            from RosterJob j
+            where j.id = :id
+            """)
+    Optional<RosterJobView> findViewById(@Param("id") UUID id);
+
+    @Query("select j.id as id, j.status as status from RosterJob j where j.id in :ids")
+    List<RosterJobStatusView> findStatuses(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RosterJob j where j.status in :statuses and j.updatedAt < :before")
+    int deleteFinishedBefore(@Param("statuses") List<RosterJobStatus> statuses, @Param("before") Instant before);
+
+    /**
+     * Only the status of a job, for long-poll waiters.
+     */
+    interface RosterJobStatusView {
+        UUID getId();
+
+        RosterJobStatus getStatus();
+    }
+
+    /**
+     * Job state without the uploaded image, for status polling.
+     */
+    interface RosterJobView {
+        UUID getId();
+
+        String getOwnerSub();
+
+        RosterJobStatus getStatus();
+
+        String getResultJson();
+
+        Integer getErrorStatus();
+
+        String getErrorMessage();
+    }
+}
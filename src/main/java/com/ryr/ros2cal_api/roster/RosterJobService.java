@@ -0,0 +1,250 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Asynchronous roster conversions. Uploads are queued in {@code roster_job}; worker threads on any
+ * instance claim them with {@code FOR UPDATE SKIP LOCKED} and run the regular conversion pipeline.
+ */
+@Service
+public class RosterJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterJobService.class);
+    private static final int ERROR_MESSAGE_LIMIT = 512;
+    private static final long AWAIT_POLL_MILLIS = 500;
+
+    private final RosterJobRepository repository;
+    private final RosterConversionService conversionService;
+    private final RosterUsageQuotas usageQuotas;
+    private final ObjectMapper objectMapper;
+    private final RosterProperties.Jobs properties;
+    private final Duration conversionBudget;
+    private final ScheduledExecutorService awaitPoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "roster-job-await");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    public RosterJobService(
+            RosterJobRepository repository,
+            RosterConversionService conversionService,
+            RosterUsageQuotas usageQuotas,
+            ObjectMapper objectMapper,
+            RosterProperties rosterProperties) {
+        this.repository = repository;
+        this.conversionService = conversionService;
+        this.usageQuotas = usageQuotas;
+        this.objectMapper = objectMapper;
+        this.properties = rosterProperties.getJobs();
+        this.conversionBudget = rosterProperties.getDeadline().getJob();
+        awaitPoller.scheduleWithFixedDelay(this::pollWaiters, AWAIT_POLL_MILLIS, AWAIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public RosterJob submit(String ownerSub, byte[] imageBytes) {
+        RosterJob job = RosterJob.builder()
+                .ownerSub(ownerSub)
+                .status(RosterJobStatus.QUEUED)
+                .image(imageBytes)
+                .imageSha256(RosterHashes.sha256Hex(imageBytes))
+                .build();
+        RosterJob saved = repository.save(job);
+        log.info("Roster job queued id={} image_bytes={}", saved.getId(), imageBytes.length);
+        return saved;
+    }
+
+    public Optional<RosterJobRepository.RosterJobView> find(UUID id, String ownerSub) {
+        return repository.findViewById(id).filter(job -> job.getOwnerSub().equals(ownerSub));
+    }
+
+    /**
+     * Completes once the job has finished or {@code wait} has elapsed, whichever comes first.
+     * The future yields an empty value when the job does not exist for this user.
+     */
+    public CompletableFuture<Optional<RosterJobRepository.RosterJobView>> await(UUID id, String ownerSub, Duration wait) {
+        Duration capped = wait.compareTo(properties.getMaxWait()) > 0 ? properties.getMaxWait() : wait;
+        Optional<RosterJobRepository.RosterJobView> current = find(id, ownerSub);
+        if (current.isEmpty() || current.get().getStatus().isFinished() || capped.isZero() || capped.isNegative()) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        Waiter waiter = new Waiter(id, ownerSub, System.nanoTime() + capped.toNanos(), new CompletableFuture<>());
+        waiters.add(waiter);
+        waiter.future().whenComplete((value, error) -> waiters.remove(waiter));
+        return waiter.future();
+    }
+
+    /**
+     * One tick of the long-poll: a single status query for the jobs of all waiters. The full job,
+     * with its result, is only loaded for waiters that are done, once per job.
+     */
+    private void pollWaiters() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        List<Waiter> pending = List.copyOf(waiters);
+        try {
+            Set<UUID> ids = new HashSet<>();
+            pending.forEach(waiter -> ids.add(waiter.id()));
+            Map<UUID, RosterJobStatus> statuses = new HashMap<>();
+            for (RosterJobRepository.RosterJobStatusView view : repository.findStatuses(ids)) {
+                statuses.put(view.getId(), view.getStatus());
+            }
+            long now = System.nanoTime();
+            Map<UUID, Optional<RosterJobRepository.RosterJobView>> loaded = new HashMap<>();
+            for (Waiter waiter : pending) {
+                RosterJobStatus status = statuses.get(waiter.id());
+                if (status == null || status.isFinished() || now - waiter.deadline() > 0) {
+                    Optional<RosterJobRepository.RosterJobView> view =
+                            loaded.computeIfAbsent(waiter.id(), repository::findViewById);
+                    waiter.future().complete(view.filter(job -> job.getOwnerSub().equals(waiter.ownerSub())));
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Roster job await poll failed waiters={} message={}", pending.size(), ex.getMessage());
+            pending.forEach(waiter -> waiter.future().completeExceptionally(ex));
+        }
+    }
+
+    public Map<String, Object> readResult(RosterJobRepository.RosterJobView job) {
+        try {
+            return objectMapper.readValue(job.getResultJson(), new TypeReference<>() {});
+        } catch (IOException ex) {
+            log.error("Roster job result decode failed id={}", job.getId(), ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Stored job result is not valid JSON");
+        }
+    }
+
+    /**
+     * Claims and converts one queued job. Returns {@code false} when the queue is empty.
+     */
+    public boolean processNext() {
+        List<UUID> claimed = repository.claimNext(properties.getLockTtl().toMillis() + " milliseconds");
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        UUID id = claimed.get(0);
+        RosterJob job = repository.findById(id).orElse(null);
+        if (job == null) {
+            return true;
+        }
+        if (job.getAttempts() > properties.getMaxAttempts()) {
+            // Every earlier attempt lost its worker before the job finished.
+            fail(job, HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "Roster conversion did not finish in " + properties.getMaxAttempts() + " attempts");
+            job.setLockedUntil(null);
+            repository.save(job);
+            return true;
+        }
+        log.info("Roster job start id={} attempt={}", id, job.getAttempts());
+        try {
+            RosterParseResult result = RosterDeadline.after(conversionBudget).call(() -> conversionService.parseRoster(
+                    job.getOwnerSub(), job.getImage(), usageQuotas.charging(job.getOwnerSub(), RosterProgressListener.NONE)));
+            job.setResultJson(objectMapper.writeValueAsString(result.getData()));
+            job.setStatus(RosterJobStatus.SUCCEEDED);
+            job.setImage(null);
+            log.info("Roster job succeeded id={}", id);
+        } catch (RetryLaterException ex) {
+            log.warn("Roster job deferred id={} status={} message={}", id, ex.getStatusCode().value(), ex.getReason());
+            retryOrFail(job, ex.getStatusCode().value(), ex.getReason(), ex.getRetryAfter());
+        } catch (ResponseStatusException ex) {
+            fail(job, ex.getStatusCode().value(), ex.getReason());
+        } catch (JsonProcessingException ex) {
+            fail(job, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Unable to store conversion result");
+        } catch (RuntimeException ex) {
+            log.error("Roster job error id={}", id, ex);
+            retryOrFail(job, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Roster conversion failed", Duration.ZERO);
+        }
+        job.setLockedUntil(null);
+        repository.save(job);
+        return true;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.roster.jobs.purge-interval:PT1H}",
+            initialDelayString = "${app.roster.jobs.purge-interval:PT1H}")
+    public void purgeFinished() {
+        try {
+            int removed = repository.deleteFinishedBefore(
+                    List.of(RosterJobStatus.SUCCEEDED, RosterJobStatus.FAILED),
+                    Instant.now().minus(properties.getRetention()));
+            if (removed > 0) {
+                log.info("Roster job purge removed={}", removed);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Roster job purge failed message={}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        awaitPoller.shutdownNow();
+    }
+
+    /**
+     * Queues the job again for a transient failure, or fails it once it has used all its attempts.
+     * It is not claimed again before {@code retryAfter} or the exponential backoff, whichever is later.
+     */
+    private void retryOrFail(RosterJob job, int status, String message, Duration retryAfter) {
+        if (job.getAttempts() < properties.getMaxAttempts()) {
+            Duration delay = backoff(job.getAttempts());
+            if (retryAfter != null && retryAfter.compareTo(delay) > 0) {
+                delay = retryAfter;
+            }
+            job.setStatus(RosterJobStatus.QUEUED);
+            job.setRunAfter(Instant.now().plus(delay));
+            log.info("Roster job requeued id={} attempt={} delay_ms={}", job.getId(), job.getAttempts(), delay.toMillis());
+        } else {
+            fail(job, status, message);
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = properties.getRetryBackoff();
+        for (int i = 1; i < attempts && delay.compareTo(properties.getMaxRetryBackoff()) < 0; i++) {
+            delay = delay.multipliedBy(2);
+        }
+        return delay.compareTo(properties.getMaxRetryBackoff()) > 0 ? properties.getMaxRetryBackoff() : delay;
+    }
+
+    private record Waiter(
+            UUID id, String ownerSub, long deadline, CompletableFuture<Optional<RosterJobRepository.RosterJobView>> future) {}
+
+    private void fail(RosterJob job, int status, String message) {
+        String reason = message != null ? message : "Roster conversion failed";
+        if (reason.length() > ERROR_MESSAGE_LIMIT) {
+            reason = reason.substring(0, ERROR_MESSAGE_LIMIT);
+        }
+        job.setStatus(RosterJobStatus.FAILED);
+        job.setErrorStatus(status);
+        job.setErrorMessage(reason);
+        job.setImage(null);
+        log.warn("Roster job failed id={} status={} message={}", job.getId(), status, reason);
+    }
+}
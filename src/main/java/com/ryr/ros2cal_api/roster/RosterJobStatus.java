@@ -0,0 +1,12 @@
+package com.ryr.ros2cal_api.roster;
+
+public enum RosterJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Worker threads that drain the roster job queue. Every instance runs the configured number of
+ * threads; the {@code worker} profile runs an instance with workers only and no web server.
+ */
+@Component
+public class RosterJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterJobWorker.class);
+
+    private final RosterJobService jobService;
+    private final RosterProperties.Jobs properties;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public RosterJobWorker(RosterJobService jobService, RosterProperties rosterProperties) {
+        this.jobService = jobService;
+        this.properties = rosterProperties.getJobs();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running || properties.getWorkerThreads() <= 0) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < properties.getWorkerThreads(); i++) {
+            Thread thread = new Thread(this::drain, "roster-job-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Roster job workers started threads={}", threads.size());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        threads.clear();
+    }
+
+    private void drain() {
+        while (running) {
+            boolean worked;
+            try {
+                worked = jobService.processNext();
+            } catch (RuntimeException ex) {
+                log.warn("Roster job worker poll failed message={}", ex.getMessage());
+                worked = false;
+            }
+            if (!worked) {
+                try {
+                    Thread.sleep(properties.getPollInterval().toMillis());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the horizontal bands of a roster image that hold a line of text and maps OCR line numbers
+ * back to them, so a single line can be cropped for a second read.
+ */
+public final class RosterLineLocator {
+
+    private static final int DARK_LUMINANCE = 160;
+    private static final double GRID_COLUMN_SHARE = 0.5;
+    private static final double RULE_ROW_SHARE = 0.6;
+    private static final int MIN_STROKES = 3;
+    private static final int MAX_GAP = 2;
+    private static final int MIN_BAND_HEIGHT = 4;
+
+    public record Band(int top, int bottom) {
+
+        public int height() {
+            return bottom - top;
+        }
+    }
+
+    private RosterLineLocator() {
+    }
+
+    /**
+     * Bands of consecutive rows that contain text strokes. Columns that are dark in most rows
+     * (vertical table borders) are ignored, and mostly dark rows (horizontal rules, filled headers)
+     * do not count as text.
+     */
+    public static List<Band> textBands(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean[][] dark = new boolean[height][width];
+        int[] darkRowsPerColumn = new int[width];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                if (isDark(row[x])) {
+                    dark[y][x] = true;
+                    darkRowsPerColumn[x]++;
+                }
+            }
+        }
+        boolean[] grid = new boolean[width];
+        int contentColumns = 0;
+        for (int x = 0; x < width; x++) {
+            grid[x] = darkRowsPerColumn[x] > height * GRID_COLUMN_SHARE;
+            if (!grid[x]) {
+                contentColumns++;
+            }
+        }
+
+        List<Band> bands = new ArrayList<>();
+        int top = -1;
+        int lastText = -1;
+        for (int y = 0; y < height; y++) {
+            if (isText(dark[y], grid, contentColumns)) {
+                if (top < 0 || y - lastText - 1 > MAX_GAP) {
+                    addBand(bands, top, lastText);
+                    top = y;
+                }
+                lastText = y;
+            }
+        }
+        addBand(bands, top, lastText);
+        return bands;
+    }
+
+    /**
+     * Share of dark pixels in the image, a measure of how much text it holds.
+     */
+    public static double inkShare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        long dark = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                if (isDark(rgb)) {
+                    dark++;
+                }
+            }
+        }
+        return (double) dark / Math.max(1L, (long) width * height);
+    }
+
+    /**
+     * The vertical range to crop for non-blank OCR line {@code lineIndex} of {@code lineCount}, with
+     * {@code context} neighbouring lines on each side. When the bands found in the image do not
+     * line up one to one with the OCR lines, the line is placed proportionally and the range widened.
+     */
+    public static Band locate(List<Band> bands, int imageHeight, int lineCount, int lineIndex, int context) {
+        if (bands.size() == lineCount) {
+            return span(bands, lineIndex - context, lineIndex + context, imageHeight);
+        }
+        int widened = context + 2;
+        if (!bands.isEmpty()) {
+            int center = (int) Math.round((double) lineIndex * (bands.size() - 1) / Math.max(1, lineCount - 1));
+            return span(bands, center - widened, center + widened, imageHeight);
+        }
+        double lineHeight = (double) imageHeight / Math.max(1, lineCount);
+        int top = (int) Math.floor((lineIndex - widened) * lineHeight);
+        int bottom = (int) Math.ceil((lineIndex + 1 + widened) * lineHeight);
+        return new Band(Math.max(0, top), Math.min(imageHeight, bottom));
+    }
+
+    private static Band span(List<Band> bands, int first, int last, int imageHeight) {
+        Band from = bands.get(Math.max(0, first));
+        Band to = bands.get(Math.min(bands.size() - 1, last));
+        int padding = Math.max(MIN_BAND_HEIGHT, from.height() / 2);
+        return new Band(Math.max(0, from.top() - padding), Math.min(imageHeight, to.bottom() + padding));
+    }
+
+    private static boolean isDark(int rgb) {
+        int luminance = (299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+        return luminance < DARK_LUMINANCE;
+    }
+
+    private static boolean isText(boolean[] darkRow, boolean[] grid, int contentColumns) {
+        int strokes = 0;
+        int darkPixels = 0;
+        boolean inStroke = false;
+        for (int x = 0; x < darkRow.length; x++) {
+            if (grid[x]) {
+                continue;
+            }
+            if (darkRow[x]) {
+                darkPixels++;
+                if (!inStroke) {
+                    strokes++;
+                }
+            }
+            inStroke = darkRow[x];
+        }
+        return strokes >= MIN_STROKES && darkPixels < contentColumns * RULE_ROW_SHARE;
+    }
+
+    private static void addBand(List<Band> bands, int top, int lastText) {
+        if (top >= 0 && lastText + 1 - top >= MIN_BAND_HEIGHT) {
+            bands.add(new Band(top, lastText + 1));
+        }
+    }
+}
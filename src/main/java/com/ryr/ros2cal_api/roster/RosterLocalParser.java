@@ -0,0 +1,382 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule-based converter of roster OCR text into the event JSON described by
+ * {@link RosterPrompts#SYSTEM_PROMPT_PARSE}: CHECK-IN / CHECK-OUT blocks with FLIGHT or DH sectors
+ * or activities, single-line duties such as HSBY, A/L days and OFF days.
+ *
+ * <p>The parser is all or nothing. Any line it does not recognise, a {@code ?} left by the OCR, an
+ * unclosed block, a weekday that does not match its date or a block mixing duty kinds makes it
+ * decline the whole text, and the caller falls back to the model.
+ */
+public final class RosterLocalParser {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(RosterLocalParser.class);
+
+    private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private static final String WEEKDAY = "(MON|TUE|WED|THU|FRI|SAT|SUN)[A-Z]*";
+    private static final String DAY_MONTH_YEAR = "(\\d{1,2})\\s+([A-Z]{3})[A-Z]*\\s+(\\d{4}|\\d{2})";
+    private static final Pattern DAY_HEADER = Pattern.compile(
+            "^(?:" + WEEKDAY + ",?\\s+" + DAY_MONTH_YEAR + "|" + DAY_MONTH_YEAR + ",?\\s+" + WEEKDAY + ")(?:\\s+(.*))?$",
+            Pattern.CASE_INSENSITIVE);
+    private static final String TIME = "(\\d{1,2}):?(\\d{2})\\s*Z";
+    private static final String PLACE = "([A-Z]{3})";
+    private static final String CODE = "([A-Z][A-Z0-9/()-]*(?: [A-Z0-9/()-]+)*?)";
+    private static final Pattern CHECK_IN = Pattern.compile("^CHECK[- ]?IN\\s+" + TIME + "$");
+    private static final Pattern CHECK_OUT = Pattern.compile("^CHECK[- ]?OUT\\s+" + TIME + "$");
+    private static final Pattern SECTOR = Pattern.compile(
+            "^(DH\\s+)?((?:[A-Z][A-Z0-9]|\\d[A-Z])\\d{1,4}[A-Z]?)\\s+" + PLACE + "\\s+" + TIME + "\\s+" + TIME
+                    + "\\s+" + PLACE + "$");
+    private static final Pattern TIMED_DUTY = Pattern.compile(
+            "^" + CODE + "(?:\\s+" + PLACE + ")?\\s+" + TIME + "\\s+" + TIME + "(?:\\s+" + PLACE + ")?$");
+    private static final Pattern ANNUAL_LEAVE = Pattern.compile("^A/L(?:\\s*\\(Z\\))?$");
+    private static final Pattern ANNOTATION = Pattern.compile("^[A-Z][A-Z0-9]{1,7}$");
+    private static final Pattern TABLE_RULE = Pattern.compile("^[-=_:+ ]*$");
+    private static final Pattern TABLE_HEADER = Pattern.compile(
+            "^(?:(?:DATE|DUTY|DEP|BEGIN|END|ARR)\\s*)+$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TITLE = Pattern.compile("^[A-Z ]*\\bROSTER\\b[A-Z ]*$", Pattern.CASE_INSENSITIVE);
+
+    private RosterLocalParser() {
+    }
+
+    /**
+     * Returns the {@code {"events": [...]}} object for {@code ocrText}, or empty when any part of
+     * the text is not covered by the rules with full confidence.
+     */
+    public static Optional<Map<String, Object>> parse(String ocrText) {
+        if (ocrText == null || ocrText.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new Run().parse(ocrText));
+        } catch (Declined ex) {
+            log.debug("Roster local parse declined reason={} line={}", ex.getMessage(), ex.line);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The date of a day header line such as {@code 12 Dec 25, Fri}, or null when the line is not a
+     * day header. The weekday is not checked.
+     */
+    static LocalDate dayHeaderDate(String rawLine) {
+        Matcher header = DAY_HEADER.matcher(normalize(rawLine));
+        if (!header.matches()) {
+            return null;
+        }
+        boolean weekdayFirst = header.group(1) != null;
+        String year = weekdayFirst ? header.group(4) : header.group(7);
+        int month = monthNumber(weekdayFirst ? header.group(3) : header.group(6));
+        try {
+            return month == 0 ? null : LocalDate.of(
+                    year.length() == 2 ? 2000 + Integer.parseInt(year) : Integer.parseInt(year),
+                    month,
+                    Integer.parseInt(weekdayFirst ? header.group(2) : header.group(5)));
+        } catch (DateTimeException ex) {
+            return null;
+        }
+    }
+
+    private static String normalize(String rawLine) {
+        return rawLine.replace('|', ' ').replace('\t', ' ').replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * The month number for a month name or its abbreviation, or 0 when there is none.
+     */
+    private static int monthNumber(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        for (Month month : Month.values()) {
+            if (month.name().startsWith(upper)) {
+                return month.getValue();
+            }
+        }
+        return 0;
+    }
+
+    private static final class Run {
+
+        private final List<Map<String, Object>> events = new ArrayList<>();
+        private int lineNumber;
+        private LocalDate date;
+        private Block block;
+        private boolean afterCheckOut;
+
+        private Map<String, Object> parse(String ocrText) throws Declined {
+            for (String rawLine : ocrText.split("\\R")) {
+                lineNumber++;
+                String line = normalize(rawLine);
+                if (line.contains("?")) {
+                    throw decline("unreadable");
+                }
+                if (TABLE_RULE.matcher(line).matches() || TABLE_HEADER.matcher(line).matches()
+                        || TITLE.matcher(line).matches()) {
+                    continue;
+                }
+                Matcher header = DAY_HEADER.matcher(line);
+                if (header.matches()) {
+                    date = headerDate(header);
+                    afterCheckOut = false;
+                    line = header.group(9) != null ? header.group(9).trim() : "";
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                }
+                if (date == null) {
+                    throw decline("text before first date");
+                }
+                acceptDutyLine(line);
+            }
+            if (block != null) {
+                throw decline("unclosed block");
+            }
+            if (date == null) {
+                throw decline("no dates");
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("events", events);
+            return data;
+        }
+
+        private void acceptDutyLine(String line) throws Declined {
+            Matcher matcher;
+            if ((matcher = CHECK_IN.matcher(line)).matches()) {
+                if (block != null) {
+                    throw decline("nested CHECK-IN");
+                }
+                block = new Block(date.atTime(time(matcher, 1)));
+                afterCheckOut = false;
+            } else if ((matcher = CHECK_OUT.matcher(line)).matches()) {
+                if (block == null) {
+                    throw decline("CHECK-OUT without CHECK-IN");
+                }
+                events.add(block.close(block.resolve(date, time(matcher, 1))));
+                block = null;
+                afterCheckOut = true;
+            } else if ((matcher = SECTOR.matcher(line)).matches()) {
+                requireBlock();
+                block.addSector(matcher.group(1) != null, matcher.group(2), matcher.group(3),
+                        block.resolve(date, time(matcher, 4)), matcher.group(8),
+                        block.resolve(date, time(matcher, 6)));
+            } else if ("OFF".equals(line)) {
+                if (block != null) {
+                    throw decline("OFF inside block");
+                }
+                afterCheckOut = false;
+            } else if (ANNUAL_LEAVE.matcher(line).matches()) {
+                if (block != null) {
+                    throw decline("A/L inside block");
+                }
+                events.add(allDay("A/L"));
+                afterCheckOut = false;
+            } else if ((matcher = TIMED_DUTY.matcher(line)).matches()) {
+                acceptTimedDuty(matcher);
+            } else if (block == null && afterCheckOut && ANNOTATION.matcher(line).matches()) {
+                // Duty remark printed below a CHECK-OUT (INTSP, TSIM); it does not form an event.
+            } else {
+                throw decline("unrecognised line");
+            }
+        }
+
+        private void acceptTimedDuty(Matcher matcher) throws Declined {
+            String code = matcher.group(1);
+            String dep = matcher.group(2);
+            String arr = matcher.group(7);
+            if (code.equals("CHECK-IN") || code.equals("CHECK-OUT") || code.equals("OFF")) {
+                throw decline("malformed duty line");
+            }
+            if (block != null) {
+                if (dep == null) {
+                    throw decline("activity without place");
+                }
+                block.addActivity(code, dep, block.resolve(date, time(matcher, 3)),
+                        arr != null ? arr : dep, block.resolve(date, time(matcher, 5)));
+                return;
+            }
+            afterCheckOut = false;
+            LocalDateTime start = date.atTime(time(matcher, 3));
+            LocalDateTime end = date.atTime(time(matcher, 5));
+            if (end.isBefore(start)) {
+                end = end.plusDays(1);
+            }
+            Map<String, Object> event = event(start, end, code);
+            if (dep != null) {
+                event.put("location", dep);
+                if (!code.equals("HSBY")) {
+                    event.put("activities", List.of(activity(dep, start, arr != null ? arr : dep, end)));
+                }
+            } else if (arr != null) {
+                throw decline("arrival without departure");
+            }
+            events.add(event);
+        }
+
+        private void requireBlock() throws Declined {
+            if (block == null) {
+                throw decline("sector outside block");
+            }
+        }
+
+        private Map<String, Object> allDay(String dutyType) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("start_utc", UTC.format(date.atStartOfDay()));
+            event.put("end_utc", UTC.format(date.atTime(23, 59)));
+            event.put("duty_type", dutyType);
+            event.put("is_all_day", true);
+            return event;
+        }
+
+        private LocalDate headerDate(Matcher header) throws Declined {
+            boolean weekdayFirst = header.group(1) != null;
+            String weekday = weekdayFirst ? header.group(1) : header.group(8);
+            String day = weekdayFirst ? header.group(2) : header.group(5);
+            String month = weekdayFirst ? header.group(3) : header.group(6);
+            String year = weekdayFirst ? header.group(4) : header.group(7);
+            try {
+                LocalDate parsed = LocalDate.of(
+                        year.length() == 2 ? 2000 + Integer.parseInt(year) : Integer.parseInt(year),
+                        month(month),
+                        Integer.parseInt(day));
+                if (!parsed.getDayOfWeek().name().startsWith(weekday.toUpperCase(Locale.ROOT))) {
+                    throw decline("weekday does not match date");
+                }
+                if (date != null && parsed.isBefore(date)) {
+                    throw decline("dates out of order");
+                }
+                return parsed;
+            } catch (DateTimeException ex) {
+                throw decline("invalid date");
+            }
+        }
+
+        private int month(String name) throws Declined {
+            int month = monthNumber(name);
+            if (month != 0) {
+                return month;
+            }
+            throw decline("unknown month");
+        }
+
+        private LocalTime time(Matcher matcher, int hourGroup) throws Declined {
+            try {
+                return LocalTime.of(
+                        Integer.parseInt(matcher.group(hourGroup)), Integer.parseInt(matcher.group(hourGroup + 1)));
+            } catch (DateTimeException ex) {
+                throw decline("invalid time");
+            }
+        }
+
+        private Declined decline(String reason) {
+            return new Declined(reason, lineNumber);
+        }
+
+        /**
+         * An open CHECK-IN block. Times are placed on the current roster date and moved to the next
+         * day when they would run backwards, so a duty past midnight keeps its order.
+         */
+        private final class Block {
+
+            private final LocalDateTime start;
+            private final List<Map<String, Object>> flights = new ArrayList<>();
+            private final List<Map<String, Object>> activities = new ArrayList<>();
+            private LocalDateTime cursor;
+            private Boolean deadhead;
+            private String activityCode;
+
+            private Block(LocalDateTime start) {
+                this.start = start;
+                this.cursor = start;
+            }
+
+            private LocalDateTime resolve(LocalDate day, LocalTime time) {
+                LocalDateTime candidate = day.atTime(time);
+                if (candidate.isBefore(cursor)) {
+                    candidate = candidate.plusDays(1);
+                }
+                cursor = candidate;
+                return candidate;
+            }
+
+            private void addSector(boolean dh, String flightNumber, String dep, LocalDateTime depTime,
+                    String arr, LocalDateTime arrTime) throws Declined {
+                if (activityCode != null || (deadhead != null && deadhead != dh)) {
+                    throw decline("mixed duty kinds in block");
+                }
+                deadhead = dh;
+                Map<String, Object> flight = new LinkedHashMap<>();
+                flight.put("flight_number", flightNumber);
+                flight.put("departure_airport", dep);
+                flight.put("departure_time_utc", UTC.format(depTime));
+                flight.put("arrival_airport", arr);
+                flight.put("arrival_time_utc", UTC.format(arrTime));
+                flights.add(flight);
+            }
+
+            private void addActivity(String code, String startPlace, LocalDateTime startTime,
+                    String endPlace, LocalDateTime endTime) throws Declined {
+                if (deadhead != null || (activityCode != null && !activityCode.equals(code))) {
+                    throw decline("mixed duty kinds in block");
+                }
+                activityCode = code;
+                activities.add(activity(startPlace, startTime, endPlace, endTime));
+            }
+
+            private Map<String, Object> close(LocalDateTime end) throws Declined {
+                if (deadhead != null) {
+                    Map<String, Object> event = event(start, end, deadhead ? "DH" : "FLIGHT");
+                    event.put("flights", flights);
+                    return event;
+                }
+                if (activityCode != null) {
+                    Map<String, Object> event = event(start, end, activityCode);
+                    event.put("activities", activities);
+                    return event;
+                }
+                throw decline("empty block");
+            }
+        }
+    }
+
+    private static Map<String, Object> event(LocalDateTime start, LocalDateTime end, String dutyType) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("start_utc", UTC.format(start));
+        event.put("end_utc", UTC.format(end));
+        event.put("duty_type", dutyType);
+        return event;
+    }
+
+    private static Map<String, Object> activity(
+            String startPlace, LocalDateTime startTime, String endPlace, LocalDateTime endTime) {
+        Map<String, Object> activity = new LinkedHashMap<>();
+        activity.put("start_place", startPlace);
+        activity.put("start_time_utc", UTC.format(startTime));
+        activity.put("end_place", endPlace);
+        activity.put("end_time_utc", UTC.format(endTime));
+        return activity;
+    }
+
+    private static final class Declined extends Exception {
+
+        private final int line;
+
+        private Declined(String reason, int line) {
+            super(reason, null, false, false);
+            this.line = line;
+        }
+    }
+}
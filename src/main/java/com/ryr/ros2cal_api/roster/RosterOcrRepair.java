@@ -0,0 +1,152 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Second, focused OCR pass for lines the first pass marked with "?". Each such line is mapped back to
+ * its row band in the image, the band is cropped and upscaled and OCRed on its own, and the answer
+ * replaces the line only when it agrees with every character that was read the first time.
+ */
+@Component
+public class RosterOcrRepair {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(RosterOcrRepair.class);
+    private static final char UNREADABLE = '?';
+
+    private final OpenAiRosterClient openAiRosterClient;
+    private final RosterImagePreprocessor imagePreprocessor;
+    private final RosterProperties.OcrRepair properties;
+    private final Executor modelCallExecutor;
+
+    public RosterOcrRepair(
+            OpenAiRosterClient openAiRosterClient,
+            RosterImagePreprocessor imagePreprocessor,
+            RosterProperties rosterProperties,
+            @Qualifier("rosterModelCallExecutor") Executor modelCallExecutor) {
+        this.openAiRosterClient = openAiRosterClient;
+        this.imagePreprocessor = imagePreprocessor;
+        this.properties = rosterProperties.getOcrRepair();
+        this.modelCallExecutor = modelCallExecutor;
+    }
+
+    /**
+     * OCR text with repaired lines, the usage of the extra OCR calls and the number of lines replaced.
+     * The text keeps the line count of the input.
+     */
+    public record Result(String text, CallUsage usage, int repairedLines) {}
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Re-reads the lines of {@code ocrText} that contain "?" from {@code pngBytes}, the image the
+     * text was read from, with OCR model {@code model}. Failures of the extra calls leave the
+     * affected lines unchanged.
+     */
+    public Result repair(byte[] pngBytes, String ocrText, String model) {
+        if (!properties.isEnabled() || ocrText == null || ocrText.indexOf(UNREADABLE) < 0) {
+            return new Result(ocrText, new CallUsage(), 0);
+        }
+        String[] lines = ocrText.split("\n", -1);
+        List<Integer> nonBlank = new ArrayList<>();
+        List<Integer> suspects = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            if (lines[i].indexOf(UNREADABLE) >= 0 && suspects.size() < properties.getMaxLines()) {
+                suspects.add(nonBlank.size());
+            }
+            nonBlank.add(i);
+        }
+        if (suspects.isEmpty()) {
+            return new Result(ocrText, new CallUsage(), 0);
+        }
+
+        List<byte[]> crops;
+        try {
+            crops = imagePreprocessor.cropLines(
+                    pngBytes, nonBlank.size(), suspects, properties.getContextLines(), properties.getScale());
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Roster OCR repair crop failed suspect_lines={} message={}", suspects.size(), ex.getMessage());
+            return new Result(ocrText, new CallUsage(), 0);
+        }
+        List<CompletableFuture<OpenAiRosterClient.OpenAiResult>> rereads = new ArrayList<>();
+        for (byte[] crop : crops) {
+            rereads.add(CompletableFuture.supplyAsync(
+                    RosterDeadline.wrap(() -> openAiRosterClient.ocrImage(crop, model, RosterImageSizer.Detail.HIGH)),
+                    modelCallExecutor));
+        }
+
+        CallUsage usage = new CallUsage();
+        int repaired = 0;
+        for (int i = 0; i < suspects.size(); i++) {
+            int lineIndex = nonBlank.get(suspects.get(i));
+            OpenAiRosterClient.OpenAiResult reread;
+            try {
+                reread = rereads.get(i).join();
+            } catch (CompletionException | CancellationException ex) {
+                log.warn("Roster OCR repair call failed line={} message={}", lineIndex,
+                        ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage());
+                continue;
+            }
+            usage.add(reread.usage());
+            String replacement = matchingLine(lines[lineIndex], reread.outputText());
+            if (replacement != null) {
+                lines[lineIndex] = replacement;
+                repaired++;
+            }
+        }
+        log.info("Roster OCR repair done suspect_lines={} repaired_lines={} crop_bytes={}",
+                suspects.size(), repaired, crops.stream().mapToInt(crop -> crop.length).sum());
+        return new Result(String.join("\n", lines), usage, repaired);
+    }
+
+    /**
+     * The single line of {@code rereadText} that has no "?" and equals {@code original} at every
+     * position that was read, or null when there is none or more than one. Lines that are mostly
+     * "?" are not matched: there is too little left to place the answer.
+     */
+    public static String matchingLine(String original, String rereadText) {
+        String line = normalize(original);
+        long unreadable = line.chars().filter(c -> c == UNREADABLE).count();
+        long readable = line.chars().filter(c -> c != UNREADABLE && c != ' ').count();
+        if (rereadText == null || unreadable == 0 || readable < unreadable * 2) {
+            return null;
+        }
+        StringBuilder regex = new StringBuilder();
+        for (char c : line.toCharArray()) {
+            regex.append(switch (c) {
+                case UNREADABLE -> "[^\\s?]";
+                case ' ' -> " ";
+                default -> Pattern.quote(String.valueOf(c));
+            });
+        }
+        Pattern pattern = Pattern.compile(regex.toString());
+        Set<String> matches = new LinkedHashSet<>();
+        for (String candidate : rereadText.split("\\R")) {
+            String normalized = normalize(candidate);
+            if (pattern.matcher(normalized).matches()) {
+                matches.add(normalized);
+            }
+        }
+        return matches.size() == 1 ? matches.iterator().next() : null;
+    }
+
+    private static String normalize(String line) {
+        return line.replace('\t', ' ').replaceAll(" {2,}", " ").trim();
+    }
+}
@@ -0,0 +1,75 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins the OCR text of overlapping strips in image order. Lines at the start of a strip that
+ * repeat the end of the previous strip are dropped; the first line of a strip may be a line that
+ * was cut by the overlap and is dropped with them.
+ */
+public final class RosterOcrTextJoiner {
+
+    private static final int MAX_OVERLAP_LINES = 12;
+
+    private RosterOcrTextJoiner() {
+    }
+
+    public static String join(List<String> texts) {
+        List<String> lines = new ArrayList<>();
+        for (String text : texts) {
+            List<String> next = nonBlankLines(text);
+            lines.addAll(next.subList(duplicatedPrefix(lines, next), next.size()));
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Number of leading lines of {@code next} that repeat the end of {@code previous}.
+     */
+    static int duplicatedPrefix(List<String> previous, List<String> next) {
+        for (int skip = 0; skip <= 1; skip++) {
+            int limit = Math.min(MAX_OVERLAP_LINES, Math.min(previous.size(), next.size() - skip));
+            for (int k = limit; k >= (skip == 0 ? 1 : 2); k--) {
+                if (matches(previous, previous.size() - k, next, skip, k)) {
+                    return skip + k;
+                }
+            }
+        }
+        if (!previous.isEmpty() && !next.isEmpty()) {
+            // A line cut by the strip edge shows up as the tail of the line it was cut from.
+            String last = normalize(previous.get(previous.size() - 1));
+            String first = normalize(next.get(0));
+            if (!first.isEmpty() && last.endsWith(first)) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean matches(List<String> a, int aFrom, List<String> b, int bFrom, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!normalize(a.get(aFrom + i)).equals(normalize(b.get(bFrom + i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String line) {
+        return line.strip().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static List<String> nonBlankLines(String text) {
+        List<String> lines = new ArrayList<>();
+        if (text == null) {
+            return lines;
+        }
+        for (String line : text.split("\\R")) {
+            if (!line.isBlank()) {
+                lines.add(line.stripTrailing());
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,153 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory LRU of parse-step output keyed by a hash of the normalized OCR text and the parse
+ * configuration (model, full or compact output, prompt version). Different screenshots of the same
+ * roster usually OCR to the same text, so the expensive parse call can be answered locally; a
+ * changed model or prompt starts from an empty cache instead of serving its predecessor's output.
+ */
+@Component
+public class RosterParseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterParseCache.class);
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final String FULL_PROMPT_VERSION = promptVersion(RosterPrompts.SYSTEM_PROMPT_PARSE);
+    private static final String COMPACT_PROMPT_VERSION = promptVersion(RosterPrompts.SYSTEM_PROMPT_PARSE_COMPACT);
+
+    private final OpenAiProperties properties;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long estimatedBytes;
+
+    public RosterParseCache(OpenAiProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        FunctionCounter.builder("roster.parse.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("roster.parse.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("roster.parse.cache.hit.ratio", this, RosterParseCache::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("roster.parse.cache.entries", this, RosterParseCache::size)
+                .register(meterRegistry);
+        Gauge.builder("roster.parse.cache.memory", this, RosterParseCache::estimatedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached output of parsing the given OCR text with {@code model}, or {@code null} on
+     * a miss.
+     */
+    public String get(String ocrText, String model) {
+        if (!isEnabled() || ocrText == null) {
+            return null;
+        }
+        String key = keyOf(ocrText, model);
+        String cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        log.info("Roster parse cache hit ocr_key={}", key);
+        return cached;
+    }
+
+    public void put(String ocrText, String model, String parsedOutput) {
+        if (!isEnabled() || ocrText == null || parsedOutput == null) {
+            return;
+        }
+        String key = keyOf(ocrText, model);
+        long entryBytes = entryBytes(key, parsedOutput);
+        if (entryBytes > properties.getParseCacheMaxBytes()) {
+            return;
+        }
+        synchronized (entries) {
+            String previous = entries.put(key, parsedOutput);
+            if (previous != null) {
+                estimatedBytes -= entryBytes(key, previous);
+            }
+            estimatedBytes += entryBytes;
+            Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+            while (eldest.hasNext()
+                    && (entries.size() > properties.getParseCacheMaxEntries()
+                    || estimatedBytes > properties.getParseCacheMaxBytes())) {
+                Map.Entry<String, String> entry = eldest.next();
+                estimatedBytes -= entryBytes(entry.getKey(), entry.getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long estimatedBytes() {
+        synchronized (entries) {
+            return estimatedBytes;
+        }
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Normalizes OCR text so that whitespace-only differences map to the same key:
+     * line endings are unified, runs of blanks collapse to one space, lines are trimmed
+     * and empty lines dropped. Line order is kept because CHECK-IN/CHECK-OUT blocks depend on it.
+     */
+    static String normalize(String ocrText) {
+        StringBuilder out = new StringBuilder(ocrText.length());
+        for (String line : ocrText.split("\\R")) {
+            String collapsed = line.strip().replaceAll("\\s+", " ");
+            if (collapsed.isEmpty()) {
+                continue;
+            }
+            out.append(collapsed).append('\n');
+        }
+        return out.toString();
+    }
+
+    private String keyOf(String ocrText, String model) {
+        boolean compact = properties.isCompactParse();
+        String configuration = model + '\n' + (compact ? "compact" : "full") + '\n'
+                + (compact ? COMPACT_PROMPT_VERSION : FULL_PROMPT_VERSION) + '\n';
+        return RosterHashes.sha256Hex(configuration + normalize(ocrText));
+    }
+
+    private static String promptVersion(String prompt) {
+        return RosterHashes.sha256Hex(prompt).substring(0, 16);
+    }
+
+    private boolean isEnabled() {
+        return properties.isEnableCache() && properties.getParseCacheMaxEntries() > 0;
+    }
+
+    private long entryBytes(String key, String value) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + value.length());
+    }
+}
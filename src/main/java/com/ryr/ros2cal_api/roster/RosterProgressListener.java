@@ -0,0 +1,36 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.Map;
+
+/**
+ * Receives progress of a single conversion. Listeners that report {@link #isStreaming()} make the
+ * pipeline use the streaming Responses API so OCR text and parsed events arrive incrementally.
+ */
+public interface RosterProgressListener {
+
+    RosterProgressListener NONE = new RosterProgressListener() {
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    };
+
+    default boolean isStreaming() {
+        return true;
+    }
+
+    default void onStage(String stage) {
+    }
+
+    default void onOcrDelta(String text) {
+    }
+
+    default void onEvent(Map<String, Object> event) {
+    }
+
+    /**
+     * Called with the token usage of each OpenAI call as soon as the call completes.
+     */
+    default void onUsage(CallUsage usage) {
+    }
+}
@@ -260,4 +260,64 @@ OUTPUT FORMAT
   ]
 }
 """;
+
+    /**
+     * Parse prompt for the compact output mode: the same rules, answered in the short-key format
+     * enforced by {@link RosterCompactEvents#SCHEMA} and expanded locally.
+     */
+    public static final String SYSTEM_PROMPT_PARSE_COMPACT = SYSTEM_PROMPT_PARSE + """
+
+--------------------------------------------------
+COMPACT OUTPUT FORMAT (overrides OUTPUT FORMAT above)
+--------------------------------------------------
+
+Apply all rules above, but write each event in this compact form instead of the canonical one.
+The response schema is enforced; every key must be present.
+
+{
+  "events": [
+    {
+      "d": "YYYY-MM-DD",     date of the event start (CHECK-IN date, or the duty date)
+      "s": "HHMM",           start_utc time (CHECK-IN time), UTC, no colon
+      "e": "HHMM",           end_utc time (CHECK-OUT time), UTC, no colon
+      "t": "FLIGHT",         duty_type
+      "w": false,            is_all_day (true only for A/L; then "s" is "0000" and "e" is "2359")
+      "l": null,             location, or null when the rules say not to include it
+      "f": [                 flights, [] when none
+        {"n": "FR1816", "o": "NRN", "s": "0815", "d": "RBA", "e": "1135"}
+      ],
+      "x": [                 activities, [] when none
+        {"o": "STC", "s": "0700", "d": "STC", "e": "1200"}
+      ],
+      "r": null              error description, or null
+    }
+  ]
+}
+
+In "f": n = flight_number, o = departure_airport, s = departure time, d = arrival_airport,
+e = arrival time. In "x": o = start_place, s = start time, d = end_place, e = end time.
+Write only times; the date of every time is "d", moved to the next day when a time is earlier
+than the time before it in the same event (duties past midnight).
+""";
+
+    private static final String IMAGE_INPUT = """
+
+--------------------------------------------------
+IMAGE INPUT (overrides INPUT above)
+--------------------------------------------------
+
+You receive an image of the roster instead of OCR text. Read the table row by row, top to bottom,
+as an exact transcription: never correct or guess characters. Then apply all rules above to what
+you read. A value you cannot read is unreadable in the sense of the rules above.
+""";
+
+    /**
+     * Prompt of the single-call mode, which sends the roster image straight to the parse step.
+     */
+    public static final String SYSTEM_PROMPT_PARSE_IMAGE = SYSTEM_PROMPT_PARSE + IMAGE_INPUT;
+
+    /**
+     * Single-call prompt answering in the compact output format.
+     */
+    public static final String SYSTEM_PROMPT_PARSE_IMAGE_COMPACT = SYSTEM_PROMPT_PARSE_COMPACT + IMAGE_INPUT;
 }
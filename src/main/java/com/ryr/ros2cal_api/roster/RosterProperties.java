@@ -1,5 +1,7 @@
 package com.ryr.ros2cal_api.roster;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "app.roster")
@@ -15,6 +17,117 @@ public class RosterProperties {
      */
     private String calendarName = "Roster";
 
+    /**
+     * Conversion result cache keyed by the SHA-256 of the uploaded image.
+     */
+    private final ResultCache resultCache = new ResultCache();
+
+    /**
+     * Reuse of an owner's earlier conversion whose decoded pixels are identical.
+     */
+    private final ContentMatch contentMatch = new ContentMatch();
+
+    /**
+     * Replay of completed requests that carried an Idempotency-Key header.
+     */
+    private final Idempotency idempotency = new Idempotency();
+
+    /**
+     * Cross-instance conversion leases backed by Postgres.
+     */
+    private final Lease lease = new Lease();
+
+    /**
+     * Asynchronous conversion jobs queued in Postgres.
+     */
+    private final Jobs jobs = new Jobs();
+
+    /**
+     * End-to-end time budget of one conversion and its split across stages.
+     */
+    private final Deadline deadline = new Deadline();
+
+    /**
+     * Per-user request and OpenAI token quotas, keyed by the JWT subject.
+     */
+    private final Quota quota = new Quota();
+
+    /**
+     * Thread pool that runs request-level conversion work off the servlet threads (SSE streams).
+     */
+    private final TaskExecutor taskExecutor = new TaskExecutor(16, 512, 512);
+
+    /**
+     * Thread pool for OpenAI calls fanned out by a single conversion (pipelined day chunks).
+     * A full queue makes the submitting thread run the call itself.
+     */
+    private final TaskExecutor modelCallExecutor = new TaskExecutor(64, 64, 1024);
+
+    /**
+     * Threads for CPU-bound image decoding, scaling and encoding (0 uses one per available core).
+     */
+    private int imageThreads;
+
+    /**
+     * Image tasks that may wait for a free image thread; further uploads are rejected with 503.
+     */
+    private int imageQueueCapacity = 128;
+
+    /**
+     * Joining of overlapping screenshots in batch conversions.
+     */
+    private final Stitching stitching = new Stitching();
+
+    /**
+     * Parallel OCR of tall images in horizontal strips.
+     */
+    private final Tiling tiling = new Tiling();
+
+    /**
+     * Overlapping of the OCR and parse calls by day chunk.
+     */
+    private final Pipeline pipeline = new Pipeline();
+
+    /**
+     * Second OCR pass over the image rows of lines the first pass could not fully read.
+     */
+    private final OcrRepair ocrRepair = new OcrRepair();
+
+    /**
+     * Rule-based parsing of well-formed OCR text without the OpenAI parse call.
+     */
+    private final LocalParse localParse = new LocalParse();
+
+    /**
+     * Conversion of the image into event JSON in one OpenAI call instead of OCR followed by parse.
+     */
+    private final SingleCall singleCall = new SingleCall();
+
+    /**
+     * Local checks of parsed events and re-parsing of the roster days that fail them.
+     */
+    private final Validation validation = new Validation();
+
+    /**
+     * Color reduction of the PNG sent to the OCR model.
+     */
+    private final ImageEncoding imageEncoding = new ImageEncoding();
+
+    /**
+     * Size and detail level of the OCR image, chosen from the height of its text.
+     */
+    private final ImageSizing imageSizing = new ImageSizing();
+
+    /**
+     * Maximum number of images accepted by one batch conversion request.
+     */
+    private int batchMaxImages = 10;
+
+    /**
+     * Maximum lifetime of a streaming (SSE) conversion response.
+     */
+    private Duration streamTimeout = Duration.ofMinutes(5);
+
     public String getLocalTz() {
         return localTz;
     }
@@ -30,4 +143,1014 @@ public class RosterProperties {
     public void setCalendarName(String calendarName) {
         this.calendarName = calendarName;
     }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public ContentMatch getContentMatch() {
+        return contentMatch;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Lease getLease() {
+        return lease;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public Quota getQuota() {
+        return quota;
+    }
+
+    public TaskExecutor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    public TaskExecutor getModelCallExecutor() {
+        return modelCallExecutor;
+    }
+
+    public int getImageThreads() {
+        return imageThreads;
+    }
+
+    public void setImageThreads(int imageThreads) {
+        this.imageThreads = imageThreads;
+    }
+
+    public int getImageQueueCapacity() {
+        return imageQueueCapacity;
+    }
+
+    public void setImageQueueCapacity(int imageQueueCapacity) {
+        this.imageQueueCapacity = imageQueueCapacity;
+    }
+
+    public Stitching getStitching() {
+        return stitching;
+    }
+
+    public Tiling getTiling() {
+        return tiling;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public OcrRepair getOcrRepair() {
+        return ocrRepair;
+    }
+
+    public LocalParse getLocalParse() {
+        return localParse;
+    }
+
+    public SingleCall getSingleCall() {
+        return singleCall;
+    }
+
+    public Validation getValidation() {
+        return validation;
+    }
+
+    public ImageEncoding getImageEncoding() {
+        return imageEncoding;
+    }
+
+    public ImageSizing getImageSizing() {
+        return imageSizing;
+    }
+
+    public int getBatchMaxImages() {
+        return batchMaxImages;
+    }
+
+    public void setBatchMaxImages(int batchMaxImages) {
+        this.batchMaxImages = batchMaxImages;
+    }
+
+    public Duration getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    public void setStreamTimeout(Duration streamTimeout) {
+        this.streamTimeout = streamTimeout;
+    }
+
+    public static class ResultCache {
+
+        /**
+         * Enable the conversion result cache.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of results kept in the in-memory LRU tier.
+         */
+        private int maxMemoryEntries = 256;
+
+        /**
+         * Persist results in Postgres so they survive restarts and are shared across instances.
+         */
+        private boolean persistent = true;
+
+        /**
+         * How long a cached result stays valid in both tiers.
+         */
+        private Duration ttl = Duration.ofDays(45);
+
+        /**
+         * How long a result whose events carry a model {@code error} or fail validation stays cached;
+         * long enough for concurrent uploads of the image to share it, short enough to retry soon.
+         */
+        private Duration problemTtl = Duration.ofMinutes(10);
+
+        /**
+         * How often expired results are purged from Postgres.
+         */
+        private Duration purgeInterval = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMemoryEntries() {
+            return maxMemoryEntries;
+        }
+
+        public void setMaxMemoryEntries(int maxMemoryEntries) {
+            this.maxMemoryEntries = maxMemoryEntries;
+        }
+
+        public boolean isPersistent() {
+            return persistent;
+        }
+
+        public void setPersistent(boolean persistent) {
+            this.persistent = persistent;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getProblemTtl() {
+            return problemTtl;
+        }
+
+        public void setProblemTtl(Duration problemTtl) {
+            this.problemTtl = problemTtl;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+    }
+
+    public static class ContentMatch {
+
+        /**
+         * Reuse the result of an earlier conversion by the same owner whose image shows the same roster.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum Hamming distance (out of 256 bits) between perceptual hashes for an earlier upload
+         * to be a candidate.
+         */
+        private int maxDistance = 6;
+
+        /**
+         * Maximum luminance difference (out of 255) of any thumbnail cell for a candidate to count as
+         * the same roster. Re-compression stays within a few levels, an edited digit does not.
+         */
+        private int maxCellDifference = 12;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxDistance() {
+            return maxDistance;
+        }
+
+        public void setMaxDistance(int maxDistance) {
+            this.maxDistance = maxDistance;
+        }
+
+        public int getMaxCellDifference() {
+            return maxCellDifference;
+        }
+
+        public void setMaxCellDifference(int maxCellDifference) {
+            this.maxCellDifference = maxCellDifference;
+        }
+    }
+
+    public static class Idempotency {
+
+        /**
+         * How long a completed response can be replayed for the same Idempotency-Key.
+         */
+        private Duration replayWindow = Duration.ofHours(24);
+
+        /**
+         * Maximum number of completed responses kept for replay.
+         */
+        private int maxEntries = 10_000;
+
+        public Duration getReplayWindow() {
+            return replayWindow;
+        }
+
+        public void setReplayWindow(Duration replayWindow) {
+            this.replayWindow = replayWindow;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class Lease {
+
+        /**
+         * Let only one instance convert a given image at a time; others wait for its result.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Lease lifetime; the owner renews it every third of this while converting.
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+
+        /**
+         * How often a waiting instance checks for the owner's result.
+         */
+        private Duration pollInterval = Duration.ofSeconds(2);
+
+        /**
+         * Maximum time a waiting instance blocks before answering 503; never longer than the deadline
+         * of the waiting conversion, so only jobs can wait this long.
+         */
+        private Duration maxWait = Duration.ofMinutes(6);
+
+        /**
+         * How often leases left behind by crashed instances are deleted.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+    }
+
+    public static class Jobs {
+
+        /**
+         * Number of worker threads draining the job queue on this instance (0 disables the workers).
+         */
+        private int workerThreads = 2;
+
+        /**
+         * How long an idle worker sleeps before polling the queue again.
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * How long a claimed job stays locked before another worker may pick it up again.
+         */
+        private Duration lockTtl = Duration.ofMinutes(10);
+
+        /**
+         * Attempts before a job that keeps failing unexpectedly, or whose worker keeps dying, is
+         * marked FAILED.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Delay before a job that failed transiently runs again, doubled for every further attempt.
+         * A longer {@code Retry-After} of the rejection wins.
+         */
+        private Duration retryBackoff = Duration.ofSeconds(5);
+
+        /**
+         * Upper bound of the doubled retry delay.
+         */
+        private Duration maxRetryBackoff = Duration.ofMinutes(5);
+
+        /**
+         * How long finished jobs are kept before they are purged.
+         */
+        private Duration retention = Duration.ofDays(7);
+
+        /**
+         * How often jobs past their retention are purged.
+         */
+        private Duration purgeInterval = Duration.ofHours(1);
+
+        /**
+         * Upper bound for the long-poll wait of GET /api/roster/jobs/{id}.
+         */
+        private Duration maxWait = Duration.ofSeconds(30);
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public Duration getLockTtl() {
+            return lockTtl;
+        }
+
+        public void setLockTtl(Duration lockTtl) {
+            this.lockTtl = lockTtl;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+
+        public Duration getMaxRetryBackoff() {
+            return maxRetryBackoff;
+        }
+
+        public void setMaxRetryBackoff(Duration maxRetryBackoff) {
+            this.maxRetryBackoff = maxRetryBackoff;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+
+    public static class Deadline {
+
+        /**
+         * Time a conversion may take from upload to result, including queueing for OpenAI.
+         */
+        private Duration total = Duration.ofSeconds(120);
+
+        /**
+         * Time a conversion run by a job worker may take; nobody waits on the request, so it gets
+         * longer than {@code total}. Keep it below {@code jobs.lock-ttl}.
+         */
+        private Duration job = Duration.ofMinutes(8);
+
+        /**
+         * Share of the time left after preprocessing that OCR may use; parsing gets the rest.
+         */
+        private double ocrShare = 0.6;
+
+        public Duration getTotal() {
+            return total;
+        }
+
+        public void setTotal(Duration total) {
+            this.total = total;
+        }
+
+        public Duration getJob() {
+            return job;
+        }
+
+        public void setJob(Duration job) {
+            this.job = job;
+        }
+
+        public double getOcrShare() {
+            return ocrShare;
+        }
+
+        public void setOcrShare(double ocrShare) {
+            this.ocrShare = ocrShare;
+        }
+    }
+
+    public static class Quota {
+
+        /**
+         * Reject conversions of users who used up their request or token allowance with 429.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Conversions a user may start per minute on average.
+         */
+        private double requestsPerMinute = 6;
+
+        /**
+         * Conversions a user may start back to back before the per-minute rate applies.
+         */
+        private int requestBurst = 10;
+
+        /**
+         * OpenAI tokens (OCR and parse) a user may use per hour on average.
+         */
+        private long tokensPerHour = 300_000;
+
+        /**
+         * OpenAI tokens a user may use back to back before the hourly rate applies.
+         */
+        private long tokenBurst = 300_000;
+
+        /**
+         * How often local consumption is merged with the shared counters in Postgres.
+         */
+        private Duration syncInterval = Duration.ofSeconds(10);
+
+        /**
+         * How often quota rows of users idle for a day are deleted from Postgres.
+         */
+        private Duration purgeInterval = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public void setRequestsPerMinute(double requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+        }
+
+        public int getRequestBurst() {
+            return requestBurst;
+        }
+
+        public void setRequestBurst(int requestBurst) {
+            this.requestBurst = requestBurst;
+        }
+
+        public long getTokensPerHour() {
+            return tokensPerHour;
+        }
+
+        public void setTokensPerHour(long tokensPerHour) {
+            this.tokensPerHour = tokensPerHour;
+        }
+
+        public long getTokenBurst() {
+            return tokenBurst;
+        }
+
+        public void setTokenBurst(long tokenBurst) {
+            this.tokenBurst = tokenBurst;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+    }
+
+    public static class Stitching {
+
+        /**
+         * Stitch consecutive overlapping screenshots of a batch into one image before OCR.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Height in pixels above which a stitched image is not extended further.
+         */
+        private int maxHeight = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxHeight() {
+            return maxHeight;
+        }
+
+        public void setMaxHeight(int maxHeight) {
+            this.maxHeight = maxHeight;
+        }
+    }
+
+    public static class Tiling {
+
+        /**
+         * OCR tall images as overlapping strips in parallel instead of in one call.
+         */
+        private boolean enabled;
+
+        /**
+         * Height in pixels (after preprocessing) above which an image is split.
+         */
+        private int minHeight = 3000;
+
+        /**
+         * Approximate height of one strip; cuts are moved to the nearest blank row.
+         */
+        private int stripHeight = 1600;
+
+        /**
+         * Pixels each strip repeats from the end of the previous one.
+         */
+        private int overlap = 80;
+
+        /**
+         * Upper bound on strips per image.
+         */
+        private int maxStrips = 6;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinHeight() {
+            return minHeight;
+        }
+
+        public void setMinHeight(int minHeight) {
+            this.minHeight = minHeight;
+        }
+
+        public int getStripHeight() {
+            return stripHeight;
+        }
+
+        public void setStripHeight(int stripHeight) {
+            this.stripHeight = stripHeight;
+        }
+
+        public int getOverlap() {
+            return overlap;
+        }
+
+        public void setOverlap(int overlap) {
+            this.overlap = overlap;
+        }
+
+        public int getMaxStrips() {
+            return maxStrips;
+        }
+
+        public void setMaxStrips(int maxStrips) {
+            this.maxStrips = maxStrips;
+        }
+    }
+
+    public static class Pipeline {
+
+        /**
+         * Parse day chunks while the OCR response is still streaming instead of after it.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Days of roster text sent to one parse call.
+         */
+        private int daysPerChunk = 7;
+
+        /**
+         * Also split complete OCR text (tiled or non-pipelined OCR) into day chunks parsed in parallel.
+         */
+        private boolean shardParse = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getDaysPerChunk() {
+            return daysPerChunk;
+        }
+
+        public void setDaysPerChunk(int daysPerChunk) {
+            this.daysPerChunk = daysPerChunk;
+        }
+
+        public boolean isShardParse() {
+            return shardParse;
+        }
+
+        public void setShardParse(boolean shardParse) {
+            this.shardParse = shardParse;
+        }
+    }
+
+    public static class OcrRepair {
+
+        /**
+         * Re-read lines containing "?" from cropped, upscaled row bands and splice the answers in.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Upper bound on lines re-read per OCR result; further suspect lines are left as they are.
+         */
+        private int maxLines = 8;
+
+        /**
+         * Neighbouring text lines included above and below each cropped line.
+         */
+        private int contextLines = 1;
+
+        /**
+         * Upscaling factor applied to each crop.
+         */
+        private int scale = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxLines() {
+            return maxLines;
+        }
+
+        public void setMaxLines(int maxLines) {
+            this.maxLines = maxLines;
+        }
+
+        public int getContextLines() {
+            return contextLines;
+        }
+
+        public void setContextLines(int contextLines) {
+            this.contextLines = contextLines;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        public void setScale(int scale) {
+            this.scale = scale;
+        }
+    }
+
+    public static class LocalParse {
+
+        /**
+         * Parse OCR text locally and call the model only for text the rules do not fully accept.
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class SingleCall {
+
+        /**
+         * Send the image with the parse instructions to the single-call model and skip OCR text.
+         * Tiling, pipelining and the local parser do not apply in this mode.
+         */
+        private boolean enabled;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Validation {
+
+        /**
+         * Check parsed events locally and send the OCR lines of days that fail to the parse model
+         * once more.
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class ImageEncoding {
+
+        public enum Mode {
+            RGB, GRAYSCALE, PALETTE, BINARY
+        }
+
+        /**
+         * {@code rgb} (24-bit), {@code grayscale} (8-bit), {@code palette} (the most frequent colors,
+         * 1 to 8 bits) or {@code binary} (1-bit adaptive threshold).
+         */
+        private Mode mode = Mode.GRAYSCALE;
+
+        /**
+         * Palette size in {@code palette} mode; 16 or fewer colors give a 4-bit PNG.
+         */
+        private int paletteColors = 16;
+
+        /**
+         * Side in pixels of the square whose mean brightness a pixel is compared with in
+         * {@code binary} mode.
+         */
+        private int thresholdWindow = 31;
+
+        /**
+         * How many luminance levels (0-255) darker than that mean a pixel must be to count as ink.
+         */
+        private int thresholdContrast = 32;
+
+        /**
+         * Luminance (0-255) below which a pixel is always ink, whatever its surroundings.
+         */
+        private int darkLevel = 80;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public int getPaletteColors() {
+            return paletteColors;
+        }
+
+        public void setPaletteColors(int paletteColors) {
+            this.paletteColors = paletteColors;
+        }
+
+        public int getThresholdWindow() {
+            return thresholdWindow;
+        }
+
+        public void setThresholdWindow(int thresholdWindow) {
+            this.thresholdWindow = thresholdWindow;
+        }
+
+        public int getThresholdContrast() {
+            return thresholdContrast;
+        }
+
+        public void setThresholdContrast(int thresholdContrast) {
+            this.thresholdContrast = thresholdContrast;
+        }
+
+        public int getDarkLevel() {
+            return darkLevel;
+        }
+
+        public void setDarkLevel(int darkLevel) {
+            this.darkLevel = darkLevel;
+        }
+    }
+
+    public static class ImageSizing {
+
+        /**
+         * Size images by their text height and vision tiles; when off, images narrower than 1500
+         * pixels are doubled and always sent at high detail.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Height in pixels the text rows should have in the image sent to the model.
+         */
+        private int minGlyphHeight = 12;
+
+        /**
+         * Upper bound on upscaling.
+         */
+        private double maxScale = 2.0;
+
+        /**
+         * Share by which text may fall short of {@code min-glyph-height} when that saves vision
+         * tiles.
+         */
+        private double tileTolerance = 0.15;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinGlyphHeight() {
+            return minGlyphHeight;
+        }
+
+        public void setMinGlyphHeight(int minGlyphHeight) {
+            this.minGlyphHeight = minGlyphHeight;
+        }
+
+        public double getMaxScale() {
+            return maxScale;
+        }
+
+        public void setMaxScale(double maxScale) {
+            this.maxScale = maxScale;
+        }
+
+        public double getTileTolerance() {
+            return tileTolerance;
+        }
+
+        public void setTileTolerance(double tileTolerance) {
+            this.tileTolerance = tileTolerance;
+        }
+    }
+
+    public static class TaskExecutor {
+
+        /**
+         * Threads kept alive in the pool.
+         */
+        private int corePoolSize;
+
+        /**
+         * Upper bound of concurrently running tasks.
+         */
+        private int maxPoolSize;
+
+        /**
+         * Tasks queued before the pool's overflow policy applies.
+         */
+        private int queueCapacity;
+
+        TaskExecutor(int corePoolSize, int maxPoolSize, int queueCapacity) {
+            this.corePoolSize = corePoolSize;
+            this.maxPoolSize = maxPoolSize;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "roster_result")
+public class RosterResult {
+
+    @Id
+    @Column(name = "image_sha256", nullable = false, updatable = false, length = 64)
+    private String imageSha256;
+
+    @Column(name = "result_json", nullable = false, columnDefinition = "text")
+    private String resultJson;
+
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    @Column(name = "owner_sub")
+    private String ownerSub;
+
+    @Column(name = "perceptual_hash", length = 64)
+    private String perceptualHash;
+
+    @Column(name = "thumbnail", columnDefinition = "text")
+    private String thumbnail;
+
+    @Column(name = "pipeline_fingerprint", length = 64)
+    private String pipelineFingerprint;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @PrePersist
+    void prePersist() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Two-tier cache of conversion results keyed by the SHA-256 of the uploaded image.
+ * The in-memory tier is a bounded LRU; the Postgres tier survives restarts and is shared across instances.
+ * Cached results are deep unmodifiable copies, since every hit hands out the same instance.
+ * Every entry records the pipeline fingerprint (models, prompt versions, conversion mode) it was
+ * produced with; a changed pipeline misses instead of serving its predecessor's output. Results
+ * with a model error or failed validation are only kept for {@code problem-ttl}.
+ */
+@Component
+public class RosterResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterResultCache.class);
+    private static final String PROMPT_VERSION = RosterHashes.sha256Hex(String.join("\n",
+            RosterPrompts.SYSTEM_PROMPT_OCR,
+            RosterPrompts.SYSTEM_PROMPT_PARSE_COMPACT,
+            RosterPrompts.SYSTEM_PROMPT_PARSE_IMAGE_COMPACT)).substring(0, 16);
+
+    private final RosterProperties.ResultCache properties;
+    private final RosterProperties rosterProperties;
+    private final OpenAiProperties openAiProperties;
+    private final RosterResultRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Map<String, MemoryEntry> memory;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    public RosterResultCache(
+            RosterProperties rosterProperties,
+            OpenAiProperties openAiProperties,
+            RosterResultRepository repository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.properties = rosterProperties.getResultCache();
+        this.rosterProperties = rosterProperties;
+        this.openAiProperties = openAiProperties;
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        int maxEntries = Math.max(0, properties.getMaxMemoryEntries());
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.memoryHits = Counter.builder("roster.result.cache.requests")
+                .tag("tier", "memory")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.databaseHits = Counter.builder("roster.result.cache.requests")
+                .tag("tier", "database")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("roster.result.cache.requests")
+                .tag("tier", "all")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("roster.result.cache.memory.entries", this, RosterResultCache::memorySize)
+                .register(meterRegistry);
+    }
+
+    public RosterParseResult get(String imageSha256) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        Instant now = Instant.now();
+        String fingerprint = fingerprint();
+        synchronized (memory) {
+            MemoryEntry entry = memory.get(imageSha256);
+            if (entry != null && entry.isValid(fingerprint, now)) {
+                memoryHits.increment();
+                log.info("Roster result cache hit tier=memory image_sha256={}", imageSha256);
+                return toResult(entry.data());
+            }
+            if (entry != null) {
+                memory.remove(imageSha256);
+            }
+        }
+
+        if (properties.isPersistent()) {
+            RosterResult stored = findStored(imageSha256);
+            if (stored != null && stored.getExpiresAt().isAfter(now)
+                    && fingerprint.equals(stored.getPipelineFingerprint())) {
+                Map<String, Object> data = readData(stored.getResultJson());
+                if (data != null) {
+                    Map<String, Object> cached = putMemory(imageSha256, data, fingerprint, stored.getExpiresAt());
+                    databaseHits.increment();
+                    log.info("Roster result cache hit tier=database image_sha256={}", imageSha256);
+                    return toResult(cached);
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Reads the in-memory tier without touching the hit/miss counters. Used by a conversion that
+     * starts right after another one for the same image finished.
+     */
+    public RosterParseResult peek(String imageSha256) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        synchronized (memory) {
+            MemoryEntry entry = memory.get(imageSha256);
+            return entry != null && entry.isValid(fingerprint(), Instant.now()) ? toResult(entry.data()) : null;
+        }
+    }
+
+    /**
+     * Reads a result another instance published to Postgres, without touching the hit/miss counters.
+     * Used while waiting on a conversion lease, so the owner's result is taken whatever pipeline
+     * produced it; later lookups still check the fingerprint.
+     */
+    public RosterParseResult getPublished(String imageSha256) {
+        RosterResult stored = findStored(imageSha256);
+        if (stored == null || !stored.getExpiresAt().isAfter(Instant.now())) {
+            return null;
+        }
+        Map<String, Object> data = readData(stored.getResultJson());
+        if (data == null) {
+            return null;
+        }
+        return toResult(putMemory(imageSha256, data, stored.getPipelineFingerprint(), stored.getExpiresAt()));
+    }
+
+    public void put(String imageSha256, RosterParseResult result) {
+        put(imageSha256, result, null, null);
+    }
+
+    /**
+     * Stores a result together with the owner and image content that {@link RosterContentIndex}
+     * is rebuilt from.
+     */
+    public void put(String imageSha256, RosterParseResult result, String ownerSub, RosterImagePreprocessor.Content content) {
+        if (!properties.isEnabled() || result == null || result.getData() == null) {
+            return;
+        }
+        boolean problems = hasProblems(result.getData());
+        Instant expiresAt = Instant.now().plus(problems ? properties.getProblemTtl() : properties.getTtl());
+        if (problems) {
+            log.info("Roster result cached briefly image_sha256={} ttl={}", imageSha256, properties.getProblemTtl());
+        }
+        String fingerprint = fingerprint();
+        putMemory(imageSha256, result.getData(), fingerprint, expiresAt);
+        if (!properties.isPersistent()) {
+            return;
+        }
+        try {
+            RosterResult entity = RosterResult.builder()
+                    .imageSha256(imageSha256)
+                    .resultJson(objectMapper.writeValueAsString(result.getData()))
+                    .contentSha256(content != null ? content.sha256() : null)
+                    .perceptualHash(content != null && content.perceptualHash() != null ? content.perceptualHash().toHex() : null)
+                    .thumbnail(content != null && content.thumbnail() != null ? content.thumbnail().toBase64() : null)
+                    .ownerSub(ownerSub)
+                    .pipelineFingerprint(fingerprint)
+                    .expiresAt(expiresAt)
+                    .build();
+            repository.save(entity);
+        } catch (JsonProcessingException ex) {
+            log.warn("Roster result cache encode failed image_sha256={}", imageSha256, ex);
+        } catch (DataAccessException ex) {
+            log.warn("Roster result cache store failed image_sha256={} message={}", imageSha256, ex.getMessage());
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.roster.result-cache.purge-interval:PT1H}",
+            initialDelayString = "${app.roster.result-cache.purge-interval:PT1H}")
+    public void purgeExpired() {
+        if (!properties.isEnabled() || !properties.isPersistent()) {
+            return;
+        }
+        try {
+            int removed = repository.deleteExpired(Instant.now());
+            if (removed > 0) {
+                log.info("Roster result cache purge removed={}", removed);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Roster result cache purge failed message={}", ex.getMessage());
+        }
+    }
+
+    public int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    /**
+     * Hash of everything that decides what a conversion outputs: the models, the prompts and which
+     * pipeline stages run. Read per call, since the properties can change at runtime.
+     */
+    String fingerprint() {
+        OpenAiProperties.Routing routing = openAiProperties.getRouting();
+        String configuration = String.join("\n",
+                openAiProperties.getOcrModel(),
+                openAiProperties.getParseModel(),
+                openAiProperties.getSingleCallModel(),
+                routing.isEnabled() ? routing.getLightOcrModel() + "," + routing.getLightParseModel() : "-",
+                openAiProperties.isCompactParse() ? "compact" : "full",
+                PROMPT_VERSION,
+                "single-call=" + rosterProperties.getSingleCall().isEnabled(),
+                "local-parse=" + rosterProperties.getLocalParse().isEnabled(),
+                "validation=" + rosterProperties.getValidation().isEnabled(),
+                "ocr-repair=" + rosterProperties.getOcrRepair().isEnabled(),
+                "tiling=" + rosterProperties.getTiling().isEnabled(),
+                "pipeline=" + rosterProperties.getPipeline().isEnabled());
+        return RosterHashes.sha256Hex(configuration);
+    }
+
+    /**
+     * Whether any event carries a model error or fails the checks that need no OCR text.
+     */
+    private static boolean hasProblems(Map<String, Object> data) {
+        return !RosterEventValidator.validate(RosterEventMerger.events(data), Set.of()).isEmpty();
+    }
+
+    private Map<String, Object> putMemory(
+            String imageSha256, Map<String, Object> data, String fingerprint, Instant expiresAt) {
+        Map<String, Object> frozen = unmodifiableMap(data);
+        synchronized (memory) {
+            memory.put(imageSha256, new MemoryEntry(frozen, fingerprint, expiresAt));
+        }
+        return frozen;
+    }
+
+    private static Map<String, Object> unmodifiableMap(Map<?, ?> map) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((key, value) -> copy.put(String.valueOf(key), unmodifiable(value)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static Object unmodifiable(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return unmodifiableMap(map);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(item -> copy.add(unmodifiable(item)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private RosterResult findStored(String imageSha256) {
+        try {
+            return repository.findById(imageSha256).orElse(null);
+        } catch (DataAccessException ex) {
+            log.warn("Roster result cache lookup failed image_sha256={} message={}", imageSha256, ex.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Object> readData(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (IOException ex) {
+            log.warn("Roster result cache decode failed", ex);
+            return null;
+        }
+    }
+
+    private RosterParseResult toResult(Map<String, Object> data) {
+        // A cache hit spends no OpenAI tokens, so both usages are empty.
+        return new RosterParseResult(data, new CallUsage(), new CallUsage());
+    }
+
+    private record MemoryEntry(Map<String, Object> data, String fingerprint, Instant expiresAt) {
+
+        private boolean isValid(String currentFingerprint, Instant now) {
+            return expiresAt.isAfter(now) && Objects.equals(fingerprint, currentFingerprint);
+        }
+    }
+}
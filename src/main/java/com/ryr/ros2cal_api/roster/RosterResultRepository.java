@@ -0,0 +1,38 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RosterResultRepository extends JpaRepository<RosterResult, String> {
+
+    @Modifying
+    @Transactional
+    @Query("delete from RosterResult r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+
+    @Query("""
+            select r.imageSha256 as imageSha256, r.contentSha256 as contentSha256, r.ownerSub as ownerSub,
+                   r.perceptualHash as perceptualHash, r.thumbnail as thumbnail
+            from RosterResult r
+            where r.contentSha256 is not null and r.ownerSub is not null and r.expiresAt > :now
+            """)
+    List<ContentHashView> findContentHashes(@Param("now") Instant now);
+
+    interface ContentHashView {
+        String getImageSha256();
+
+        String getContentSha256();
+
+        String getOwnerSub();
+
+        String getPerceptualHash();
+
+        String getThumbnail();
+    }
+}
@@ -0,0 +1,258 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Joins consecutive screenshots of one scrolling roster view into a single tall image. Each pixel row
+ * is reduced to a short luminance signature; the vertical offset at which the top of the next
+ * screenshot repeats the bottom of the previous one is found by matching those signatures, and the
+ * repeated rows are dropped. Sticky bars (status bar on top, navigation bar at the bottom) are
+ * tolerated by skipping a limited number of rows at either edge.
+ */
+@Component
+public class RosterScreenshotStitcher {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterScreenshotStitcher.class);
+
+    private static final int SIGNATURE_CELLS = 64;
+    private static final int ROW_TOLERANCE = 4;
+    private static final int INFORMATIVE_CONTRAST = 24;
+    private static final int ANCHOR_CANDIDATES = 8;
+    private static final int ANCHOR_SPACING = 12;
+    private static final int MAX_CELL_DIFF = 24;
+    private static final int MIN_MATCHED_ROWS = 12;
+    private static final double MIN_MATCH_RATIO = 0.9;
+    private static final double MAX_EDGE_FRACTION = 0.15;
+
+    private final RosterProperties.Stitching properties;
+
+    public RosterScreenshotStitcher(RosterProperties rosterProperties) {
+        this.properties = rosterProperties.getStitching();
+    }
+
+    /**
+     * Stitches {@code screenshots} in order. Runs of overlapping screenshots become one segment;
+     * a screenshot that does not continue the previous one, or would make the segment taller than
+     * the configured limit, starts a new segment.
+     */
+    public List<Segment> stitch(List<BufferedImage> screenshots) {
+        List<Segment> segments = new ArrayList<>();
+        List<Piece> pieces = new ArrayList<>();
+        List<Integer> sources = new ArrayList<>();
+        int height = 0;
+        RowSignatures previous = null;
+        for (int i = 0; i < screenshots.size(); i++) {
+            BufferedImage screenshot = screenshots.get(i);
+            RowSignatures current = new RowSignatures(screenshot);
+            Overlap overlap = previous != null ? findOverlap(previous, current) : null;
+            Piece last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+            int lastEnd = overlap != null ? Math.max(last.from(), overlap.previousEnd()) : 0;
+            if (overlap != null
+                    && height - (last.to() - lastEnd) + current.height() - overlap.nextStart() <= properties.getMaxHeight()) {
+                height -= last.to() - lastEnd;
+                pieces.set(pieces.size() - 1, new Piece(last.image(), last.from(), lastEnd));
+                pieces.add(new Piece(screenshot, overlap.nextStart(), screenshot.getHeight()));
+                height += screenshot.getHeight() - overlap.nextStart();
+                sources.add(i);
+                log.info("Roster screenshot stitched index={} overlap_rows={} skipped_header_rows={}",
+                        i, overlap.previousEnd() - overlap.previousStart(), overlap.skippedHeaderRows());
+            } else {
+                if (!pieces.isEmpty()) {
+                    segments.add(render(pieces, sources, height));
+                }
+                pieces = new ArrayList<>();
+                sources = new ArrayList<>();
+                pieces.add(new Piece(screenshot, 0, screenshot.getHeight()));
+                sources.add(i);
+                height = screenshot.getHeight();
+            }
+            previous = current;
+        }
+        if (!pieces.isEmpty()) {
+            segments.add(render(pieces, sources, height));
+        }
+        return segments;
+    }
+
+    /**
+     * Returns where {@code next} continues {@code previous}, or {@code null} if it does not. A few
+     * informative rows near the top of {@code next} serve as anchors; every row of {@code previous}
+     * resembling an anchor yields a candidate offset, which is kept if the rows below the anchor
+     * line up with {@code previous} down to its end.
+     */
+    Overlap findOverlap(RowSignatures previous, RowSignatures next) {
+        if (previous.width() != next.width()) {
+            return null;
+        }
+        int maxEdge = (int) (Math.min(previous.height(), next.height()) * MAX_EDGE_FRACTION);
+        int footer = commonFooter(previous, next, maxEdge);
+        int previousEnd = previous.height() - footer;
+        int nextEnd = next.height() - footer;
+
+        Overlap best = null;
+        double bestRatio = 0;
+        int bestMatched = 0;
+        int anchors = 0;
+        for (int anchor = 0; anchor <= maxEdge && anchors < ANCHOR_CANDIDATES; anchor++) {
+            if (!next.informative(anchor)) {
+                continue;
+            }
+            anchors++;
+            for (int candidate = 0; candidate < previousEnd; candidate++) {
+                if (!previous.matches(candidate, next, anchor)) {
+                    continue;
+                }
+                int offset = candidate - anchor;
+                int[] counts = verify(previous, next, offset, anchor, previousEnd, nextEnd);
+                int informative = counts[0];
+                int matched = counts[1];
+                if (matched < MIN_MATCHED_ROWS || matched < informative * MIN_MATCH_RATIO) {
+                    continue;
+                }
+                double ratio = (double) matched / informative;
+                if (ratio > bestRatio || (ratio == bestRatio && matched > bestMatched)) {
+                    bestRatio = ratio;
+                    bestMatched = matched;
+                    best = new Overlap(candidate, previousEnd, Math.min(previousEnd - offset, next.height()), anchor);
+                }
+            }
+            // Skip past the rest of this text line so the next anchor samples a different one.
+            anchor += ANCHOR_SPACING;
+        }
+        return best;
+    }
+
+    /**
+     * Lays row {@code y} of {@code next} over row {@code y + offset} of {@code previous} and returns
+     * the number of informative rows compared and the number of those that matched.
+     */
+    private int[] verify(RowSignatures previous, RowSignatures next, int offset, int from, int previousEnd, int nextEnd) {
+        int rows = Math.min(nextEnd, previousEnd - offset) - from;
+        int allowedMismatches = (int) (rows * (1 - MIN_MATCH_RATIO));
+        int informative = 0;
+        int matched = 0;
+        for (int y = from; y < from + rows; y++) {
+            if (!next.informative(y)) {
+                continue;
+            }
+            informative++;
+            if (previous.matches(y + offset, next, y)) {
+                matched++;
+            } else if (informative - matched > allowedMismatches) {
+                break;
+            }
+        }
+        return new int[] { informative, matched };
+    }
+
+    private static int commonFooter(RowSignatures previous, RowSignatures next, int maxEdge) {
+        int footer = 0;
+        while (footer < maxEdge
+                && previous.matches(previous.height() - 1 - footer, next, next.height() - 1 - footer)) {
+            footer++;
+        }
+        return footer == maxEdge ? 0 : footer;
+    }
+
+    private static Segment render(List<Piece> pieces, List<Integer> sources, int height) {
+        if (pieces.size() == 1) {
+            return new Segment(List.copyOf(sources), pieces.get(0).image());
+        }
+        int width = pieces.get(0).image().getWidth();
+        BufferedImage stitched = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = stitched.createGraphics();
+        int y = 0;
+        for (Piece piece : pieces) {
+            int rows = piece.to() - piece.from();
+            if (rows <= 0) {
+                continue;
+            }
+            graphics.drawImage(piece.image(), 0, y, width, y + rows, 0, piece.from(), width, piece.to(), null);
+            y += rows;
+        }
+        graphics.dispose();
+        return new Segment(List.copyOf(sources), stitched);
+    }
+
+    /**
+     * A stitched image and the indexes of the screenshots it was built from.
+     */
+    public record Segment(List<Integer> sources, BufferedImage image) {}
+
+    /**
+     * Rows {@code [previousStart, previousEnd)} of the previous screenshot reappear in the next one
+     * below its first {@code skippedHeaderRows} rows; new content starts at row {@code nextStart}.
+     */
+    record Overlap(int previousStart, int previousEnd, int nextStart, int skippedHeaderRows) {}
+
+    private record Piece(BufferedImage image, int from, int to) {}
+
+    static final class RowSignatures {
+
+        private final int width;
+        private final int[][] rows;
+        private final boolean[] informative;
+
+        RowSignatures(BufferedImage image) {
+            this.width = image.getWidth();
+            int height = image.getHeight();
+            this.rows = new int[height][SIGNATURE_CELLS];
+            this.informative = new boolean[height];
+            int[] pixels = new int[width];
+            int[] counts = new int[SIGNATURE_CELLS];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, pixels, 0, width);
+                int[] signature = rows[y];
+                Arrays.fill(counts, 0);
+                for (int x = 0; x < width; x++) {
+                    int cell = (int) ((long) x * SIGNATURE_CELLS / width);
+                    int rgb = pixels[x];
+                    signature[cell] += (299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+                    counts[cell]++;
+                }
+                int min = 255;
+                int max = 0;
+                for (int cell = 0; cell < SIGNATURE_CELLS; cell++) {
+                    signature[cell] = counts[cell] == 0 ? 0 : signature[cell] / counts[cell];
+                    min = Math.min(min, signature[cell]);
+                    max = Math.max(max, signature[cell]);
+                }
+                informative[y] = max - min >= INFORMATIVE_CONTRAST;
+            }
+        }
+
+        int width() {
+            return width;
+        }
+
+        int height() {
+            return rows.length;
+        }
+
+        boolean informative(int y) {
+            return informative[y];
+        }
+
+        boolean matches(int y, RowSignatures other, int otherY) {
+            int[] a = rows[y];
+            int[] b = other.rows[otherY];
+            int diff = 0;
+            for (int cell = 0; cell < SIGNATURE_CELLS; cell++) {
+                int cellDiff = Math.abs(a[cell] - b[cell]);
+                if (cellDiff > MAX_CELL_DIFF) {
+                    return false;
+                }
+                diff += cellDiff;
+            }
+            return diff <= ROW_TOLERANCE * SIGNATURE_CELLS;
+        }
+    }
+}
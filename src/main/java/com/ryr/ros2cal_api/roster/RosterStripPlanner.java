@@ -0,0 +1,109 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans horizontal strips of a tall roster image for parallel OCR. Cuts are placed in blank rows
+ * (rows of nearly uniform luminance, found by a horizontal projection) close to evenly spaced
+ * targets, so text lines are not cut in half. Each strip after the first also starts
+ * {@code overlap} pixels above its cut; the repeated lines are removed again by
+ * {@link RosterOcrTextJoiner}.
+ */
+public final class RosterStripPlanner {
+
+    private static final int BLANK_ROW_RANGE = 32;
+    private static final int SAMPLE_STEP = 2;
+
+    private RosterStripPlanner() {
+    }
+
+    public record Strip(int top, int bottom) {
+
+        public int height() {
+            return bottom - top;
+        }
+    }
+
+    /**
+     * Returns the strips covering {@code image}, a single strip when it is not taller than
+     * {@code minHeight}.
+     */
+    public static List<Strip> plan(BufferedImage image, int minHeight, int stripHeight, int overlap, int maxStrips) {
+        int height = image.getHeight();
+        if (height <= Math.max(minHeight, stripHeight) || maxStrips < 2) {
+            return List.of(new Strip(0, height));
+        }
+        boolean[] blank = blankRows(image);
+        int count = Math.min(maxStrips, (int) Math.ceil((double) height / stripHeight));
+        int window = height / count / 4;
+
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        for (int i = 1; i < count; i++) {
+            int target = (int) ((long) height * i / count);
+            int cut = nearestBlank(blank, target, window);
+            if (cut > cuts.get(cuts.size() - 1)) {
+                cuts.add(cut);
+            }
+        }
+        cuts.add(height);
+
+        List<Strip> strips = new ArrayList<>();
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            int top = cuts.get(i);
+            if (i > 0 && overlap > 0) {
+                top = nearestBlank(blank, Math.max(0, top - overlap), overlap / 2);
+            }
+            strips.add(new Strip(top, cuts.get(i + 1)));
+        }
+        return strips;
+    }
+
+    /**
+     * Marks rows whose sampled luminance varies by no more than a small range: background, card
+     * fills and separators, but no text.
+     */
+    static boolean[] blankRows(BufferedImage image) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        boolean[] blank = new boolean[image.getHeight()];
+        for (int y = 0; y < blank.length; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int min = 255;
+            int max = 0;
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                int rgb = row[x];
+                int luminance = (299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF)) / 1000;
+                min = Math.min(min, luminance);
+                max = Math.max(max, luminance);
+            }
+            blank[y] = max - min <= BLANK_ROW_RANGE;
+        }
+        return blank;
+    }
+
+    /**
+     * The middle of the blank run closest to {@code target} within {@code window} rows, or
+     * {@code target} itself when there is none.
+     */
+    static int nearestBlank(boolean[] blank, int target, int window) {
+        for (int distance = 0; distance <= window; distance++) {
+            for (int y : new int[] { target - distance, target + distance }) {
+                if (y > 0 && y < blank.length && blank[y]) {
+                    int start = y;
+                    int end = y;
+                    while (start > 0 && blank[start - 1] && target - start < window) {
+                        start--;
+                    }
+                    while (end + 1 < blank.length && blank[end + 1] && end - target < window) {
+                        end++;
+                    }
+                    return (start + end) / 2;
+                }
+            }
+        }
+        return Math.max(0, Math.min(blank.length, target));
+    }
+}
@@ -0,0 +1,84 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Grayscale thumbnail of a roster image: the mean luminance of {@value #COLUMNS} column cells in
+ * each of a number of row bands chosen so the cells are roughly square. Re-compressed copies of a
+ * roster differ by a few levels per cell; a changed digit in one duty row moves its cell by far more,
+ * even when the perceptual hash of the whole image stays the same.
+ */
+public final class RosterThumbnail {
+
+    static final int COLUMNS = 64;
+    private static final int MAX_ROWS = 256;
+
+    private final byte[] cells;
+
+    private RosterThumbnail(byte[] cells) {
+        this.cells = cells;
+    }
+
+    public static RosterThumbnail of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rows = (int) Math.max(1, Math.min(MAX_ROWS, Math.round((double) COLUMNS * height / width)));
+        long[] sums = new long[COLUMNS * rows];
+        int[] counts = new int[COLUMNS * rows];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int band = (int) ((long) y * rows / height);
+            for (int x = 0; x < width; x++) {
+                int cell = band * COLUMNS + (int) ((long) x * COLUMNS / width);
+                int rgb = row[x];
+                sums[cell] += (299L * ((rgb >> 16) & 0xFF) + 587L * ((rgb >> 8) & 0xFF) + 114L * (rgb & 0xFF)) / 1000;
+                counts[cell]++;
+            }
+        }
+        byte[] cells = new byte[sums.length];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (counts[i] == 0 ? 0 : sums[i] / counts[i]);
+        }
+        return new RosterThumbnail(cells);
+    }
+
+    public static RosterThumbnail fromBase64(String encoded) {
+        byte[] cells = Base64.getDecoder().decode(encoded);
+        if (cells.length == 0 || cells.length % COLUMNS != 0) {
+            throw new IllegalArgumentException("thumbnail must hold whole rows of " + COLUMNS + " cells");
+        }
+        return new RosterThumbnail(cells);
+    }
+
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(cells);
+    }
+
+    /**
+     * The largest luminance difference between matching cells, or {@link Integer#MAX_VALUE} when the
+     * thumbnails do not have the same number of row bands (a different aspect ratio).
+     */
+    public int difference(RosterThumbnail other) {
+        if (other.cells.length != cells.length) {
+            return Integer.MAX_VALUE;
+        }
+        int largest = 0;
+        for (int i = 0; i < cells.length; i++) {
+            largest = Math.max(largest, Math.abs((cells[i] & 0xFF) - (other.cells[i] & 0xFF)));
+        }
+        return largest;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RosterThumbnail thumbnail && Arrays.equals(cells, thumbnail.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cells);
+    }
+}
@@ -0,0 +1,286 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user token buckets for conversions and OpenAI tokens, keyed by the JWT subject. A conversion
+ * takes one request per image up front and is refused while the token bucket is empty; the tokens OpenAI
+ * actually used are charged as each call completes, so a bucket may go into debt.
+ *
+ * <p>Buckets live in memory behind striped locks and are merged with {@code roster_user_quota}
+ * every {@code sync-interval}, which makes the limits hold across instances within that delay.
+ */
+@Component
+public class RosterUsageQuotas {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterUsageQuotas.class);
+    private static final int STRIPES = 64;
+    private static final long IDLE_EVICT_NANOS = Duration.ofHours(1).toNanos();
+
+    private final RosterUserQuotaRepository repository;
+    private final RosterProperties.Quota properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public RosterUsageQuotas(
+            RosterUserQuotaRepository repository,
+            RosterProperties rosterProperties,
+            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.properties = rosterProperties.getQuota();
+        this.meterRegistry = meterRegistry;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Takes one conversion from the user's allowance.
+     *
+     * @throws RetryLaterException with 429 when the user has no requests or tokens left
+     */
+    public void admit(String ownerSub) {
+        admit(ownerSub, 1);
+    }
+
+    /**
+     * Takes {@code conversions} requests from the user's allowance, one per image of a batch. A batch
+     * larger than the burst is admitted once the bucket is full and leaves it in debt.
+     *
+     * @throws RetryLaterException with 429 when the user has too few requests or no tokens left
+     */
+    public void admit(String ownerSub, int conversions) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        double needed = Math.min(conversions, properties.getRequestBurst());
+        ReentrantLock lock = stripe(ownerSub);
+        lock.lock();
+        try {
+            Bucket bucket = bucket(ownerSub);
+            long now = System.nanoTime();
+            bucket.refill(now);
+            bucket.lastUsed = now;
+            if (bucket.requests < needed) {
+                throw reject(ownerSub, "requests", seconds((needed - bucket.requests) / requestsPerSecond()));
+            }
+            if (bucket.tokens <= 0) {
+                throw reject(ownerSub, "tokens", seconds((1 - bucket.tokens) / tokensPerSecond()));
+            }
+            bucket.requests -= conversions;
+            bucket.pendingRequests += conversions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Charges the tokens of one completed OpenAI call to the user.
+     */
+    public void charge(String ownerSub, CallUsage usage) {
+        if (!properties.isEnabled() || usage == null || usage.getEffectiveTotal() <= 0) {
+            return;
+        }
+        int tokens = usage.getEffectiveTotal();
+        ReentrantLock lock = stripe(ownerSub);
+        lock.lock();
+        try {
+            Bucket bucket = bucket(ownerSub);
+            long now = System.nanoTime();
+            bucket.refill(now);
+            bucket.lastUsed = now;
+            bucket.tokens -= tokens;
+            bucket.pendingTokens += tokens;
+        } finally {
+            lock.unlock();
+        }
+        meterRegistry.counter("roster.quota.charged.tokens").increment(tokens);
+    }
+
+    /**
+     * Wraps {@code delegate} so the usage of every OpenAI call of the conversion is charged to the user.
+     */
+    public RosterProgressListener charging(String ownerSub, RosterProgressListener delegate) {
+        return new ChargingListener(ownerSub, delegate);
+    }
+
+    /**
+     * Merges local consumption into the shared buckets and adopts their levels, which include what
+     * other instances consumed meanwhile.
+     */
+    @Scheduled(
+            fixedDelayString = "${app.roster.quota.sync-interval:PT10S}",
+            initialDelayString = "${app.roster.quota.sync-interval:PT10S}")
+    public void sync() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (String ownerSub : List.copyOf(buckets.keySet())) {
+            syncUser(ownerSub);
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.roster.quota.purge-interval:PT1H}",
+            initialDelayString = "${app.roster.quota.purge-interval:PT1H}")
+    public void purgeIdle() {
+        try {
+            repository.deleteIdle();
+        } catch (DataAccessException ex) {
+            log.warn("Roster quota purge failed message={}", ex.getMessage());
+        }
+    }
+
+    private void syncUser(String ownerSub) {
+        ReentrantLock lock = stripe(ownerSub);
+        double requestsUsed;
+        double tokensUsed;
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(ownerSub);
+            if (bucket == null) {
+                return;
+            }
+            if (bucket.pendingRequests == 0 && bucket.pendingTokens == 0
+                    && System.nanoTime() - bucket.lastUsed > IDLE_EVICT_NANOS) {
+                buckets.remove(ownerSub);
+                return;
+            }
+            requestsUsed = bucket.pendingRequests;
+            tokensUsed = bucket.pendingTokens;
+            bucket.pendingRequests = 0;
+            bucket.pendingTokens = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        RosterUserQuotaRepository.Levels levels;
+        try {
+            List<RosterUserQuotaRepository.Levels> result = repository.consume(
+                    ownerSub,
+                    requestsUsed,
+                    tokensUsed,
+                    properties.getRequestBurst(),
+                    properties.getTokenBurst(),
+                    requestsPerSecond(),
+                    tokensPerSecond());
+            levels = result.isEmpty() ? null : result.get(0);
+        } catch (DataAccessException ex) {
+            // Keep enforcing locally and hand the consumption to the next sync.
+            log.warn("Roster quota sync failed owner_sub={} message={}", ownerSub, ex.getMessage());
+            levels = null;
+        }
+
+        lock.lock();
+        try {
+            Bucket bucket = bucket(ownerSub);
+            if (levels == null) {
+                bucket.pendingRequests += requestsUsed;
+                bucket.pendingTokens += tokensUsed;
+                return;
+            }
+            // Consumption recorded while the query ran is not in the shared levels yet.
+            bucket.requests = levels.getRequests() - bucket.pendingRequests;
+            bucket.tokens = levels.getTokens() - bucket.pendingTokens;
+            bucket.refilledAt = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Bucket bucket(String ownerSub) {
+        return buckets.computeIfAbsent(ownerSub, key -> new Bucket());
+    }
+
+    private ReentrantLock stripe(String ownerSub) {
+        return stripes[(ownerSub.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    private double requestsPerSecond() {
+        return properties.getRequestsPerMinute() / 60.0;
+    }
+
+    private double tokensPerSecond() {
+        return properties.getTokensPerHour() / 3600.0;
+    }
+
+    private static Duration seconds(double seconds) {
+        return Duration.ofMillis((long) Math.ceil(seconds * 1000));
+    }
+
+    private RetryLaterException reject(String ownerSub, String reason, Duration retryAfter) {
+        meterRegistry.counter("roster.quota.rejected", "reason", reason).increment();
+        log.warn("Roster quota exceeded owner_sub={} reason={} retry_after_ms={}", ownerSub, reason, retryAfter.toMillis());
+        return new RetryLaterException(HttpStatus.TOO_MANY_REQUESTS, "Roster quota exceeded, retry later", retryAfter);
+    }
+
+    /**
+     * Bucket levels of one user; guarded by the user's stripe lock.
+     */
+    private final class Bucket {
+
+        private double requests = properties.getRequestBurst();
+        private double tokens = properties.getTokenBurst();
+        private double pendingRequests;
+        private double pendingTokens;
+        private long refilledAt = System.nanoTime();
+        private long lastUsed = refilledAt;
+
+        private void refill(long now) {
+            double elapsedSeconds = (now - refilledAt) / 1_000_000_000.0;
+            requests = Math.min(properties.getRequestBurst(), requests + elapsedSeconds * requestsPerSecond());
+            tokens = Math.min(properties.getTokenBurst(), tokens + elapsedSeconds * tokensPerSecond());
+            refilledAt = now;
+        }
+    }
+
+    private final class ChargingListener implements RosterProgressListener {
+
+        private final String ownerSub;
+        private final RosterProgressListener delegate;
+
+        private ChargingListener(String ownerSub, RosterProgressListener delegate) {
+            this.ownerSub = ownerSub;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return delegate.isStreaming();
+        }
+
+        @Override
+        public void onStage(String stage) {
+            delegate.onStage(stage);
+        }
+
+        @Override
+        public void onOcrDelta(String text) {
+            delegate.onOcrDelta(text);
+        }
+
+        @Override
+        public void onEvent(Map<String, Object> event) {
+            delegate.onEvent(event);
+        }
+
+        @Override
+        public void onUsage(CallUsage usage) {
+            charge(ownerSub, usage);
+            delegate.onUsage(usage);
+        }
+    }
+}
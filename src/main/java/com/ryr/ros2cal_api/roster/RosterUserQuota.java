@@ -0,0 +1,40 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Shared token-bucket levels of one user as of {@code updatedAt}; instances refill them from that
+ * time when they merge their local consumption.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "roster_user_quota")
+public class RosterUserQuota {
+
+    @Id
+    @Column(name = "owner_sub", nullable = false, updatable = false, length = 255)
+    private String ownerSub;
+
+    @Column(name = "requests", nullable = false)
+    private double requests;
+
+    @Column(name = "tokens", nullable = false)
+    private double tokens;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
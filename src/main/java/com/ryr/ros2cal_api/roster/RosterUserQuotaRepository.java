@@ -0,0 +1,49 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RosterUserQuotaRepository extends JpaRepository<RosterUserQuota, String> {
+
+    /**
+     * Refills the stored buckets up to now, subtracts the consumption of one instance and returns the
+     * resulting levels. Levels may go negative when usage was charged after the call started.
+     * Times come from the database clock.
+     */
+    @Transactional
+    @Query(value = """
+            insert into roster_user_quota (owner_sub, requests, tokens, updated_at)
+            values (:ownerSub, :requestCapacity - :requestsUsed, :tokenCapacity - :tokensUsed, now())
+            on conflict (owner_sub) do update
+              set requests = least(:requestCapacity, roster_user_quota.requests
+                      + extract(epoch from now() - roster_user_quota.updated_at) * :requestsPerSecond) - :requestsUsed,
+                  tokens = least(:tokenCapacity, roster_user_quota.tokens
+                      + extract(epoch from now() - roster_user_quota.updated_at) * :tokensPerSecond) - :tokensUsed,
+                  updated_at = now()
+            returning requests, tokens
+            """, nativeQuery = true)
+    List<Levels> consume(
+            @Param("ownerSub") String ownerSub,
+            @Param("requestsUsed") double requestsUsed,
+            @Param("tokensUsed") double tokensUsed,
+            @Param("requestCapacity") double requestCapacity,
+            @Param("tokenCapacity") double tokenCapacity,
+            @Param("requestsPerSecond") double requestsPerSecond,
+            @Param("tokensPerSecond") double tokensPerSecond);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from roster_user_quota where updated_at < now() - interval '1 day'", nativeQuery = true)
+    int deleteIdle();
+
+    interface Levels {
+        double getRequests();
+
+        double getTokens();
+    }
+}
@@ -0,0 +1,71 @@
+package com.ryr.ros2cal_api.roster;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with the same key into one execution. The first caller runs the
+ * supplier; callers arriving while it is running wait for and share its result or failure.
+ *
+ * <p>A caller that looked up a published result just before another execution published it and left
+ * would start a second execution; {@link #execute(String, Supplier, Supplier)} closes that gap by
+ * looking again once it owns the key.
+ */
+public final class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> calls = new ConcurrentHashMap<>();
+
+    public T execute(String key, Supplier<T> supplier) {
+        return execute(key, () -> null, supplier);
+    }
+
+    /**
+     * Same as {@link #execute(String, Supplier)}, but the caller that owns the key first returns
+     * {@code published} if it is non-null. Executions must publish their result before returning, so
+     * one that has finished and removed its key is always seen here.
+     */
+    public T execute(String key, Supplier<T> published, Supplier<T> supplier) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = calls.putIfAbsent(key, created);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            T value = published.get();
+            if (value == null) {
+                value = supplier.get();
+            }
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    public boolean isInFlight(String key) {
+        return calls.containsKey(key);
+    }
+
+    public int inFlightCount() {
+        return calls.size();
+    }
+
+    private T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+create table if not exists roster_result (
+  image_sha256 varchar(64) primary key,
+  result_json text not null,
+  pipeline_fingerprint varchar(64),
+  created_at timestamptz not null default now(),
+  expires_at timestamptz not null
+);
+
+create index if not exists roster_result_expires_at_idx on roster_result (expires_at);
@@ -0,0 +1,2 @@
+alter table roster_result add column if not exists perceptual_hash varchar(64);
+alter table roster_result add column if not exists thumbnail text;
@@ -0,0 +1,6 @@
+create table if not exists roster_conversion_lease (
+  image_sha256 varchar(64) primary key,
+  owner varchar(64) not null,
+  lease_until timestamptz not null,
+  created_at timestamptz not null default now()
+);
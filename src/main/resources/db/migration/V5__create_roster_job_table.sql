@@ -0,0 +1,17 @@
+create table if not exists roster_job (
+  id uuid primary key,
+  owner_sub varchar(255) not null,
+  status varchar(16) not null,
+  image bytea,
+  image_sha256 varchar(64) not null,
+  result_json text,
+  error_status integer,
+  error_message varchar(512),
+  attempts integer not null default 0,
+  locked_until timestamptz,
+  run_after timestamptz,
+  created_at timestamptz not null default now(),
+  updated_at timestamptz not null default now()
+);
+
+create index if not exists roster_job_queue_idx on roster_job (status, created_at);
@@ -0,0 +1,6 @@
+create table if not exists roster_user_quota (
+  owner_sub varchar(255) primary key,
+  requests double precision not null,
+  tokens double precision not null,
+  updated_at timestamptz not null default now()
+);
@@ -0,0 +1,2 @@
+alter table roster_result add column if not exists content_sha256 varchar(64);
+alter table roster_result add column if not exists owner_sub varchar(255);
@@ -0,0 +1,64 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.ryr.ros2cal_api.roster.OpenAiAdmissionController;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.OpenAiTokenEstimator;
+import com.ryr.ros2cal_api.roster.RetryLaterException;
+
+class OpenAiAdmissionControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fullQueueIsShedWithRetryAfter() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getAdmission().setMaxConcurrentPerModel(1);
+        properties.getAdmission().setMaxQueuedPerModel(0);
+        OpenAiAdmissionController admission = new OpenAiAdmissionController(properties, meterRegistry);
+
+        try (OpenAiAdmissionController.Permit permit = admission.acquire("gpt", 100)) {
+            RetryLaterException ex = assertThrows(RetryLaterException.class, () -> admission.acquire("gpt", 100));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+            assertTrue(ex.getRetryAfter().toMillis() >= 1000);
+        }
+        admission.acquire("gpt", 100).close();
+        assertEquals(1.0, meterRegistry.counter(
+                "roster.openai.admission.shed", "model", "gpt", "reason", "queue_full").count());
+    }
+
+    @Test
+    void exhaustedTokenBudgetShedsCallsThatWouldWaitTooLong() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getAdmission().setMaxQueueWait(Duration.ofSeconds(5));
+        OpenAiAdmissionController admission = new OpenAiAdmissionController(properties, meterRegistry);
+        Map<String, String> headers = Map.of(
+                "x-ratelimit-remaining-tokens", "500",
+                "x-ratelimit-reset-tokens", "1m30s");
+
+        try (OpenAiAdmissionController.Permit permit = admission.acquire("gpt", 100)) {
+            permit.update(OpenAiAdmissionController.RateLimits.fromHeaders(name -> Optional.ofNullable(headers.get(name))));
+        }
+
+        admission.acquire("gpt", 400).close();
+        RetryLaterException ex = assertThrows(RetryLaterException.class, () -> admission.acquire("gpt", 400));
+        assertTrue(ex.getRetryAfter().toSeconds() > 80);
+    }
+
+    @Test
+    void imageTokensFollowTileGrid() {
+        assertEquals(85 + 170 * 4, OpenAiTokenEstimator.imageTokens(1024, 1024));
+        assertEquals(85 + 170 * 8, OpenAiTokenEstimator.imageTokens(1080, 2400));
+    }
+}
@@ -0,0 +1,124 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.OpenAiCallHedger;
+import com.ryr.ros2cal_api.roster.OpenAiCircuitBreaker;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.OpenAiRosterClient;
+
+class OpenAiCallHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void slowCallIsHedgedAndFasterCopyWins() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getHedging().setInitialDelay(Duration.ofMillis(50));
+        OpenAiCallHedger hedger = new OpenAiCallHedger(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        OpenAiRosterClient.OpenAiResult result = hedger.call("ocr", claim -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(5000);
+                return result("slow");
+            }
+            return result("fast");
+        });
+
+        assertEquals("fast", result.outputText());
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("roster.openai.hedges", "operation", "ocr").count());
+        assertEquals(1.0, meterRegistry.counter(
+                "roster.openai.hedge.winner", "operation", "ocr", "winner", "hedge").count());
+    }
+
+    @Test
+    void cancelledLoserIsNotRecordedAsAFailure() throws InterruptedException {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getHedging().setInitialDelay(Duration.ofMillis(50));
+        properties.getCircuitBreaker().setWindowSize(1);
+        properties.getCircuitBreaker().setMinimumCalls(1);
+        OpenAiCallHedger hedger = new OpenAiCallHedger(properties, meterRegistry);
+        OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch loserDone = new CountDownLatch(1);
+
+        OpenAiRosterClient.OpenAiResult result = hedger.call("ocr", claim -> breaker.execute("gpt", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    sleep(5000);
+                    return result("slow");
+                } finally {
+                    loserDone.countDown();
+                }
+            }
+            return result("fast");
+        }));
+
+        assertEquals("fast", result.outputText());
+        assertTrue(loserDone.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        assertEquals(1.0, meterRegistry.counter("roster.openai.hedge.cancelled", "operation", "ocr").count());
+        assertEquals("ok", breaker.execute("gpt", () -> "ok"));
+    }
+
+    @Test
+    void transientFailureIsRetried() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getHedging().setEnabled(false);
+        properties.getRetry().setBaseDelay(Duration.ofMillis(1));
+        OpenAiCallHedger hedger = new OpenAiCallHedger(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        OpenAiRosterClient.OpenAiResult result = hedger.call("parse", claim -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "rate limited");
+            }
+            return result("{\"events\":[]}");
+        });
+
+        assertEquals("{\"events\":[]}", result.outputText());
+        assertEquals(1.0, meterRegistry.counter("roster.openai.retries", "operation", "parse").count());
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getHedging().setEnabled(false);
+        OpenAiCallHedger hedger = new OpenAiCallHedger(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ResponseStatusException.class, () -> hedger.call("parse", claim -> {
+            attempts.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bad request");
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    private static OpenAiRosterClient.OpenAiResult result(String text) {
+        return new OpenAiRosterClient.OpenAiResult(text, new CallUsage());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "cancelled");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.OpenAiCircuitBreaker;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.RetryLaterException;
+
+class OpenAiCircuitBreakerTest {
+
+    @Test
+    void opensAfterRepeatedProviderFailuresAndFailsFast() {
+        OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(properties(Duration.ofMinutes(1)), new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ResponseStatusException.class, () -> breaker.execute("gpt", () -> {
+                calls.incrementAndGet();
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed");
+            }));
+        }
+        RetryLaterException ex = assertThrows(RetryLaterException.class, () -> breaker.execute("gpt", () -> {
+            calls.incrementAndGet();
+            return "never";
+        }));
+
+        assertEquals(4, calls.get());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+        assertEquals("ok", breaker.execute("other-model", () -> "ok"));
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(properties(Duration.ofMinutes(1)), new SimpleMeterRegistry());
+
+        for (int i = 0; i < 6; i++) {
+            assertThrows(ResponseStatusException.class, () -> breaker.execute("gpt", () -> {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid request");
+            }));
+        }
+
+        assertEquals("ok", breaker.execute("gpt", () -> "ok"));
+    }
+
+    @Test
+    void successfulTrialClosesTheCircuit() throws InterruptedException {
+        OpenAiCircuitBreaker breaker = new OpenAiCircuitBreaker(properties(Duration.ofMillis(20)), new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ResponseStatusException.class, () -> breaker.execute("gpt", () -> {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "overloaded");
+            }));
+        }
+        Thread.sleep(40);
+
+        assertEquals("trial", breaker.execute("gpt", () -> "trial"));
+        assertEquals("closed", breaker.execute("gpt", () -> "closed"));
+    }
+
+    private static OpenAiProperties properties(Duration openDuration) {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.getCircuitBreaker().setWindowSize(4);
+        properties.getCircuitBreaker().setMinimumCalls(4);
+        properties.getCircuitBreaker().setOpenDuration(openDuration);
+        return properties;
+    }
+}
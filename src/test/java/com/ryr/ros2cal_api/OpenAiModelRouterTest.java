@@ -0,0 +1,128 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.OpenAiModelRouter;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.RosterImagePreprocessor;
+
+class OpenAiModelRouterTest {
+
+    private static final RosterImagePreprocessor.Complexity SPARSE =
+            new RosterImagePreprocessor.Complexity(1170, 900, 6, 0.02, 30);
+    private static final RosterImagePreprocessor.Complexity DENSE =
+            new RosterImagePreprocessor.Complexity(1170, 2532, 76, 0.09, 30);
+
+    @Test
+    void sparseRostersGoToLightModels() {
+        OpenAiModelRouter router = new OpenAiModelRouter(properties(), new SimpleMeterRegistry());
+
+        OpenAiModelRouter.Route sparse = router.route(SPARSE);
+        OpenAiModelRouter.Route dense = router.route(DENSE);
+
+        assertTrue(sparse.sparse());
+        assertEquals("light-ocr", sparse.ocrModel());
+        assertEquals("light-parse", sparse.parseModel());
+        assertEquals("strong-ocr", dense.ocrModel());
+        assertEquals("strong-parse", dense.parseModel());
+        assertEquals("strong-ocr", router.route(null).ocrModel());
+    }
+
+    @Test
+    void failingModelIsAvoidedWhileTheOtherIsHealthy() {
+        OpenAiModelRouter router = new OpenAiModelRouter(properties(), new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            router.recordFailure("light-ocr", new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed"));
+        }
+
+        OpenAiModelRouter.Route route = router.route(SPARSE);
+
+        assertEquals("strong-ocr", route.ocrModel());
+        assertEquals("light-parse", route.parseModel());
+    }
+
+    @Test
+    void avoidedModelIsTriedAgainOnceItsFailuresAgeOut() throws InterruptedException {
+        OpenAiProperties properties = properties();
+        properties.getRouting().setSampleMaxAge(Duration.ofMillis(50));
+        OpenAiModelRouter router = new OpenAiModelRouter(properties, new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            router.recordFailure("light-ocr", new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed"));
+            router.recordSuccess("strong-parse", "parse", 45_000);
+        }
+        assertEquals("strong-ocr", router.route(SPARSE).ocrModel());
+        assertEquals("light-parse", router.route(DENSE).parseModel());
+
+        Thread.sleep(100);
+
+        assertEquals("light-ocr", router.route(SPARSE).ocrModel());
+        assertEquals("strong-parse", router.route(DENSE).parseModel());
+    }
+
+    @Test
+    void slowModelIsAvoided() {
+        OpenAiModelRouter router = new OpenAiModelRouter(properties(), new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            router.recordSuccess("strong-parse", "parse", 45_000);
+            router.recordSuccess("light-parse", "parse", 4_000);
+        }
+
+        assertEquals("light-parse", router.route(DENSE).parseModel());
+    }
+
+    @Test
+    void fastCropsDoNotHideSlowStreamedOcr() {
+        OpenAiModelRouter router = new OpenAiModelRouter(properties(), new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            router.recordSuccess("strong-ocr", "ocr", 2_000);
+        }
+        assertEquals("strong-ocr", router.route(DENSE).ocrModel());
+
+        for (int i = 0; i < 4; i++) {
+            router.recordSuccess("strong-ocr", "ocr_stream", 45_000);
+        }
+        assertEquals("light-ocr", router.route(DENSE).ocrModel());
+    }
+
+    @Test
+    void clientErrorsDoNotCountAsFailures() {
+        OpenAiModelRouter router = new OpenAiModelRouter(properties(), new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            router.recordFailure("light-ocr", new ResponseStatusException(HttpStatus.BAD_REQUEST, "bad request"));
+        }
+
+        assertEquals("light-ocr", router.route(SPARSE).ocrModel());
+    }
+
+    @Test
+    void disabledRoutingAlwaysUsesConfiguredModels() {
+        OpenAiProperties properties = properties();
+        properties.getRouting().setEnabled(false);
+        OpenAiModelRouter router = new OpenAiModelRouter(properties, new SimpleMeterRegistry());
+
+        OpenAiModelRouter.Route route = router.route(SPARSE);
+
+        assertEquals("strong-ocr", route.ocrModel());
+        assertEquals("strong-parse", route.parseModel());
+    }
+
+    private static OpenAiProperties properties() {
+        OpenAiProperties properties = new OpenAiProperties();
+        properties.setOcrModel("strong-ocr");
+        properties.setParseModel("strong-parse");
+        OpenAiProperties.Routing routing = properties.getRouting();
+        routing.setLightOcrModel("light-ocr");
+        routing.setLightParseModel("light-parse");
+        routing.setMinSamples(4);
+        routing.setMaxP95Latency(Duration.ofSeconds(30));
+        return properties;
+    }
+}
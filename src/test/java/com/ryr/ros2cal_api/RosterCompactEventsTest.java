@@ -0,0 +1,113 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryr.ros2cal_api.roster.RosterCompactEvents;
+
+class RosterCompactEventsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compactFixtureExpandsToGoldenJson() throws Exception {
+        String compact = new String(
+                readResource("fixtures/roster-openai/roster_expected_compact.json"), StandardCharsets.UTF_8);
+        JsonNode expected = objectMapper.readTree(readResource("fixtures/roster-openai/roster_expected.json"));
+
+        JsonNode expanded = objectMapper.readTree(RosterCompactEvents.expand(objectMapper, compact));
+
+        assertEquals(expected, expanded);
+    }
+
+    @Test
+    void timesEarlierThanThePreviousOneMoveToTheNextDay() throws Exception {
+        String compact = """
+                {"events":[{"d":"2025-12-22","s":"2100","e":"0105","t":"FLIGHT","w":false,"l":null,
+                "f":[{"n":"FR1234","o":"NRN","s":"2145","d":"TFS","e":"0035"}],"x":[],"r":"arrival time faint"}]}
+                """;
+
+        JsonNode event = objectMapper.readTree(RosterCompactEvents.expand(objectMapper, compact)).path("events").get(0);
+
+        assertEquals("2025-12-22T21:00:00Z", event.path("start_utc").asText());
+        assertEquals("2025-12-23T00:35:00Z", event.path("flights").get(0).path("arrival_time_utc").asText());
+        assertEquals("2025-12-23T01:05:00Z", event.path("end_utc").asText());
+        assertEquals("arrival time faint", event.path("error").asText());
+    }
+
+    @Test
+    void activitiesListedBeforeFlightsStayOnTheirDay() throws Exception {
+        String compact = """
+                {"events":[{"d":"2025-12-22","s":"0530","e":"1900","t":"FLIGHT","w":false,"l":null,
+                "f":[{"n":"FR1234","o":"NRN","s":"1400","d":"TFS","e":"1830"}],
+                "x":[{"o":"NRN","s":"0600","d":"NRN","e":"0700"}],"r":null}]}
+                """;
+
+        JsonNode event = objectMapper.readTree(RosterCompactEvents.expand(objectMapper, compact)).path("events").get(0);
+
+        assertEquals("2025-12-22T18:30:00Z", event.path("flights").get(0).path("arrival_time_utc").asText());
+        assertEquals("2025-12-22T06:00:00Z", event.path("activities").get(0).path("start_time_utc").asText());
+        assertEquals("2025-12-22T07:00:00Z", event.path("activities").get(0).path("end_time_utc").asText());
+        assertEquals("2025-12-22T19:00:00Z", event.path("end_utc").asText());
+    }
+
+    @Test
+    void flaggedEventIsKeptWithoutItsUnreadableTimes() throws Exception {
+        String compact = """
+                {"events":[{"d":"2025-12-22","s":"0530","e":"","t":"FLIGHT","w":false,"l":null,
+                "f":[{"n":"FR1234","o":"NRN","s":"0615","d":"TFS","e":"??"}],"x":[],"r":"check-out time unreadable"}]}
+                """;
+
+        JsonNode event = objectMapper.readTree(RosterCompactEvents.expand(objectMapper, compact)).path("events").get(0);
+
+        assertEquals("2025-12-22T05:30:00Z", event.path("start_utc").asText());
+        assertFalse(event.has("end_utc"));
+        assertEquals("2025-12-22T06:15:00Z", event.path("flights").get(0).path("departure_time_utc").asText());
+        assertFalse(event.path("flights").get(0).has("arrival_time_utc"));
+        assertEquals("check-out time unreadable", event.path("error").asText());
+    }
+
+    @Test
+    void streamedCompactEventsArePassedOnExpanded() throws Exception {
+        List<String> deltas = new ArrayList<>();
+        Consumer<String> expanding = RosterCompactEvents.expandingDeltas(objectMapper, deltas::add);
+
+        expanding.accept("{\"events\":[{\"d\":\"2025-12-18\",\"s\":\"0430\",\"e\":\"16");
+        expanding.accept("00\",\"t\":\"HSBY\",\"w\":false,\"l\":\"NRN\",\"f\":[],\"x\":[],\"r\":null}]}");
+
+        JsonNode canonical = objectMapper.readTree(String.join("", deltas) + "]}");
+        assertEquals("2025-12-18T16:00:00Z", canonical.path("events").get(0).path("end_utc").asText());
+        assertEquals("NRN", canonical.path("events").get(0).path("location").asText());
+    }
+
+    @Test
+    void rejectsUnreadableTimes() {
+        String compact = """
+                {"events":[{"d":"2025-12-18","s":"4:30","e":"1600","t":"HSBY","w":false,"l":"NRN","f":[],"x":[],"r":null}]}
+                """;
+
+        assertThrows(IllegalArgumentException.class, () -> RosterCompactEvents.expand(objectMapper, compact));
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
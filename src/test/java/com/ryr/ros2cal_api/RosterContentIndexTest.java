@@ -0,0 +1,161 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterContentIndex;
+import com.ryr.ros2cal_api.roster.RosterImagePreprocessor;
+import com.ryr.ros2cal_api.roster.RosterLineLocator;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+class RosterContentIndexTest {
+
+    private final RosterProperties properties = new RosterProperties();
+    private final RosterImagePreprocessor preprocessor = new RosterImagePreprocessor(Runnable::run, properties);
+    private final RosterContentIndex index = new RosterContentIndex(properties, null, new SimpleMeterRegistry());
+
+    @Test
+    void losslessCopyOfTheSameRosterIsAHit() throws IOException {
+        byte[] original = readResource("fixtures/roster-openai/roster_input.jpg");
+        byte[] resaved = png(preprocessor.decode(original));
+        index.add("owner-a", content(original), "original-sha");
+
+        assertEquals(List.of("original-sha"), index.find("owner-a", content(resaved)));
+    }
+
+    @Test
+    void recompressedCopyOfTheSameRosterIsAHit() throws IOException {
+        byte[] original = readResource("fixtures/roster-openai/roster_input.jpg");
+        RosterImagePreprocessor.Content recompressed = content(jpeg(preprocessor.decode(original), 0.5f));
+        RosterImagePreprocessor.Content content = content(original);
+        index.add("owner-a", content, "original-sha");
+
+        assertTrue(content.perceptualHash().distance(recompressed.perceptualHash()) > 0);
+        assertEquals(List.of("original-sha"), index.find("owner-a", recompressed));
+    }
+
+    @Test
+    void oneEditedDutyRowIsNotAHit() throws IOException {
+        byte[] original = readResource("fixtures/roster-openai/roster_input.jpg");
+        BufferedImage edited = preprocessor.decode(original);
+        List<RosterLineLocator.Band> bands = RosterLineLocator.textBands(edited);
+        RosterLineLocator.Band dutyRow = bands.get(bands.size() / 2);
+        int inkX = firstInk(edited, dutyRow);
+        Graphics2D graphics = edited.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(inkX, dutyRow.top(), 12, dutyRow.height());
+        graphics.dispose();
+        RosterImagePreprocessor.Content content = content(original);
+        RosterImagePreprocessor.Content editedContent = content(png(edited));
+        index.add("owner-a", content, "original-sha");
+
+        assertTrue(content.perceptualHash().distance(editedContent.perceptualHash()) <= properties.getContentMatch().getMaxDistance());
+        assertEquals(List.of(), index.find("owner-a", editedContent));
+    }
+
+    @Test
+    void oneChangedDigitIsNotAHit() throws IOException {
+        byte[] original = readResource("fixtures/roster-openai/roster_input.jpg");
+        BufferedImage edited = preprocessor.decode(original);
+        List<RosterLineLocator.Band> bands = RosterLineLocator.textBands(edited);
+        RosterLineLocator.Band dutyRow = bands.get(3);
+        int x = firstInk(edited, dutyRow) + 40;
+        Graphics2D graphics = edited.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(x, dutyRow.top(), 10, dutyRow.height());
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, dutyRow.height()));
+        graphics.drawString("7", x, dutyRow.bottom() - 1);
+        graphics.dispose();
+        index.add("owner-a", content(original), "original-sha");
+
+        assertEquals(List.of(), index.find("owner-a", content(png(edited))));
+    }
+
+    @Test
+    void anotherOwnersRosterIsNotAHit() throws IOException {
+        RosterImagePreprocessor.Content content = content(readResource("fixtures/roster-openai/roster_input.jpg"));
+        index.add("owner-a", content, "original-sha");
+
+        assertEquals(List.of(), index.find("owner-b", content));
+        assertEquals(List.of(), index.find(null, content));
+    }
+
+    @Test
+    void removedEntryIsNotAHit() throws IOException {
+        byte[] original = readResource("fixtures/roster-openai/roster_input.jpg");
+        index.add("owner-a", content(original), "original-sha");
+        index.remove("owner-a", "original-sha");
+
+        assertEquals(List.of(), index.find("owner-a", content(jpeg(preprocessor.decode(original), 0.5f))));
+        assertEquals(0, index.size());
+    }
+
+    private RosterImagePreprocessor.Content content(byte[] image) throws IOException {
+        return preprocessor.prepare(image, content -> true).content();
+    }
+
+    private static int firstInk(BufferedImage image, RosterLineLocator.Band band) {
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = band.top(); y < band.bottom(); y++) {
+                if ((image.getRGB(x, y) & 0xFF) < 128) {
+                    return x;
+                }
+            }
+        }
+        throw new IllegalStateException("duty row without ink");
+    }
+
+    private static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
@@ -3,11 +3,15 @@ package com.ryr.ros2cal_api;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -22,14 +26,22 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.mock.web.MockMultipartFile;
 
 import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.RetryLaterException;
 import com.ryr.ros2cal_api.roster.RosterConversionService;
 import com.ryr.ros2cal_api.roster.RosterIcsExporter;
 import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProgressListener;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(properties = {
@@ -84,7 +96,7 @@ class RosterControllerTest {
                 "test.png",
                 "image/png",
                 createPngBytes());
-        when(rosterConversionService.parseRoster(any())).thenReturn(
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenReturn(
                 new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage()));
         mockMvc.perform(multipart("/api/roster/convert")
                         .file(image)
@@ -93,6 +105,127 @@ class RosterControllerTest {
                 .andExpect(content().contentType("application/json"));
     }
 
+    @Test
+    void convertRosterReplaysResponseForSameIdempotencyKey() throws Exception {
+        MockMultipartFile image = new MockMultipartFile(
+                "image",
+                "test.png",
+                "image/png",
+                createPngBytes());
+        clearInvocations(rosterConversionService);
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenReturn(
+                new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage()));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(multipart("/api/roster/convert")
+                            .file(image)
+                            .header("Idempotency-Key", "retry-42")
+                            .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                    .andExpect(status().isOk());
+        }
+        verify(rosterConversionService, times(1)).parseRoster(any(), any(), any(RosterProgressListener.class));
+    }
+
+    @Test
+    void convertRosterRejectsIdempotencyKeyReusedForDifferentImage() throws Exception {
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenReturn(
+                new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage()));
+        mockMvc.perform(multipart("/api/roster/convert")
+                        .file(new MockMultipartFile("image", "a.png", "image/png", createPngBytes()))
+                        .header("Idempotency-Key", "reused-key")
+                        .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(multipart("/api/roster/convert")
+                        .file(new MockMultipartFile("image", "b.png", "image/png", createPngBytes(2)))
+                        .header("Idempotency-Key", "reused-key")
+                        .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void convertRosterBatchMergesEventsAcrossImages() throws Exception {
+        byte[] firstPage = createPngBytes(4);
+        byte[] secondPage = createPngBytes(5);
+        Map<String, Object> dec18 = Map.of(
+                "duty_type", "HSBY", "start_utc", "2025-12-18T04:30:00Z", "end_utc", "2025-12-18T16:00:00Z");
+        Map<String, Object> dec17 = Map.of(
+                "duty_type", "FLIGHT", "start_utc", "2025-12-17T07:30:00Z", "end_utc", "2025-12-17T16:30:00Z");
+        Map<String, Object> dec19 = Map.of(
+                "duty_type", "HSBY", "start_utc", "2025-12-19T04:00:00Z", "end_utc", "2025-12-19T16:00:00Z");
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenAnswer(invocation -> {
+            byte[] bytes = invocation.getArgument(1);
+            List<Map<String, Object>> events = Arrays.equals(bytes, firstPage)
+                    ? List.of(dec17, dec18)
+                    : List.of(dec18, dec19);
+            return new RosterParseResult(Map.of("events", events), new CallUsage(), new CallUsage());
+        });
+
+        mockMvc.perform(multipart("/api/roster/convert/batch")
+                        .file(new MockMultipartFile("image", "page1.png", "image/png", firstPage))
+                        .file(new MockMultipartFile("image", "page2.png", "image/png", secondPage))
+                        .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events.length()").value(3))
+                .andExpect(jsonPath("$.events[0].start_utc").value("2025-12-17T07:30:00Z"))
+                .andExpect(jsonPath("$.events[2].start_utc").value("2025-12-19T04:00:00Z"));
+    }
+
+    @Test
+    void convertRosterBatchKeepsRetryAfterOfARejectedPage() throws Exception {
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenThrow(
+                new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE, "OpenAI capacity exhausted", Duration.ofSeconds(7)));
+
+        mockMvc.perform(multipart("/api/roster/convert/batch")
+                        .file(new MockMultipartFile("image", "page1.png", "image/png", createPngBytes(4)))
+                        .file(new MockMultipartFile("image", "page2.png", "image/png", createPngBytes(5)))
+                        .with(jwt().jwt(jwt -> jwt.subject("user-retry-after"))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    @Test
+    void convertRosterStreamSendsEventsAsTheyAreParsed() throws Exception {
+        MockMultipartFile image = new MockMultipartFile(
+                "image",
+                "stream.png",
+                "image/png",
+                createPngBytes(3));
+        Map<String, Object> event = Map.of("duty_type", "OFF", "start_utc", "2025-12-13T00:00:00Z");
+        when(rosterConversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenAnswer(invocation -> {
+            RosterProgressListener listener = invocation.getArgument(2);
+            listener.onStage("ocr");
+            listener.onOcrDelta("13 Dec 25, Sat OFF");
+            listener.onEvent(event);
+            return new RosterParseResult(Map.of("events", List.of(event)), new CallUsage(), new CallUsage());
+        });
+
+        MvcResult result = mockMvc.perform(multipart("/api/roster/convert/stream")
+                        .file(image)
+                        .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        String body = result.getResponse().getContentAsString();
+        assertThat(body).contains("event:stage", "event:ocr_delta", "event:event", "\"duty_type\":\"OFF\"");
+        assertThat(body).contains("event:done", "\"events_count\":1");
+    }
+
+    @Test
+    void submitJobReturnsAcceptedWithJobLocation() throws Exception {
+        MockMultipartFile image = new MockMultipartFile(
+                "image",
+                "test.png",
+                "image/png",
+                createPngBytes());
+        mockMvc.perform(multipart("/api/roster/jobs")
+                        .file(image)
+                        .with(jwt().jwt(jwt -> jwt.subject("user-123"))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.job_id").exists())
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
     @Test
     void convertRosterRejectsUnsupportedImageType() throws Exception {
         MockMultipartFile image = new MockMultipartFile(
@@ -134,7 +267,11 @@ class RosterControllerTest {
     }
 
     private byte[] createPngBytes() throws IOException {
-        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        return createPngBytes(1);
+    }
+
+    private byte[] createPngBytes(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         if (!ImageIO.write(image, "png", out)) {
             throw new IOException("unable to write png");
@@ -0,0 +1,104 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.RosterConversionLeaseRepository;
+import com.ryr.ros2cal_api.roster.RosterConversionLeases;
+import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterResultCache;
+
+class RosterConversionLeasesTest {
+
+    private static final String IMAGE_SHA256 = "roster-sha";
+
+    private final RosterConversionLeaseRepository repository = Mockito.mock(RosterConversionLeaseRepository.class);
+    private final RosterResultCache resultCache = Mockito.mock(RosterResultCache.class);
+    private final RosterProperties properties = new RosterProperties();
+    private final AtomicInteger conversions = new AtomicInteger();
+    private final RosterParseResult converted = result();
+    private RosterConversionLeases leases;
+
+    @BeforeEach
+    void setUp() {
+        properties.getLease().setPollInterval(Duration.ofMillis(5));
+        leases = new RosterConversionLeases(repository, resultCache, properties);
+    }
+
+    @Test
+    void waitingCallerGetsTheLeadersPublishedResult() {
+        RosterParseResult published = result();
+        when(repository.tryClaim(eq(IMAGE_SHA256), anyString(), anyString())).thenReturn(List.of());
+        when(resultCache.getPublished(IMAGE_SHA256)).thenReturn(null, null, published);
+
+        RosterParseResult result = leases.execute(IMAGE_SHA256, this::convert);
+
+        assertSame(published, result);
+        assertEquals(0, conversions.get());
+        verify(repository, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() {
+        when(repository.tryClaim(eq(IMAGE_SHA256), anyString(), anyString()))
+                .thenReturn(List.of(), List.of(), List.of("this-instance"));
+
+        RosterParseResult result = leases.execute(IMAGE_SHA256, this::convert);
+
+        assertSame(converted, result);
+        assertEquals(1, conversions.get());
+        verify(repository).release(eq(IMAGE_SHA256), anyString());
+    }
+
+    @Test
+    void leaseIsReleasedWhenTheConversionFails() {
+        when(repository.tryClaim(eq(IMAGE_SHA256), anyString(), anyString())).thenReturn(List.of("this-instance"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> leases.execute(IMAGE_SHA256, () -> {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "OpenAI request failed");
+        }));
+
+        assertEquals(HttpStatus.BAD_GATEWAY, ex.getStatusCode());
+        verify(repository).release(eq(IMAGE_SHA256), anyString());
+    }
+
+    @Test
+    void waitGivesUpAfterMaxWait() {
+        properties.getLease().setMaxWait(Duration.ofMillis(20));
+        when(repository.tryClaim(eq(IMAGE_SHA256), anyString(), anyString())).thenReturn(List.of());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> leases.execute(IMAGE_SHA256, this::convert));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+        assertEquals(0, conversions.get());
+    }
+
+    private RosterParseResult convert() {
+        conversions.incrementAndGet();
+        return converted;
+    }
+
+    private static RosterParseResult result() {
+        return new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage());
+    }
+}
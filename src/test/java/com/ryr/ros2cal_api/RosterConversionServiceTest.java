@@ -0,0 +1,278 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.OpenAiRosterClient;
+import com.ryr.ros2cal_api.roster.RosterConversionService;
+import com.ryr.ros2cal_api.roster.RosterImagePreprocessor;
+import com.ryr.ros2cal_api.roster.RosterImageSizer;
+import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProgressListener;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+@SpringBootTest
+@Import(RosterConversionServiceTest.MockConfig.class)
+class RosterConversionServiceTest {
+
+    private static final String PARSED_JSON = """
+            {"events":[{"start_utc":"2025-12-18T04:30:00Z","end_utc":"2025-12-18T16:00:00Z","duty_type":"HSBY","location":"NRN"}]}
+            """;
+
+    @TestConfiguration
+    static class MockConfig {
+        @Bean
+        @Primary
+        OpenAiRosterClient openAiRosterClient() {
+            return Mockito.mock(OpenAiRosterClient.class);
+        }
+
+        @Bean
+        @Primary
+        RosterImagePreprocessor rosterImagePreprocessor() {
+            return Mockito.mock(RosterImagePreprocessor.class);
+        }
+    }
+
+    @Autowired
+    private RosterConversionService rosterConversionService;
+
+    @Autowired
+    private OpenAiRosterClient openAiRosterClient;
+
+    @Autowired
+    private RosterImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private RosterProperties rosterProperties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        reset(openAiRosterClient, imagePreprocessor);
+        stubPrepare(null);
+        stubOcr("18 Dec 25, Thu HSBY NRN 04:30 Z 16:00 Z");
+        when(openAiRosterClient.parseRosterText(anyString(), anyString())).thenReturn(
+                new OpenAiRosterClient.OpenAiResult(PARSED_JSON, new CallUsage()));
+    }
+
+    @Test
+    void repeatedUploadIsServedFromResultCache() throws Exception {
+        byte[] image = "same-roster-screenshot".getBytes();
+
+        RosterParseResult first = rosterConversionService.parseRoster(image);
+        RosterParseResult second = rosterConversionService.parseRoster(image);
+
+        assertEquals(first.getData(), second.getData());
+        assertEquals(1, ((List<?>) second.getData().get("events")).size());
+        assertEquals(0, second.getOcrUsage().getEffectiveTotal());
+        verify(imagePreprocessor, times(1)).prepare(any(), any());
+        verify(openAiRosterClient, times(1)).ocrImageStreaming(any(), any(), any(), any());
+        verify(openAiRosterClient, times(1)).parseRosterText(anyString(), anyString());
+    }
+
+    @Test
+    void differentImagesWithSameOcrTextReuseParseResult() throws Exception {
+        stubOcr("19 Dec 25, Fri  HSBY NRN\r\n04:00 Z 16:00 Z\n", "19 Dec 25, Fri HSBY NRN\n\n  04:00 Z   16:00 Z");
+
+        rosterConversionService.parseRoster("screenshot-a".getBytes());
+        RosterParseResult second = rosterConversionService.parseRoster("screenshot-b".getBytes());
+
+        assertEquals(1, ((List<?>) second.getData().get("events")).size());
+        assertEquals(0, second.getParseUsage().getEffectiveTotal());
+        verify(openAiRosterClient, times(2)).ocrImageStreaming(any(), any(), any(), any());
+        verify(openAiRosterClient, times(1)).parseRosterText(anyString(), anyString());
+    }
+
+    @Test
+    void sameOwnerCopyWithIdenticalPixelsReusesEarlierConversion() throws Exception {
+        stubPrepare(randomSha256());
+
+        rosterConversionService.parseRoster("owner-a", "original-png".getBytes(), RosterProgressListener.NONE);
+        RosterParseResult resaved = rosterConversionService.parseRoster(
+                "owner-a", "metadata-stripped-png".getBytes(), RosterProgressListener.NONE);
+
+        assertEquals(1, ((List<?>) resaved.getData().get("events")).size());
+        verify(openAiRosterClient, times(1)).ocrImageStreaming(any(), any(), any(), any());
+        verify(openAiRosterClient, times(1)).parseRosterText(anyString(), anyString());
+    }
+
+    @Test
+    void identicalPixelsFromAnotherOwnerAreConvertedAgain() throws Exception {
+        stubPrepare(randomSha256());
+
+        rosterConversionService.parseRoster("owner-a", "owner-a-png".getBytes(), RosterProgressListener.NONE);
+        rosterConversionService.parseRoster("owner-b", "owner-b-png".getBytes(), RosterProgressListener.NONE);
+
+        verify(openAiRosterClient, times(2)).ocrImageStreaming(any(), any(), any(), any());
+    }
+
+    @Test
+    void dayChunksAreParsedSeparatelyAndMergedInRosterOrder() {
+        StringBuilder ocrText = new StringBuilder("PUBLISHED ROSTER\nDate Duty Dep Begin End Arr\n");
+        for (int day = 12; day <= 20; day++) {
+            ocrText.append(day).append(" Dec 25, Xyz\nHSBY NRN 04:00 Z 16:00 Z\n");
+        }
+        stubOcr(ocrText.toString().replace("Xyz", "Mon"));
+        when(openAiRosterClient.parseRosterText(anyString(), anyString())).thenAnswer(invocation -> {
+            String chunk = invocation.getArgument(0);
+            String json = chunk.contains("12 Dec 25")
+                    ? "{\"events\":[" + hsby(12) + "," + hsby(18) + "]}"
+                    : "{\"events\":[" + hsby(18) + "," + hsby(20) + "]}";
+            return new OpenAiRosterClient.OpenAiResult(json, new CallUsage());
+        });
+
+        RosterParseResult result = rosterConversionService.parseRoster("nine-day-roster".getBytes());
+
+        List<?> events = (List<?>) result.getData().get("events");
+        assertEquals(3, events.size());
+        assertEquals("2025-12-12T04:00:00Z", ((Map<?, ?>) events.get(0)).get("start_utc"));
+        assertEquals("2025-12-18T04:00:00Z", ((Map<?, ?>) events.get(1)).get("start_utc"));
+        assertEquals("2025-12-20T04:00:00Z", ((Map<?, ?>) events.get(2)).get("start_utc"));
+        verify(openAiRosterClient, times(2)).parseRosterText(anyString(), anyString());
+    }
+
+    @Test
+    void singleCallModeParsesTheImageWithoutOcr() {
+        when(openAiRosterClient.parseRosterImage(any(), any())).thenReturn(
+                new OpenAiRosterClient.OpenAiResult(PARSED_JSON, new CallUsage()));
+        rosterProperties.getSingleCall().setEnabled(true);
+        try {
+            RosterParseResult result = rosterConversionService.parseRoster("single-call-roster".getBytes());
+
+            assertEquals(1, ((List<?>) result.getData().get("events")).size());
+            assertEquals(0, result.getOcrUsage().getEffectiveTotal());
+            verify(openAiRosterClient, times(1)).parseRosterImage(any(), any());
+            verify(openAiRosterClient, never()).ocrImageStreaming(any(), any(), any(), any());
+            verify(openAiRosterClient, never()).parseRosterText(anyString(), anyString());
+        } finally {
+            rosterProperties.getSingleCall().setEnabled(false);
+        }
+    }
+
+    @Test
+    void failingDayIsParsedAgainOnItsOwn() {
+        stubOcr("17 Dec 25, Wed HSBY NRN 04:00 Z 16:00 Z\n18 Dec 25, Thu HSBY NRN 04:00 Z 16:00 Z\n");
+        when(openAiRosterClient.parseRosterText(anyString(), anyString())).thenAnswer(invocation -> {
+            String text = invocation.getArgument(0);
+            String json = text.contains("17 Dec 25")
+                    ? "{\"events\":[" + hsby(17) + "," + hsby(18).replace("04:00", "19:00") + "]}"
+                    : "{\"events\":[" + hsby(18) + "]}";
+            return new OpenAiRosterClient.OpenAiResult(json, new CallUsage());
+        });
+        rosterProperties.getValidation().setEnabled(true);
+        try {
+            RosterParseResult result = rosterConversionService.parseRoster("invalid-day-roster".getBytes());
+
+            List<?> events = (List<?>) result.getData().get("events");
+            assertEquals(2, events.size());
+            assertEquals("2025-12-18T04:00:00Z", ((Map<?, ?>) events.get(1)).get("start_utc"));
+            verify(openAiRosterClient, times(2)).parseRosterText(anyString(), anyString());
+            verify(openAiRosterClient, times(1)).parseRosterText(eq("18 Dec 25, Thu HSBY NRN 04:00 Z 16:00 Z\n"), anyString());
+        } finally {
+            rosterProperties.getValidation().setEnabled(false);
+        }
+    }
+
+    @Test
+    void ocrTheLocalParserReadsSkipsTheParseModel() {
+        stubOcr("21 Dec 25, Sun HSBY NRN 04:30 Z 16:00 Z\n");
+        rosterProperties.getLocalParse().setEnabled(true);
+        rosterProperties.getValidation().setEnabled(true);
+        try {
+            RosterParseResult result = rosterConversionService.parseRoster("locally-parsed-roster".getBytes());
+
+            List<?> events = (List<?>) result.getData().get("events");
+            assertEquals(1, events.size());
+            assertEquals("2025-12-21T04:30:00Z", ((Map<?, ?>) events.get(0)).get("start_utc"));
+            assertEquals(0, result.getParseUsage().getEffectiveTotal());
+            verify(openAiRosterClient, never()).parseRosterText(anyString(), anyString());
+        } finally {
+            rosterProperties.getLocalParse().setEnabled(false);
+            rosterProperties.getValidation().setEnabled(false);
+        }
+    }
+
+    @Test
+    void ocrTheLocalParserDeclinesFallsBackToTheParseModel() {
+        stubOcr("18 Dec 25, Thu HSBY NRN 04:?0 Z 16:00 Z\n");
+        rosterProperties.getLocalParse().setEnabled(true);
+        rosterProperties.getValidation().setEnabled(true);
+        try {
+            RosterParseResult result = rosterConversionService.parseRoster("misread-roster".getBytes());
+
+            List<?> events = (List<?>) result.getData().get("events");
+            assertEquals(1, events.size());
+            assertEquals("2025-12-18T04:30:00Z", ((Map<?, ?>) events.get(0)).get("start_utc"));
+            verify(openAiRosterClient, times(1)).parseRosterText(anyString(), anyString());
+        } finally {
+            rosterProperties.getLocalParse().setEnabled(false);
+            rosterProperties.getValidation().setEnabled(false);
+        }
+    }
+
+    private static String hsby(int day) {
+        return "{\"start_utc\":\"2025-12-%dT04:00:00Z\",\"end_utc\":\"2025-12-%dT16:00:00Z\",\"duty_type\":\"HSBY\"}"
+                .formatted(day, day);
+    }
+
+    /**
+     * Makes consecutive OCR calls stream the given texts; the last one repeats.
+     */
+    private void stubOcr(String... texts) {
+        AtomicInteger calls = new AtomicInteger();
+        when(openAiRosterClient.ocrImageStreaming(any(), any(), any(), any())).thenAnswer(invocation -> {
+            String text = texts[Math.min(calls.getAndIncrement(), texts.length - 1)];
+            Consumer<String> onDelta = invocation.getArgument(3);
+            onDelta.accept(text);
+            return new OpenAiRosterClient.OpenAiResult(text, new CallUsage());
+        });
+    }
+
+    /**
+     * Makes every upload decode to {@code contentSha256} (a fresh hash per upload when {@code null}).
+     */
+    private void stubPrepare(String contentSha256) throws Exception {
+        when(imagePreprocessor.prepare(any(), any())).thenAnswer(invocation -> {
+            String sha256 = contentSha256 != null ? contentSha256 : randomSha256();
+            RosterImagePreprocessor.Content content = new RosterImagePreprocessor.Content(sha256, null, null);
+            Predicate<RosterImagePreprocessor.Content> knownContent = invocation.getArgument(1);
+            if (knownContent.test(content)) {
+                return new RosterImagePreprocessor.Prepared(content, null, null);
+            }
+            return new RosterImagePreprocessor.Prepared(content, null,
+                    new RosterImagePreprocessor.PreparedPng(new byte[] { 1, 2, 3 }, RosterImageSizer.Detail.HIGH));
+        });
+    }
+
+    private static String randomSha256() {
+        byte[] bytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+}
@@ -0,0 +1,52 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterDayChunker;
+
+class RosterDayChunkerTest {
+
+    @Test
+    void splitsAtDayHeaders() {
+        String text = """
+                01 Dec 25, Mon
+                OFF
+                02 Dec 25, Tue
+                OFF
+                03 Dec 25, Wed
+                OFF
+                """;
+
+        List<String> chunks = RosterDayChunker.split(text, 2);
+
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.get(0).startsWith("01 Dec 25, Mon"));
+        assertTrue(chunks.get(1).startsWith("03 Dec 25, Wed"));
+        assertEquals(text, String.join("", chunks));
+    }
+
+    @Test
+    void keepsDutyPastMidnightInOneChunk() {
+        String text = """
+                01 Dec 25, Mon
+                CHECK-IN 20:00
+                FR 1234 DUB 21:00 STN 22:15
+                02 Dec 25, Tue
+                FR 1235 STN 00:30 DUB 01:45
+                CHECK-OUT 02:15
+                03 Dec 25, Wed
+                OFF
+                """;
+
+        List<String> chunks = RosterDayChunker.split(text, 1);
+
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.get(0).contains("CHECK-OUT 02:15"));
+        assertTrue(chunks.get(1).startsWith("03 Dec 25, Wed"));
+    }
+}
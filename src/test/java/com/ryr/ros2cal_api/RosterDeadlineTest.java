@@ -0,0 +1,51 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterDeadline;
+
+class RosterDeadlineTest {
+
+    @Test
+    void stageShareLeavesTimeForLaterStages() {
+        RosterDeadline conversion = RosterDeadline.after(Duration.ofSeconds(100));
+        RosterDeadline ocr = conversion.share(0.6);
+
+        assertTrue(ocr.remaining().toSeconds() <= 60);
+        assertTrue(conversion.remaining().toSeconds() >= 99);
+        assertEquals(Duration.ofSeconds(5), ocr.call(() -> RosterDeadline.remainingOr(Duration.ofSeconds(5))));
+        assertNull(RosterDeadline.current());
+    }
+
+    @Test
+    void nestedStageRestoresTheOuterDeadline() {
+        RosterDeadline job = RosterDeadline.after(Duration.ofMinutes(8));
+        RosterDeadline ocr = job.share(0.6);
+
+        RosterDeadline restored = job.call(() -> {
+            ocr.call(RosterDeadline::current);
+            return RosterDeadline.current();
+        });
+
+        assertSame(job, restored);
+        assertNull(RosterDeadline.current());
+    }
+
+    @Test
+    void wrappedWorkRunsAgainstTheCallersDeadline() {
+        RosterDeadline conversion = RosterDeadline.after(Duration.ofSeconds(100));
+
+        Supplier<RosterDeadline> work = conversion.call(() -> RosterDeadline.wrap(RosterDeadline::current));
+
+        assertSame(conversion, CompletableFuture.supplyAsync(work).join());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterEventStreamParser;
+
+class RosterEventStreamParserTest {
+
+    private static final String FIRST = "{\"start_utc\":\"2025-12-18T04:00:00Z\",\"duty_type\":\"HSBY\"}";
+    private static final String SECOND = "{\"start_utc\":\"2025-12-19T05:10:00Z\",\"duty_type\":\"FLIGHT\","
+            + "\"legs\":[{\"from\":\"NRN\",\"to\":\"STN\"}]}";
+
+    @Test
+    void eventsSplitAcrossDeltasAreReturnedWhole() {
+        String output = "{\"events\": [" + FIRST + ", " + SECOND + "]}";
+
+        for (int size = 1; size <= 9; size++) {
+            RosterEventStreamParser parser = new RosterEventStreamParser();
+            List<String> events = new ArrayList<>();
+            for (int start = 0; start < output.length(); start += size) {
+                events.addAll(parser.feed(output.substring(start, Math.min(output.length(), start + size))));
+            }
+
+            assertEquals(List.of(FIRST, SECOND), events, "delta size " + size);
+        }
+    }
+
+    @Test
+    void escapedQuotesAndBracesInsideStringsDoNotEndAnEvent() {
+        String tricky = "{\"duty_type\":\"OTHER\",\"note\":\"crew \\\"A\\\" {ops} ]} [x\\\\\"}";
+        RosterEventStreamParser parser = new RosterEventStreamParser();
+
+        List<String> events = new ArrayList<>(parser.feed("{\"events\":[" + tricky.substring(0, 30)));
+        events.addAll(parser.feed(tricky.substring(30) + "," + FIRST + "]}"));
+
+        assertEquals(List.of(tricky, FIRST), events);
+    }
+
+    @Test
+    void streamEndingWithoutClosingBracketsKeepsCompletedEvents() {
+        RosterEventStreamParser parser = new RosterEventStreamParser();
+
+        List<String> events = new ArrayList<>(parser.feed("{\"events\":[" + FIRST + ","));
+        events.addAll(parser.feed(SECOND.substring(0, 40)));
+
+        assertEquals(List.of(FIRST), events);
+    }
+}
@@ -0,0 +1,127 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryr.ros2cal_api.roster.RosterEventMerger;
+import com.ryr.ros2cal_api.roster.RosterEventValidator;
+
+class RosterEventValidatorTest {
+
+    private static final Set<LocalDate> DAYS = Set.of(LocalDate.of(2025, 12, 17), LocalDate.of(2025, 12, 18));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void fixtureGoldenJsonPasses() throws Exception {
+        String ocrText = new String(readResource("fixtures/roster-openai/roster_ocr.txt"), StandardCharsets.UTF_8);
+        Map<String, Object> expected = objectMapper.readValue(
+                readResource("fixtures/roster-openai/roster_expected.json"), new TypeReference<>() {});
+
+        Set<LocalDate> days = RosterEventValidator.rosterDays(ocrText);
+
+        assertEquals(LocalDate.of(2025, 12, 12), days.iterator().next());
+        assertEquals(List.of(), RosterEventValidator.validate(RosterEventMerger.events(expected), days));
+    }
+
+    @Test
+    void flagsEventEndingBeforeItStarts() throws Exception {
+        List<RosterEventValidator.Problem> problems = validate("""
+                {"start_utc":"2025-12-18T16:00:00Z","end_utc":"2025-12-18T04:30:00Z","duty_type":"HSBY","location":"NRN"}
+                """);
+
+        assertEquals(1, problems.size());
+        assertEquals(LocalDate.of(2025, 12, 18), problems.get(0).day());
+    }
+
+    @Test
+    void flagsSectorsOutOfOrderAndMalformedAirports() throws Exception {
+        List<RosterEventValidator.Problem> problems = validate("""
+                {"start_utc":"2025-12-17T07:30:00Z","end_utc":"2025-12-17T16:30:00Z","duty_type":"FLIGHT","flights":[
+                  {"flight_number":"FR1817","departure_airport":"RBA","departure_time_utc":"2025-12-17T12:40:00Z",
+                   "arrival_airport":"NRN","arrival_time_utc":"2025-12-17T16:00:00Z"},
+                  {"flight_number":"FR1816","departure_airport":"NRN","departure_time_utc":"2025-12-17T08:15:00Z",
+                   "arrival_airport":"R8A","arrival_time_utc":"2025-12-17T11:35:00Z"}]}
+                """);
+
+        assertEquals(List.of("malformed arrival_airport R8A", "flights out of order"),
+                problems.stream().map(RosterEventValidator.Problem::reason).toList());
+        assertTrue(RosterEventValidator.isKnownAirport("RBA"));
+        assertFalse(RosterEventValidator.isKnownAirport("QQQ"));
+    }
+
+    @Test
+    void unlistedAirportIsOnlyAWarning() throws Exception {
+        Map<String, Object> event = objectMapper.readValue("""
+                {"start_utc":"2025-12-17T07:30:00Z","end_utc":"2025-12-17T12:30:00Z","duty_type":"FLIGHT","flights":[
+                  {"flight_number":"FR2214","departure_airport":"NRN","departure_time_utc":"2025-12-17T08:15:00Z",
+                   "arrival_airport":"QQQ","arrival_time_utc":"2025-12-17T11:35:00Z"}]}
+                """, new TypeReference<>() {});
+
+        assertEquals(List.of(), RosterEventValidator.validate(List.of(event), DAYS));
+        assertEquals(List.of("unknown airport QQQ"), RosterEventValidator.warnings(List.of(event), DAYS));
+        for (String code : List.of("BZR", "VOL", "JSI", "KVA", "SMI", "PMF", "LDY", "VXO", "HAU",
+                "TAT", "CDT", "PXO", "FNI", "SFT", "LPP", "TLN", "GNB", "CMF")) {
+            assertTrue(RosterEventValidator.isKnownAirport(code), code);
+        }
+    }
+
+    @Test
+    void gapBetweenRosterDaysIsAWarning() {
+        Set<LocalDate> days = RosterEventValidator.rosterDays("""
+                15 Dec 25, Mon OFF
+                16 Dec 25, Tue OFF
+                19 Dec 25, Fri OFF
+                """);
+
+        assertEquals(List.of("roster days 2025-12-17 to 2025-12-18 missing"), RosterEventValidator.warnings(List.of(), days));
+        assertEquals(List.of(), RosterEventValidator.warnings(List.of(), DAYS));
+    }
+
+    @Test
+    void placesMisreadDateOnItsRosterDay() throws Exception {
+        List<RosterEventValidator.Problem> problems = validate("""
+                {"start_utc":"2024-12-18T04:30:00Z","end_utc":"2024-12-18T16:00:00Z","duty_type":"HSBY","location":"NRN"}
+                """);
+
+        assertEquals(1, problems.size());
+        assertEquals(LocalDate.of(2025, 12, 18), problems.get(0).day());
+    }
+
+    @Test
+    void flagsModelError() throws Exception {
+        List<RosterEventValidator.Problem> problems = validate("""
+                {"start_utc":"2025-12-17T00:00:00Z","end_utc":"2025-12-17T23:59:00Z","duty_type":"UNKNOWN","error":"unreadable duty"}
+                """);
+
+        assertEquals("model error: unreadable duty", problems.get(0).reason());
+    }
+
+    private List<RosterEventValidator.Problem> validate(String eventJson) throws IOException {
+        Map<String, Object> event = objectMapper.readValue(eventJson, new TypeReference<>() {});
+        return RosterEventValidator.validate(List.of(event), DAYS);
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.RetryLaterException;
+import com.ryr.ros2cal_api.roster.RosterImagePreprocessor;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterScreenshotStitcher;
+
+class RosterImagePreprocessorTest {
+
+    private final RosterProperties properties = new RosterProperties();
+
+    @Test
+    void prepareMeasuresAndEncodesUnknownContent() throws IOException {
+        RosterImagePreprocessor preprocessor = new RosterImagePreprocessor(Runnable::run, properties);
+
+        RosterImagePreprocessor.Prepared prepared = preprocessor.prepare(fixture(), content -> false);
+
+        assertEquals(64, prepared.content().sha256().length());
+        assertTrue(prepared.complexity().textRows() > 0);
+        assertNotNull(prepared.png());
+    }
+
+    @Test
+    void prepareSkipsTheOcrInputForKnownContent() throws IOException {
+        RosterImagePreprocessor preprocessor = new RosterImagePreprocessor(Runnable::run, properties);
+
+        RosterImagePreprocessor.Prepared prepared = preprocessor.prepare(fixture(), content -> true);
+
+        assertEquals(64, prepared.content().sha256().length());
+        assertNull(prepared.complexity());
+        assertNull(prepared.png());
+    }
+
+    @Test
+    void stitchRunsAsOneImageTaskAndNamesTheUndecodableScreenshot() throws IOException {
+        AtomicInteger tasks = new AtomicInteger();
+        RosterImagePreprocessor preprocessor = new RosterImagePreprocessor(task -> {
+            tasks.incrementAndGet();
+            task.run();
+        }, properties);
+        RosterScreenshotStitcher stitcher = new RosterScreenshotStitcher(properties);
+        byte[] image = fixture();
+
+        List<byte[]> stitched = preprocessor.stitch(List.of(image), stitcher);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> preprocessor.stitch(List.of(image, new byte[] { 1, 2, 3 }), stitcher));
+
+        assertSame(image, stitched.get(0));
+        assertEquals(2, tasks.get());
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals("image 2: invalid image content", ex.getReason());
+    }
+
+    @Test
+    void fullImageQueueIsReportedAsRetryLater() throws IOException {
+        RosterImagePreprocessor preprocessor = new RosterImagePreprocessor(task -> {
+            throw new RejectedExecutionException("queue full");
+        }, properties);
+        byte[] image = fixture();
+
+        RetryLaterException ex = assertThrows(RetryLaterException.class,
+                () -> preprocessor.prepare(image, content -> false));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+    }
+
+    private byte[] fixture() throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream("fixtures/roster-openai/roster_input.jpg")) {
+            if (input == null) {
+                throw new IOException("Missing test resource: fixtures/roster-openai/roster_input.jpg");
+            }
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterImageReducer;
+import com.ryr.ros2cal_api.roster.RosterLineLocator;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+class RosterImageReducerTest {
+
+    @Test
+    void rgbModeKeepsImage() throws IOException {
+        BufferedImage image = fixture();
+
+        assertSame(image, RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.RGB)));
+    }
+
+    @Test
+    void reducedModesWriteSmallerPngsOfFewerBits() throws IOException {
+        BufferedImage image = fixture();
+        int rgbBytes = png(image).length;
+
+        BufferedImage gray = RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.GRAYSCALE));
+        BufferedImage palette = RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.PALETTE));
+        BufferedImage binary = RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.BINARY));
+
+        assertEquals(8, RosterImageReducer.bitDepth(gray));
+        assertEquals(4, RosterImageReducer.bitDepth(palette));
+        assertEquals(1, RosterImageReducer.bitDepth(binary));
+        assertTrue(png(gray).length < rgbBytes);
+        assertTrue(png(palette).length < png(gray).length);
+        assertTrue(png(binary).length < png(palette).length);
+    }
+
+    @Test
+    void binaryImageKeepsEveryTextRow() throws IOException {
+        BufferedImage image = fixture();
+        long ocrLines = new String(readResource("fixtures/roster-openai/roster_ocr.txt"), StandardCharsets.UTF_8)
+                .lines().filter(line -> !line.isBlank()).count();
+
+        BufferedImage binary = RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.BINARY));
+
+        assertEquals(ocrLines, RosterLineLocator.textBands(binary).size());
+    }
+
+    @Test
+    void grayscalePngReadsBackWithItsLuminance() throws IOException {
+        BufferedImage image = fixture();
+        BufferedImage gray = RosterImageReducer.reduce(image, encoding(RosterProperties.ImageEncoding.Mode.GRAYSCALE));
+
+        BufferedImage decoded = RosterImageReducer.srgbGray(ImageIO.read(new ByteArrayInputStream(png(gray))));
+
+        assertEquals(RosterLineLocator.textBands(image).size(), RosterLineLocator.textBands(decoded).size());
+        assertEquals(gray.getRGB(200, 730), decoded.getRGB(200, 730));
+    }
+
+    private static RosterProperties.ImageEncoding encoding(RosterProperties.ImageEncoding.Mode mode) {
+        RosterProperties.ImageEncoding encoding = new RosterProperties.ImageEncoding();
+        encoding.setMode(mode);
+        return encoding;
+    }
+
+    private BufferedImage fixture() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(readResource("fixtures/roster-openai/roster_input.jpg")));
+        BufferedImage scaled = new BufferedImage(image.getWidth() * 2, image.getHeight() * 2, BufferedImage.TYPE_INT_RGB);
+        scaled.createGraphics().drawImage(image, 0, 0, scaled.getWidth(), scaled.getHeight(), null);
+        return scaled;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.OpenAiTokenEstimator;
+import com.ryr.ros2cal_api.roster.RosterImageSizer;
+import com.ryr.ros2cal_api.roster.RosterLineLocator;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+class RosterImageSizerTest {
+
+    private final RosterProperties.ImageSizing sizing = new RosterProperties.ImageSizing();
+
+    @Test
+    void shrinksBelowGlyphTargetWhenThatSavesTiles() {
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(429, 1093, 8, sizing);
+
+        assertEquals(RosterImageSizer.Detail.HIGH, plan.detail());
+        assertTrue(plan.height() <= 1536, "height " + plan.height());
+        assertTrue(8.0 * plan.height() / 1093 >= 12 * 0.85, "glyph height too small");
+        assertEquals(85 + 170 * 6, plan.imageTokens());
+        assertTrue(plan.imageTokens() < OpenAiTokenEstimator.imageTokens(858, 2186));
+    }
+
+    @Test
+    void downscalesLargeText() {
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(1170, 2532, 40, sizing);
+
+        assertEquals(351, plan.width());
+        assertTrue(plan.imageTokens() < OpenAiTokenEstimator.imageTokens(1170, 2532));
+    }
+
+    @Test
+    void smallImagesGoAtLowDetail() {
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(400, 300, 12, sizing);
+
+        assertEquals(RosterImageSizer.Detail.LOW, plan.detail());
+        assertEquals(400, plan.width());
+        assertEquals(85, plan.imageTokens());
+    }
+
+    @Test
+    void withoutTextTheApiChoosesTheDetail() {
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(429, 1093, 0, sizing);
+
+        assertEquals(RosterImageSizer.Detail.AUTO, plan.detail());
+        assertEquals(858, plan.width());
+    }
+
+    @Test
+    void disabledSizingDoublesNarrowImagesAtHighDetail() {
+        sizing.setEnabled(false);
+
+        RosterImageSizer.Plan plan = RosterImageSizer.plan(429, 1093, 8, sizing);
+
+        assertEquals(RosterImageSizer.Detail.HIGH, plan.detail());
+        assertEquals(2186, plan.height());
+    }
+
+    @Test
+    void glyphHeightIsMedianBandHeight() {
+        List<RosterLineLocator.Band> bands = List.of(
+                new RosterLineLocator.Band(0, 8), new RosterLineLocator.Band(20, 48), new RosterLineLocator.Band(60, 69));
+
+        assertEquals(9, RosterImageSizer.glyphHeight(bands));
+        assertEquals(0, RosterImageSizer.glyphHeight(List.of()));
+    }
+}
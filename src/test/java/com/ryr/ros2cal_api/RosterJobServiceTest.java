@@ -0,0 +1,282 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.RetryLaterException;
+import com.ryr.ros2cal_api.roster.RosterConversionService;
+import com.ryr.ros2cal_api.roster.RosterDeadline;
+import com.ryr.ros2cal_api.roster.RosterJob;
+import com.ryr.ros2cal_api.roster.RosterJobRepository;
+import com.ryr.ros2cal_api.roster.RosterJobService;
+import com.ryr.ros2cal_api.roster.RosterJobStatus;
+import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProgressListener;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+@SpringBootTest
+@Import(RosterJobServiceTest.MockConfig.class)
+class RosterJobServiceTest {
+
+    @TestConfiguration
+    static class MockConfig {
+        @Bean
+        @Primary
+        RosterConversionService rosterConversionService() {
+            return Mockito.mock(RosterConversionService.class);
+        }
+    }
+
+    @Autowired
+    private RosterJobService jobService;
+
+    @Autowired
+    private RosterJobRepository repository;
+
+    @Autowired
+    private RosterConversionService conversionService;
+
+    @Autowired
+    private RosterProperties rosterProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        reset(conversionService);
+        when(conversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenReturn(
+                new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage()));
+    }
+
+    @Test
+    void queuedJobIsClaimedOnceAndSucceeds() {
+        RosterJob job = jobService.submit("alice", new byte[] { 1, 2, 3 });
+
+        assertTrue(jobService.processNext());
+        assertFalse(jobService.processNext());
+
+        RosterJob stored = repository.findById(job.getId()).orElseThrow();
+        assertEquals(RosterJobStatus.SUCCEEDED, stored.getStatus());
+        assertEquals(1, stored.getAttempts());
+        assertEquals("{\"events\":[]}", stored.getResultJson());
+        assertNull(stored.getImage());
+        assertNull(stored.getLockedUntil());
+    }
+
+    @Test
+    void rejectedConversionFailsWithoutRetry() {
+        when(conversionService.parseRoster(any(), any(), any(RosterProgressListener.class)))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid image content"));
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+
+        assertTrue(jobService.processNext());
+        assertFalse(jobService.processNext());
+
+        RosterJob stored = repository.findById(job.getId()).orElseThrow();
+        assertEquals(RosterJobStatus.FAILED, stored.getStatus());
+        assertEquals(400, stored.getErrorStatus());
+        assertEquals("invalid image content", stored.getErrorMessage());
+        assertNull(stored.getImage());
+    }
+
+    @Test
+    void unexpectedErrorIsRetriedUpToMaxAttempts() {
+        int maxAttempts = rosterProperties.getJobs().getMaxAttempts();
+        rosterProperties.getJobs().setMaxAttempts(2);
+        try {
+            when(conversionService.parseRoster(any(), any(), any(RosterProgressListener.class)))
+                    .thenThrow(new IllegalStateException("boom"));
+            RosterJob job = jobService.submit("alice", new byte[] { 1 });
+
+            assertTrue(jobService.processNext());
+            RosterJob retried = repository.findById(job.getId()).orElseThrow();
+            assertEquals(RosterJobStatus.QUEUED, retried.getStatus());
+            assertEquals(1, retried.getAttempts());
+            assertNotNull(retried.getImage());
+            assertFalse(retried.getRunAfter().isBefore(
+                    Instant.now().plus(rosterProperties.getJobs().getRetryBackoff()).minusSeconds(1)));
+            assertFalse(jobService.processNext());
+
+            makeRunnable(job.getId());
+            assertTrue(jobService.processNext());
+            assertFalse(jobService.processNext());
+            RosterJob failed = repository.findById(job.getId()).orElseThrow();
+            assertEquals(RosterJobStatus.FAILED, failed.getStatus());
+            assertEquals(2, failed.getAttempts());
+            assertEquals(500, failed.getErrorStatus());
+        } finally {
+            rosterProperties.getJobs().setMaxAttempts(maxAttempts);
+        }
+    }
+
+    @Test
+    void retryLaterRejectionKeepsTheJobQueuedUntilRetryAfter() {
+        when(conversionService.parseRoster(any(), any(), any(RosterProgressListener.class)))
+                .thenThrow(new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE, "busy", Duration.ofMinutes(1)))
+                .thenReturn(new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage()));
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+
+        assertTrue(jobService.processNext());
+        RosterJob deferred = repository.findById(job.getId()).orElseThrow();
+        assertEquals(RosterJobStatus.QUEUED, deferred.getStatus());
+        assertFalse(deferred.getRunAfter().isBefore(Instant.now().plusSeconds(59)));
+        assertFalse(jobService.processNext());
+
+        makeRunnable(job.getId());
+        assertTrue(jobService.processNext());
+
+        assertEquals(RosterJobStatus.SUCCEEDED, repository.findById(job.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void jobConversionRunsAgainstTheJobDeadline() {
+        AtomicReference<Duration> remaining = new AtomicReference<>();
+        when(conversionService.parseRoster(any(), any(), any(RosterProgressListener.class))).thenAnswer(invocation -> {
+            remaining.set(RosterDeadline.current().remaining());
+            return new RosterParseResult(Map.of("events", List.of()), new CallUsage(), new CallUsage());
+        });
+        jobService.submit("alice", new byte[] { 1 });
+
+        assertTrue(jobService.processNext());
+
+        assertTrue(remaining.get().compareTo(rosterProperties.getDeadline().getTotal()) > 0);
+        assertNull(RosterDeadline.current());
+    }
+
+    @Test
+    void jobOfAWorkerThatDiedIsReclaimedOnceItsLockExpires() {
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+        assertEquals(List.of(job.getId()), repository.claimNext("10 minutes"));
+        assertEquals(RosterJobStatus.RUNNING, repository.findById(job.getId()).orElseThrow().getStatus());
+
+        assertFalse(jobService.processNext());
+
+        expireLock(job.getId());
+        assertTrue(jobService.processNext());
+
+        RosterJob stored = repository.findById(job.getId()).orElseThrow();
+        assertEquals(RosterJobStatus.SUCCEEDED, stored.getStatus());
+        assertEquals(2, stored.getAttempts());
+    }
+
+    @Test
+    void jobWhoseWorkersKeepDyingFailsOnceItHasUsedItsAttempts() {
+        int maxAttempts = rosterProperties.getJobs().getMaxAttempts();
+        rosterProperties.getJobs().setMaxAttempts(2);
+        try {
+            RosterJob job = jobService.submit("alice", new byte[] { 1 });
+            for (int attempt = 0; attempt < 2; attempt++) {
+                assertEquals(List.of(job.getId()), repository.claimNext("10 minutes"));
+                expireLock(job.getId());
+            }
+
+            assertTrue(jobService.processNext());
+            assertFalse(jobService.processNext());
+
+            RosterJob stored = repository.findById(job.getId()).orElseThrow();
+            assertEquals(RosterJobStatus.FAILED, stored.getStatus());
+            assertEquals(500, stored.getErrorStatus());
+            assertNull(stored.getImage());
+            verify(conversionService, never()).parseRoster(any(), any(), any(RosterProgressListener.class));
+        } finally {
+            rosterProperties.getJobs().setMaxAttempts(maxAttempts);
+        }
+    }
+
+    @Test
+    void purgeRemovesOnlyFinishedJobsPastRetention() {
+        RosterJob expired = jobService.submit("alice", new byte[] { 1 });
+        RosterJob recent = jobService.submit("alice", new byte[] { 2 });
+        assertTrue(jobService.processNext());
+        assertTrue(jobService.processNext());
+        RosterJob queued = jobService.submit("alice", new byte[] { 3 });
+        backdate(expired.getId());
+        backdate(queued.getId());
+
+        jobService.purgeFinished();
+
+        assertFalse(repository.existsById(expired.getId()));
+        assertTrue(repository.existsById(recent.getId()));
+        assertTrue(repository.existsById(queued.getId()));
+    }
+
+    @Test
+    void waitersCompleteWithTheResultOnceTheJobFinishes() throws Exception {
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+        CompletableFuture<Optional<RosterJobRepository.RosterJobView>> first =
+                jobService.await(job.getId(), "alice", Duration.ofSeconds(10));
+        CompletableFuture<Optional<RosterJobRepository.RosterJobView>> second =
+                jobService.await(job.getId(), "alice", Duration.ofSeconds(10));
+        assertFalse(first.isDone());
+
+        assertTrue(jobService.processNext());
+
+        assertEquals(RosterJobStatus.SUCCEEDED, first.get(5, TimeUnit.SECONDS).orElseThrow().getStatus());
+        assertEquals("{\"events\":[]}", second.get(5, TimeUnit.SECONDS).orElseThrow().getResultJson());
+    }
+
+    @Test
+    void waiterGetsTheUnfinishedJobWhenTheWaitRunsOut() throws Exception {
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+
+        CompletableFuture<Optional<RosterJobRepository.RosterJobView>> waiter =
+                jobService.await(job.getId(), "alice", Duration.ofSeconds(1));
+
+        assertEquals(RosterJobStatus.QUEUED, waiter.get(5, TimeUnit.SECONDS).orElseThrow().getStatus());
+    }
+
+    @Test
+    void jobsAreOnlyVisibleToTheirOwner() {
+        RosterJob job = jobService.submit("alice", new byte[] { 1 });
+
+        assertEquals(RosterJobStatus.QUEUED, jobService.find(job.getId(), "alice").orElseThrow().getStatus());
+        assertTrue(jobService.find(job.getId(), "bob").isEmpty());
+    }
+
+    private void makeRunnable(UUID id) {
+        jdbcTemplate.update("update roster_job set run_after = now() - interval '1 second' where id = ?", id);
+    }
+
+    private void expireLock(UUID id) {
+        jdbcTemplate.update("update roster_job set locked_until = now() - interval '1 minute' where id = ?", id);
+    }
+
+    private void backdate(UUID id) {
+        jdbcTemplate.update("update roster_job set updated_at = now() - ? * interval '1 second' where id = ?",
+                rosterProperties.getJobs().getRetention().plusHours(1).toSeconds(), id);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.ryr.ros2cal_api.roster.RosterJobService;
+import com.ryr.ros2cal_api.roster.RosterJobWorker;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+
+class RosterJobWorkerTest {
+
+    private final RosterJobService jobService = Mockito.mock(RosterJobService.class);
+    private final RosterProperties properties = new RosterProperties();
+
+    @Test
+    void workerDrainsTheQueueAndSurvivesPollFailures() throws Exception {
+        properties.getJobs().setWorkerThreads(1);
+        properties.getJobs().setPollInterval(Duration.ofMillis(5));
+        AtomicInteger polls = new AtomicInteger();
+        CountDownLatch drained = new CountDownLatch(1);
+        when(jobService.processNext()).thenAnswer(invocation -> switch (polls.incrementAndGet()) {
+            case 1 -> throw new IllegalStateException("database unavailable");
+            case 2, 3 -> true;
+            default -> {
+                drained.countDown();
+                yield false;
+            }
+        });
+        RosterJobWorker worker = new RosterJobWorker(jobService, properties);
+
+        worker.start();
+        try {
+            assertTrue(drained.await(5, TimeUnit.SECONDS));
+        } finally {
+            worker.stop();
+        }
+
+        Thread.sleep(50);
+        int afterStop = polls.get();
+        Thread.sleep(50);
+        assertEquals(afterStop, polls.get());
+    }
+
+    @Test
+    void workerDoesNotStartWithoutThreads() throws Exception {
+        properties.getJobs().setWorkerThreads(0);
+        RosterJobWorker worker = new RosterJobWorker(jobService, properties);
+
+        worker.start();
+        Thread.sleep(50);
+
+        verify(jobService, never()).processNext();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryr.ros2cal_api.roster.RosterLocalParser;
+
+class RosterLocalParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void fixtureOcrTextMatchesGoldenJson() throws Exception {
+        String ocrText = new String(readResource("fixtures/roster-openai/roster_ocr.txt"), StandardCharsets.UTF_8);
+        JsonNode expected = objectMapper.readTree(readResource("fixtures/roster-openai/roster_expected.json"));
+
+        Optional<Map<String, Object>> parsed = RosterLocalParser.parse(ocrText);
+
+        assertTrue(parsed.isPresent());
+        assertEquals(expected, objectMapper.valueToTree(parsed.get()));
+    }
+
+    @Test
+    void acceptsMarkdownTableLayout() {
+        String ocrText = """
+                | Date | Duty | Dep | Begin | End | Arr |
+                |---|---|---|---|---|---|
+                | 18 Dec 25, Thu | HSBY | NRN | 04:30 Z | 16:00 Z | |
+                """;
+
+        Optional<Map<String, Object>> parsed = RosterLocalParser.parse(ocrText);
+
+        assertTrue(parsed.isPresent());
+        assertEquals(1, ((List<?>) parsed.get().get("events")).size());
+    }
+
+    @Test
+    void dutyPastMidnightEndsOnNextDay() {
+        String ocrText = """
+                Mon, 22 Dec 25 CHECK-IN 21:00 Z
+                FR1234 NRN 21:45 Z 00:35 Z TFS
+                CHECK-OUT 01:05 Z
+                """;
+
+        Map<String, Object> event = firstEvent(RosterLocalParser.parse(ocrText).orElseThrow());
+
+        assertEquals("2025-12-22T21:00:00Z", event.get("start_utc"));
+        assertEquals("2025-12-23T01:05:00Z", event.get("end_utc"));
+        assertEquals("FLIGHT", event.get("duty_type"));
+    }
+
+    @Test
+    void declinesTextItCannotReadWithConfidence() {
+        assertTrue(RosterLocalParser.parse("18 Dec 25, Thu HSBY NRN 04:?0 Z 16:00 Z").isEmpty());
+        assertTrue(RosterLocalParser.parse("18 Dec 25, Fri HSBY NRN 04:30 Z 16:00 Z").isEmpty());
+        assertTrue(RosterLocalParser.parse("18 Dec 25, Thu CHECK-IN 04:30 Z\nFR1816 NRN 05:15 Z 08:35 Z RBA").isEmpty());
+        assertTrue(RosterLocalParser.parse("18 Dec 25, Thu SICK").isEmpty());
+        assertTrue(RosterLocalParser.parse("""
+                18 Dec 25, Thu CHECK-IN 04:30 Z
+                DH FR1816 NRN 05:15 Z 08:35 Z RBA
+                FR1817 RBA 09:40 Z 13:00 Z NRN
+                CHECK-OUT 13:30 Z
+                """).isEmpty());
+    }
+
+    private static Map<String, Object> firstEvent(Map<String, Object> data) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> event = (Map<String, Object>) ((List<?>) data.get("events")).get(0);
+        return event;
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
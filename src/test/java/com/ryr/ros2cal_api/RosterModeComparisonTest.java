@@ -0,0 +1,169 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.RosterConversionService;
+import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Runs every fixture roster through the two-call mode (OCR, then parse) and the single-call mode and
+ * writes latency, token usage and differences from the golden JSON to
+ * {@code build/reports/roster-mode-comparison.md}. Models come from the usual properties, e.g.
+ * {@code OPENAI_OCR_MODEL}, {@code OPENAI_PARSE_MODEL} and {@code OPENAI_SINGLE_CALL_MODEL}.
+ * Caches are off so every run converts from scratch; local parsing and validation are on as in
+ * production, so each row shows what a real conversion in that mode costs.
+ */
+@SpringBootTest(properties = {
+        "app.roster.result-cache.enabled=false",
+        "app.roster.content-match.enabled=false",
+        "app.openai.parse-cache-max-entries=0",
+        "app.roster.local-parse.enabled=true",
+        "app.roster.validation.enabled=true"
+})
+class RosterModeComparisonTest {
+
+    private static final String FIXTURES = "classpath:fixtures/roster-openai/*_input.*";
+    private static final Path REPORT = Path.of("build", "reports", "roster-mode-comparison.md");
+
+    @Autowired
+    private RosterConversionService rosterConversionService;
+
+    @Autowired
+    private RosterProperties rosterProperties;
+
+    @Autowired
+    private OpenAiProperties openAiProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void registerOpenAiKey(DynamicPropertyRegistry registry) {
+        registry.add("app.openai.api-key", () -> System.getenv("OPENAI_API_KEY"));
+    }
+
+    @Test
+    @Tag("openai")
+    void compareTwoCallAndSingleCallModes() throws Exception {
+        assumeTrue(isOpenAiIntegrationEnabled(), "OpenAI integration test is disabled");
+
+        List<String> rows = new ArrayList<>();
+        Resource[] fixtures = new PathMatchingResourcePatternResolver().getResources(FIXTURES);
+        for (Resource fixture : fixtures) {
+            String name = fixture.getFilename().replaceAll("_input\\..*$", "");
+            byte[] image = fixture.getContentAsByteArray();
+            JsonNode expected = objectMapper.readTree(readResource("fixtures/roster-openai/" + name + "_expected.json"));
+            rows.add(run(name, "two-call", false, image, expected));
+            rows.add(run(name, "single-call", true, image, expected));
+        }
+
+        String report = report(rows);
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, report);
+        assertTrue(fixtures.length > 0, "no fixtures matched " + FIXTURES);
+    }
+
+    private String run(String fixture, String mode, boolean singleCall, byte[] image, JsonNode expected) {
+        boolean configured = rosterProperties.getSingleCall().isEnabled();
+        rosterProperties.getSingleCall().setEnabled(singleCall);
+        try {
+            long start = System.nanoTime();
+            RosterParseResult result = rosterConversionService.parseRoster(image);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            CallUsage usage = new CallUsage();
+            usage.add(result.getOcrUsage());
+            usage.add(result.getParseUsage());
+            Diff diff = diff(expected, objectMapper.valueToTree(result.getData()));
+            return "| %s | %s | %s | %d | %d | %d | %d | %d | %d | %s |".formatted(
+                    fixture, mode, singleCall ? openAiProperties.getSingleCallModel()
+                            : openAiProperties.getOcrModel() + " + " + openAiProperties.getParseModel(),
+                    millis, usage.getInputTokens(), usage.getOutputTokens(), usage.getEffectiveTotal(),
+                    diff.missing().size(), diff.extra().size(), diff.describe());
+        } catch (RuntimeException ex) {
+            return "| %s | %s | - | - | - | - | - | - | - | failed: %s |".formatted(fixture, mode, ex.getMessage());
+        } finally {
+            rosterProperties.getSingleCall().setEnabled(configured);
+        }
+    }
+
+    /**
+     * Events present in only one of the two results, compared as whole JSON objects.
+     */
+    private Diff diff(JsonNode expected, JsonNode actual) {
+        Set<JsonNode> expectedEvents = new LinkedHashSet<>();
+        expected.path("events").forEach(expectedEvents::add);
+        Set<JsonNode> actualEvents = new LinkedHashSet<>();
+        actual.path("events").forEach(actualEvents::add);
+        List<JsonNode> missing = expectedEvents.stream().filter(event -> !actualEvents.contains(event)).toList();
+        List<JsonNode> extra = actualEvents.stream().filter(event -> !expectedEvents.contains(event)).toList();
+        return new Diff(missing, extra);
+    }
+
+    private record Diff(List<JsonNode> missing, List<JsonNode> extra) {
+
+        private String describe() {
+            if (missing.isEmpty() && extra.isEmpty()) {
+                return "identical";
+            }
+            List<String> parts = new ArrayList<>();
+            missing.forEach(event -> parts.add("missing " + label(event)));
+            extra.forEach(event -> parts.add("extra " + label(event)));
+            return String.join("; ", parts);
+        }
+
+        private static String label(JsonNode event) {
+            return event.path("duty_type").asText() + "@" + event.path("start_utc").asText();
+        }
+    }
+
+    private static String report(List<String> rows) {
+        StringBuilder report = new StringBuilder("# Roster conversion modes\n\n")
+                .append("| fixture | mode | models | latency ms | input tokens | output tokens | total tokens")
+                .append(" | missing | extra | diff |\n")
+                .append("|---|---|---|---|---|---|---|---|---|---|\n");
+        rows.forEach(row -> report.append(row).append('\n'));
+        return report.toString();
+    }
+
+    private boolean isOpenAiIntegrationEnabled() {
+        String enabled = System.getProperty("openaiIT");
+        if (enabled == null || enabled.isBlank()) {
+            enabled = System.getenv("RUN_OPENAI_IT");
+        }
+        String apiKey = System.getenv("OPENAI_API_KEY");
+        return "true".equalsIgnoreCase(enabled) && apiKey != null && !apiKey.isBlank();
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
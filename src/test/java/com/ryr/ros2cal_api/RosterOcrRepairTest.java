@@ -0,0 +1,81 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterLineLocator;
+import com.ryr.ros2cal_api.roster.RosterOcrRepair;
+
+class RosterOcrRepairTest {
+
+    @Test
+    void replacesLineWhenRereadAgreesWithReadCharacters() {
+        String reread = """
+                17 Dec 25, Wed
+                18 Dec 25, Thu HSBY NRN 04:00 Z 16:00 Z
+                19 Dec 25, Fri OFF
+                """;
+
+        assertEquals("18 Dec 25, Thu HSBY NRN 04:00 Z 16:00 Z",
+                RosterOcrRepair.matchingLine("18 Dec 25, Thu HSBY NRN 04:?0 Z 16:00 Z", reread));
+    }
+
+    @Test
+    void ignoresSpacingDifferences() {
+        assertEquals("FR 1234 DUB 06:15 Z STN 07:35 Z",
+                RosterOcrRepair.matchingLine("FR 1234  DUB 06:15 Z\tSTN 07:?5 Z", "FR 1234 DUB  06:15 Z STN 07:35 Z"));
+    }
+
+    @Test
+    void keepsLineWhenRereadContradictsIt() {
+        assertNull(RosterOcrRepair.matchingLine("HSBY NRN 04:?0 Z", "HSBY NRN 05:00 Z"));
+        assertNull(RosterOcrRepair.matchingLine("HSBY NRN 04:?0 Z", "HSBY NRN 04:?0 Z"));
+    }
+
+    @Test
+    void keepsLineWhenRereadIsAmbiguous() {
+        assertNull(RosterOcrRepair.matchingLine("OFF 0?", "OFF 01\nOFF 02"));
+    }
+
+    @Test
+    void keepsLineThatIsMostlyUnreadable() {
+        assertNull(RosterOcrRepair.matchingLine("A? ???", "AB CDE"));
+    }
+
+    @Test
+    void findsOneBandPerOcrLineInFixture() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(readResource("fixtures/roster-openai/roster_input.jpg")));
+        BufferedImage scaled = new BufferedImage(image.getWidth() * 2, image.getHeight() * 2, BufferedImage.TYPE_INT_RGB);
+        scaled.createGraphics().drawImage(image, 0, 0, scaled.getWidth(), scaled.getHeight(), null);
+        long ocrLines = new String(readResource("fixtures/roster-openai/roster_ocr.txt"), StandardCharsets.UTF_8)
+                .lines().filter(line -> !line.isBlank()).count();
+
+        List<RosterLineLocator.Band> bands = RosterLineLocator.textBands(scaled);
+
+        assertEquals(ocrLines, bands.size());
+        RosterLineLocator.Band band = RosterLineLocator.locate(bands, scaled.getHeight(), bands.size(), 10, 1);
+        assertTrue(band.top() < bands.get(9).top() && band.bottom() > bands.get(11).bottom());
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing test resource: " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
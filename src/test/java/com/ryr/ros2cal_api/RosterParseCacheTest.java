@@ -0,0 +1,29 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.RosterParseCache;
+
+class RosterParseCacheTest {
+
+    private static final String OCR_TEXT = "17 Dec 25, Wed\nOFF\n";
+    private static final String PARSED = "{\"events\":[]}";
+
+    @Test
+    void hitsOnlyForTheSameModelAndFormat() {
+        OpenAiProperties properties = new OpenAiProperties();
+        RosterParseCache cache = new RosterParseCache(properties, new SimpleMeterRegistry());
+
+        cache.put(OCR_TEXT, "gpt-5", PARSED);
+
+        assertEquals(PARSED, cache.get("17 Dec 25,  Wed\r\n\r\nOFF", "gpt-5"));
+        assertNull(cache.get(OCR_TEXT, "gpt-5-mini"));
+        properties.setCompactParse(!properties.isCompactParse());
+        assertNull(cache.get(OCR_TEXT, "gpt-5"));
+    }
+}
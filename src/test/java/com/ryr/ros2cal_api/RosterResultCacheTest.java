@@ -0,0 +1,93 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.OpenAiProperties;
+import com.ryr.ros2cal_api.roster.RosterParseResult;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterResultCache;
+
+class RosterResultCacheTest {
+
+    @Test
+    void memoryHitsCannotChangeTheCachedResult() {
+        RosterProperties properties = new RosterProperties();
+        properties.getResultCache().setPersistent(false);
+        RosterResultCache cache = new RosterResultCache(properties, new OpenAiProperties(), null, new ObjectMapper(), new SimpleMeterRegistry());
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("duty_type", "OFF");
+        List<Object> events = new ArrayList<>(List.of(event));
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("events", events);
+
+        cache.put("sha", new RosterParseResult(data, new CallUsage(), new CallUsage()));
+        event.put("duty_type", "changed by the producer");
+        Map<String, Object> hit = cache.get("sha").getData();
+
+        assertThrows(UnsupportedOperationException.class, () -> hit.put("events", List.of()));
+        assertThrows(UnsupportedOperationException.class, () -> ((List<?>) hit.get("events")).clear());
+        assertEquals("OFF", ((Map<?, ?>) ((List<?>) cache.get("sha").getData().get("events")).get(0)).get("duty_type"));
+    }
+
+    @Test
+    void changedPipelineMissesTheCachedResult() {
+        RosterProperties properties = new RosterProperties();
+        properties.getResultCache().setPersistent(false);
+        OpenAiProperties openAiProperties = new OpenAiProperties();
+        RosterResultCache cache = new RosterResultCache(
+                properties, openAiProperties, null, new ObjectMapper(), new SimpleMeterRegistry());
+
+        cache.put("sha", result(event(null)));
+        assertNotNull(cache.get("sha"));
+        openAiProperties.setParseModel(openAiProperties.getParseModel() + "-next");
+
+        assertNull(cache.get("sha"));
+        assertNull(cache.peek("sha"));
+    }
+
+    @Test
+    void resultsWithProblemsUseTheProblemTtl() {
+        RosterProperties properties = new RosterProperties();
+        properties.getResultCache().setPersistent(false);
+        properties.getResultCache().setProblemTtl(Duration.ZERO);
+        RosterResultCache cache = new RosterResultCache(
+                properties, new OpenAiProperties(), null, new ObjectMapper(), new SimpleMeterRegistry());
+
+        cache.put("clean", result(event(null)));
+        cache.put("error", result(event("r")));
+
+        assertNotNull(cache.get("clean"));
+        assertNull(cache.get("error"));
+    }
+
+    private static Map<String, Object> event(String error) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("duty_type", "OFF");
+        event.put("start_utc", "2025-12-21T00:00:00Z");
+        event.put("end_utc", "2025-12-21T23:59:00Z");
+        if (error != null) {
+            event.put("error", error);
+        }
+        return event;
+    }
+
+    private static RosterParseResult result(Map<String, Object> event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("events", new ArrayList<>(List.of(event)));
+        return new RosterParseResult(data, new CallUsage(), new CallUsage());
+    }
+}
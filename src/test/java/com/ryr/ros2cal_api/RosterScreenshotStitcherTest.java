@@ -0,0 +1,87 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterScreenshotStitcher;
+
+class RosterScreenshotStitcherTest {
+
+    private static final int WIDTH = 720;
+    private static final int SCREEN_HEIGHT = 1200;
+    private static final int STATUS_BAR = 60;
+    private static final int NAVIGATION_BAR = 80;
+
+    private final RosterScreenshotStitcher stitcher = new RosterScreenshotStitcher(new RosterProperties());
+
+    @Test
+    void overlappingScreenshotsAreJoinedWithoutRepeatedRows() {
+        BufferedImage roster = renderRoster(3000);
+        List<BufferedImage> screenshots = List.of(
+                screenshot(roster, 0, "09:41"),
+                screenshot(roster, 700, "09:42"),
+                screenshot(roster, 1500, "09:42"));
+
+        List<RosterScreenshotStitcher.Segment> segments = stitcher.stitch(screenshots);
+
+        assertEquals(1, segments.size());
+        assertEquals(List.of(0, 1, 2), segments.get(0).sources());
+        BufferedImage stitched = segments.get(0).image();
+        assertEquals(1500 + SCREEN_HEIGHT, stitched.getHeight());
+        for (int y = STATUS_BAR; y < stitched.getHeight() - NAVIGATION_BAR; y += 37) {
+            assertEquals(roster.getRGB(WIDTH / 3, y), stitched.getRGB(WIDTH / 3, y), "row " + y);
+        }
+    }
+
+    @Test
+    void screenshotsWithoutOverlapStaySeparate() {
+        BufferedImage roster = renderRoster(3000);
+        List<BufferedImage> screenshots = List.of(
+                screenshot(roster, 0, "09:41"),
+                screenshot(roster, 1600, "09:42"));
+
+        List<RosterScreenshotStitcher.Segment> segments = stitcher.stitch(screenshots);
+
+        assertEquals(2, segments.size());
+        assertEquals(SCREEN_HEIGHT, segments.get(1).image().getHeight());
+    }
+
+    private static BufferedImage renderRoster(int height) {
+        BufferedImage roster = new BufferedImage(WIDTH, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = roster.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, WIDTH, height);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 20));
+        for (int y = 30, line = 0; y < height; y += 32, line++) {
+            graphics.drawString("%d Dec 25  FR%d NRN %02d:15 Z %02d:40 Z".formatted(
+                    line % 28 + 1, 1800 + line * 7, line % 24, (line + 3) % 24), 16, y);
+        }
+        graphics.dispose();
+        return roster;
+    }
+
+    private static BufferedImage screenshot(BufferedImage roster, int scrollTop, String clock) {
+        BufferedImage screenshot = new BufferedImage(WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = screenshot.createGraphics();
+        graphics.drawImage(roster, 0, -scrollTop, null);
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, WIDTH, STATUS_BAR);
+        graphics.setColor(Color.WHITE);
+        graphics.drawString(clock, 20, 40);
+        graphics.setColor(Color.LIGHT_GRAY);
+        graphics.fillRect(0, SCREEN_HEIGHT - NAVIGATION_BAR, WIDTH, NAVIGATION_BAR);
+        graphics.setColor(Color.BLACK);
+        graphics.drawString("Home   Roster   More", 240, SCREEN_HEIGHT - 35);
+        graphics.dispose();
+        return screenshot;
+    }
+}
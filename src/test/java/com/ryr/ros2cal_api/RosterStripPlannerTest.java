@@ -0,0 +1,83 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.RosterOcrTextJoiner;
+import com.ryr.ros2cal_api.roster.RosterStripPlanner;
+
+class RosterStripPlannerTest {
+
+    private static final int LINE_PITCH = 40;
+    private static final int TEXT_HEIGHT = 24;
+
+    @Test
+    void cutsTallImageBetweenTextLines() {
+        BufferedImage image = textLines(200, 4000);
+
+        List<RosterStripPlanner.Strip> strips = RosterStripPlanner.plan(image, 3000, 1000, 60, 6);
+
+        assertEquals(4, strips.size());
+        assertEquals(0, strips.get(0).top());
+        assertEquals(4000, strips.get(strips.size() - 1).bottom());
+        for (int i = 0; i < strips.size(); i++) {
+            RosterStripPlanner.Strip strip = strips.get(i);
+            assertTrue(isBetweenLines(strip.bottom()) || strip.bottom() == 4000, "cut in text at " + strip.bottom());
+            assertTrue(isBetweenLines(strip.top()) || strip.top() == 0, "strip starts in text at " + strip.top());
+            if (i > 0) {
+                assertTrue(strip.top() < strips.get(i - 1).bottom(), "strips must overlap");
+            }
+        }
+    }
+
+    @Test
+    void shortImageIsOneStrip() {
+        List<RosterStripPlanner.Strip> strips = RosterStripPlanner.plan(textLines(200, 2400), 3000, 1000, 60, 6);
+
+        assertEquals(List.of(new RosterStripPlanner.Strip(0, 2400)), strips);
+    }
+
+    @Test
+    void joinerDropsLinesRepeatedByTheOverlap() {
+        String first = "12 Dec 25, Fri\nOFF\n13 Dec 25, Sat\nCHECK-IN 05:30";
+        String second = "13 Dec 25, Sat\nCHECK-IN 05:30\n\nFR 1234 DUB 06:15 STN 07:20\nCHECK-OUT 08:00";
+        String third = "K-OUT 08:00\n14 Dec 25, Sun\nOFF";
+        String joined = RosterOcrTextJoiner.join(List.of(first, second, third));
+
+        assertEquals("""
+                12 Dec 25, Fri
+                OFF
+                13 Dec 25, Sat
+                CHECK-IN 05:30
+                FR 1234 DUB 06:15 STN 07:20
+                CHECK-OUT 08:00
+                14 Dec 25, Sun
+                OFF""", joined);
+    }
+
+    private static boolean isBetweenLines(int y) {
+        return y % LINE_PITCH >= TEXT_HEIGHT;
+    }
+
+    private static BufferedImage textLines(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        for (int y = 0; y < height; y += LINE_PITCH) {
+            for (int x = 10; x < width - 10; x += 12) {
+                graphics.fillRect(x, y, 6, TEXT_HEIGHT);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+
+import com.ryr.ros2cal_api.roster.CallUsage;
+import com.ryr.ros2cal_api.roster.RetryLaterException;
+import com.ryr.ros2cal_api.roster.RosterProgressListener;
+import com.ryr.ros2cal_api.roster.RosterProperties;
+import com.ryr.ros2cal_api.roster.RosterUsageQuotas;
+import com.ryr.ros2cal_api.roster.RosterUserQuotaRepository;
+
+class RosterUsageQuotasTest {
+
+    private final RosterUserQuotaRepository repository = Mockito.mock(RosterUserQuotaRepository.class);
+    private final RosterProperties properties = new RosterProperties();
+
+    @Test
+    void requestBurstIsEnforcedPerUser() {
+        properties.getQuota().setRequestBurst(2);
+        RosterUsageQuotas quotas = new RosterUsageQuotas(repository, properties, new SimpleMeterRegistry());
+
+        quotas.admit("alice");
+        quotas.admit("alice");
+        RetryLaterException ex = assertThrows(RetryLaterException.class, () -> quotas.admit("alice"));
+        quotas.admit("bob");
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getStatusCode());
+        assertTrue(ex.getRetryAfter().toSeconds() >= 9);
+    }
+
+    @Test
+    void batchTakesOneRequestPerImage() {
+        properties.getQuota().setRequestBurst(10);
+        RosterUsageQuotas quotas = new RosterUsageQuotas(repository, properties, new SimpleMeterRegistry());
+
+        quotas.admit("alice", 6);
+        RetryLaterException ex = assertThrows(RetryLaterException.class, () -> quotas.admit("alice", 6));
+        quotas.admit("alice", 4);
+
+        assertTrue(ex.getRetryAfter().toSeconds() >= 9);
+        assertThrows(RetryLaterException.class, () -> quotas.admit("alice"));
+    }
+
+    @Test
+    void chargedTokensBlockFurtherConversions() {
+        properties.getQuota().setTokenBurst(1000);
+        RosterUsageQuotas quotas = new RosterUsageQuotas(repository, properties, new SimpleMeterRegistry());
+        RosterProgressListener listener = quotas.charging("alice", RosterProgressListener.NONE);
+
+        quotas.admit("alice");
+        listener.onUsage(usage(600));
+        listener.onUsage(usage(600));
+
+        assertThrows(RetryLaterException.class, () -> quotas.admit("alice"));
+    }
+
+    @Test
+    void syncAdoptsLevelsSharedByOtherInstances() {
+        RosterUsageQuotas quotas = new RosterUsageQuotas(repository, properties, new SimpleMeterRegistry());
+        when(repository.consume(eq("alice"), eq(1.0), eq(250.0), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(levels(0.2, 5000)));
+
+        quotas.admit("alice");
+        quotas.charge("alice", usage(250));
+        quotas.sync();
+
+        verify(repository).consume(eq("alice"), eq(1.0), eq(250.0), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        assertThrows(RetryLaterException.class, () -> quotas.admit("alice"));
+    }
+
+    private static CallUsage usage(int totalTokens) {
+        CallUsage usage = new CallUsage();
+        usage.setTotalTokens(totalTokens);
+        return usage;
+    }
+
+    private static RosterUserQuotaRepository.Levels levels(double requests, double tokens) {
+        return new RosterUserQuotaRepository.Levels() {
+            @Override
+            public double getRequests() {
+                return requests;
+            }
+
+            @Override
+            public double getTokens() {
+                return tokens;
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package com.ryr.ros2cal_api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.ryr.ros2cal_api.roster.SingleFlight;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private final SingleFlight<String> flights = new SingleFlight<>();
+    private final AtomicReference<String> published = new AtomicReference<>();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void callerThatMissedThePublishedResultDoesNotConvertAgain() {
+        String lookedUpBeforeThePublish = published.get();
+        flights.execute("roster", published::get, this::convert);
+
+        String result = lookedUpBeforeThePublish != null
+                ? lookedUpBeforeThePublish
+                : flights.execute("roster", published::get, this::convert);
+
+        assertEquals("events", result);
+        assertEquals(1, executions.get());
+        assertFalse(flights.isInFlight("roster"));
+    }
+
+    @Test
+    void concurrentCallersShareOneExecution() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        String shared = new String("events");
+        AtomicReferenceArray<Object> outcomes = runConcurrently(() -> {
+            executions.incrementAndGet();
+            await(release);
+            return shared;
+        }, release);
+
+        assertEquals(1, executions.get());
+        for (int i = 0; i < CALLERS; i++) {
+            assertSame(shared, outcomes.get(i));
+        }
+        assertFalse(flights.isInFlight("roster"));
+    }
+
+    @Test
+    void concurrentCallersAllSeeTheFailure() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("conversion failed");
+        AtomicReferenceArray<Object> outcomes = runConcurrently(() -> {
+            executions.incrementAndGet();
+            await(release);
+            throw failure;
+        }, release);
+
+        assertEquals(1, executions.get());
+        for (int i = 0; i < CALLERS; i++) {
+            assertSame(failure, outcomes.get(i));
+        }
+        assertFalse(flights.isInFlight("roster"));
+    }
+
+    /**
+     * Starts {@link #CALLERS} threads on the same key together, opens {@code release} once all of
+     * them are blocked inside {@link SingleFlight#execute}, and returns what each one got: its result
+     * or the exception it saw.
+     */
+    private AtomicReferenceArray<Object> runConcurrently(Supplier<String> supplier, CountDownLatch release)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger entered = new AtomicInteger();
+        AtomicReferenceArray<Object> outcomes = new AtomicReferenceArray<>(CALLERS);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            int caller = i;
+            Thread thread = new Thread(() -> {
+                await(start);
+                entered.incrementAndGet();
+                try {
+                    outcomes.set(caller, flights.execute("roster", () -> null, supplier));
+                } catch (RuntimeException ex) {
+                    outcomes.set(caller, ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        // The owner blocks on release and every other caller on the owner's result.
+        while (entered.get() < CALLERS
+                || !threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5_000);
+        }
+        return outcomes;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private String convert() {
+        executions.incrementAndGet();
+        published.set("events");
+        return "events";
+    }
+}